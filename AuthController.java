@@ -8,7 +8,6 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +18,7 @@ import com.smartparking.repository.UserRepository;
 import com.smartparking.repository.VehicleRepository;
 import com.smartparking.security.JwtUtil;
 import com.smartparking.service.OTPService;
+import com.smartparking.service.PasswordHasher;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -32,7 +32,7 @@ public class AuthController {
     private VehicleRepository vehicleRepo;
 
     @Autowired
-    private BCryptPasswordEncoder encoder;
+    private PasswordHasher passwordHasher;
 
     @Autowired
     private JwtUtil jwtUtil;
@@ -54,7 +54,7 @@ public class AuthController {
             user.setRole(Role.USER);
         }
 
-        user.setPassword(encoder.encode(user.getPassword()));
+        user.setPassword(passwordHasher.encode(user.getPassword()));
         
         User savedUser = repo.save(user);
 
@@ -77,7 +77,7 @@ public class AuthController {
         User user = repo.findByEmail(request.getEmail())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        if (!encoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordHasher.matches(request.getPassword(), user.getPassword())) {
             return ResponseEntity
                     .status(401)
                     .body("Invalid Credentials");
@@ -90,7 +90,8 @@ public class AuthController {
 
         String token = jwtUtil.generateToken(
                 user.getEmail(),
-                user.getRole().name()
+                user.getRole().name(),
+                user.getId()
         );
 
         // ✅ FIX: Return complete user data
@@ -165,7 +166,7 @@ public class AuthController {
                     .orElseThrow(() -> new RuntimeException("Invalid credentials"));
 
             // Verify password
-            if (!encoder.matches(request.getPassword(), user.getPassword())) {
+            if (!passwordHasher.matches(request.getPassword(), user.getPassword())) {
                 return ResponseEntity.status(401)
                         .body(Map.of("error", "Invalid credentials"));
             }
@@ -191,6 +192,8 @@ public class AuthController {
             response.put("requiresOTP", true);
 
             return ResponseEntity.ok(response);
+        } catch (PasswordHasher.Saturated e) {
+            return passwordHashingBusy(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(401)
                     .body(Map.of("error", e.getMessage()));
@@ -228,7 +231,7 @@ public class AuthController {
                     .orElseThrow(() -> new RuntimeException("User not found"));
 
             // Generate JWT token
-            String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name());
+            String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name(), user.getId());
 
             Map<String, Object> response = new HashMap<>();
             response.put("token", token);
@@ -277,4 +280,14 @@ public class AuthController {
                     .body(Map.of("error", "Failed to fetch users: " + e.getMessage()));
         }
     }
+
+    /**
+     * Password hashing is saturated: reject fast so the client retries later
+     */
+    @ExceptionHandler(PasswordHasher.Saturated.class)
+    public ResponseEntity<?> passwordHashingBusy(PasswordHasher.Saturated e) {
+        return ResponseEntity.status(503)
+                .header("Retry-After", "1")
+                .body(Map.of("error", e.getMessage()));
+    }
 }
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 import com.smartparking.dto.PricingTierRequest;
 import com.smartparking.model.VehiclePricing;
 import com.smartparking.service.AdminVehiclePricingService;
+import com.smartparking.service.TariffTable;
 
 @RestController
 @RequestMapping("/api/admin/pricing")
@@ -22,6 +23,9 @@ public class AdminPricingController {
     @Autowired
     private AdminVehiclePricingService vehiclePricingService;
 
+    @Autowired
+    private TariffTable tariffTable;
+
     @GetMapping
     public ResponseEntity<?> getAllPricings() {
         try {
@@ -48,6 +52,7 @@ public class AdminPricingController {
     public ResponseEntity<?> createPricing(@RequestBody PricingTierRequest request) {
         try {
             VehiclePricing pricing = vehiclePricingService.createPricing(request);
+            tariffTable.rebuild();
             return ResponseEntity.status(HttpStatus.CREATED).body(pricing);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -61,6 +66,7 @@ public class AdminPricingController {
             @RequestBody PricingTierRequest request) {
         try {
             VehiclePricing pricing = vehiclePricingService.updatePricing(vehicleType, request);
+            tariffTable.rebuild();
             return ResponseEntity.ok(pricing);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -72,6 +78,7 @@ public class AdminPricingController {
     public ResponseEntity<?> deletePricing(@PathVariable String vehicleType) {
         try {
             vehiclePricingService.deletePricing(vehicleType);
+            tariffTable.rebuild();
             return ResponseEntity.ok(Map.of("message", "Pricing deleted successfully"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
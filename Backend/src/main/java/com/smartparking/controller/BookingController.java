@@ -1,6 +1,8 @@
 package com.smartparking.controller;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -10,7 +12,10 @@ import org.springframework.web.bind.annotation.*;
 import com.smartparking.dto.BookingResponse;
 import com.smartparking.dto.CheckoutResponse;
 import com.smartparking.model.Booking;
+import com.smartparking.model.VehicleType;
 import com.smartparking.service.BookingService;
+import com.smartparking.service.IdempotencyStore;
+import com.smartparking.service.LocationWriteExecutor;
 
 /**
  * Booking Controller
@@ -24,6 +29,12 @@ public class BookingController {
     @Autowired
     private BookingService service;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private LocationWriteExecutor locationWriter;
+
     /**
      * Book a parking slot
      * POST /api/bookings/book
@@ -31,31 +42,144 @@ public class BookingController {
     @PostMapping("/book")
     public ResponseEntity<?> bookSlot(
             @RequestBody Booking booking,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             Authentication authentication
     ) {
-        try {
-            String email = authentication.getName();
-            Long userId = service.getUserIdByEmail(email);
+        return idempotencyStore.execute(authentication.getName(), "POST /api/bookings/book", idempotencyKey, booking, () -> {
+            try {
+                Long userId = service.getUserId(authentication);
 
-            booking.setUserId(userId);
-            service.bookSlot(booking);
+                booking.setUserId(userId);
+                locationWriter.runForSlot(booking.getSlotId(), () -> service.bookSlot(booking));
 
-            return ResponseEntity.ok(new BookingResponse(
-                    booking.getId(),
-                    booking.getSlotId(),
-                    "Slot-" + booking.getSlotId(),
-                    booking.getVehicleType() != null ? booking.getVehicleType().name() : "CAR",
-                    booking.getEntryTime(),
-                    booking.getExitTime(),
-                    booking.getStatus().toString(),
-                    null,
-                    null
-            ));
+                return ResponseEntity.ok(new BookingResponse(
+                        booking.getId(),
+                        booking.getSlotId(),
+                        "Slot-" + booking.getSlotId(),
+                        booking.getVehicleType() != null ? booking.getVehicleType().name() : "CAR",
+                        booking.getEntryTime(),
+                        booking.getExitTime(),
+                        booking.getStatus().toString(),
+                        null,
+                        null
+                ));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Hold a parking slot for a short time before confirming it
+     * POST /api/bookings/hold
+     * Accepts the same body as /book; the hold is released automatically when it expires
+     */
+    @PostMapping("/hold")
+    public ResponseEntity<?> holdSlot(
+            @RequestBody Booking booking,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        return idempotencyStore.execute(authentication.getName(), "POST /api/bookings/hold", idempotencyKey, booking, () -> {
+            try {
+                Long userId = service.getUserId(authentication);
+
+                booking.setUserId(userId);
+                locationWriter.runForSlot(booking.getSlotId(), () -> service.holdSlot(booking));
+
+                return ResponseEntity.ok(Map.of(
+                        "booking", service.convertToResponse(booking),
+                        "holdExpiresAt", booking.getHoldExpiresAt()
+                ));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Confirm a held booking
+     * POST /api/bookings/{bookingId}/confirm
+     */
+    @PostMapping("/{bookingId}/confirm")
+    public ResponseEntity<?> confirmHold(
+            @PathVariable Long bookingId,
+            Authentication authentication
+    ) {
+        try {
+            Long userId = service.getUserId(authentication);
+
+            Long slotId = service.getBookingById(bookingId).getSlotId();
+            Booking booking = locationWriter.executeForSlot(slotId, () -> service.confirmHold(bookingId, userId));
+            return ResponseEntity.ok(service.convertToResponse(booking));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    /**
+     * Book any free slot of the given vehicle type at a location
+     * POST /api/bookings/auto
+     * Accepts: { locationId, vehicleType, entryTime, exitTime }
+     */
+    @PostMapping("/auto")
+    public ResponseEntity<?> bookAnySlot(
+            @RequestBody AutoBookingRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        return idempotencyStore.execute(authentication.getName(), "POST /api/bookings/auto", idempotencyKey, request, () -> {
+            try {
+                Long userId = service.getUserId(authentication);
+
+                Booking booking = new Booking(userId, null, request.entryTime);
+                booking.setExitTime(request.exitTime);
+                if (request.vehicleType != null && !request.vehicleType.isEmpty()) {
+                    booking.setVehicleType(VehicleType.fromString(request.vehicleType));
+                }
+
+                locationWriter.execute(request.locationId, () -> {
+                    service.bookAnySlot(booking, request.locationId);
+                    return null;
+                });
+
+                return ResponseEntity.ok(service.convertToResponse(booking));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Book several vehicles at once (fleet booking)
+     * POST /api/bookings/batch
+     * Accepts: { items: [ { slotId | locationId, vehicleType, entryTime, exitTime }, ... ] }
+     * Returns one result per item; failed items do not stop the rest of the batch
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> bookBatch(
+            @RequestBody BatchBookingRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        return idempotencyStore.execute(authentication.getName(), "POST /api/bookings/batch", idempotencyKey, request, () -> {
+            try {
+                Long userId = service.getUserId(authentication);
+
+                List<BookingService.BatchItemResult> results = service.bookSlots(userId, request.items);
+                long booked = results.stream().filter(BookingService.BatchItemResult::isSuccess).count();
+
+                return ResponseEntity.ok(Map.of(
+                        "requested", results.size(),
+                        "booked", booked,
+                        "results", results
+                ));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
+    }
+
     /**
      * Checkout a booking (exit parking slot)
      * POST /api/bookings/{bookingId}/checkout
@@ -64,24 +188,57 @@ public class BookingController {
     @PostMapping("/{bookingId}/checkout")
     public ResponseEntity<?> checkoutBooking(
             @PathVariable Long bookingId,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             Authentication authentication
     ) {
-        try {
-            String email = authentication.getName();
-            Long userId = service.getUserIdByEmail(email);
+        return idempotencyStore.execute(authentication.getName(), "POST /api/bookings/" + bookingId + "/checkout", idempotencyKey, null, () -> {
+            try {
+                Long userId = service.getUserId(authentication);
 
-            // Verify booking belongs to authenticated user
-            Booking booking = service.getBookingById(bookingId);
-            if (!booking.getUserId().equals(userId)) {
-                return ResponseEntity.status(403).body("Unauthorized: Booking does not belong to user");
+                // Verify booking belongs to authenticated user
+                Booking booking = service.getBookingById(bookingId);
+                if (!booking.getUserId().equals(userId)) {
+                    return ResponseEntity.status(403).body("Unauthorized: Booking does not belong to user");
+                }
+
+                // Process checkout
+                CheckoutResponse response = locationWriter.executeForSlot(booking.getSlotId(),
+                        () -> service.checkoutBooking(bookingId));
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
             }
+        });
+    }
 
-            // Process checkout
-            CheckoutResponse response = service.checkoutBooking(bookingId);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
-        }
+    /**
+     * Exit and pay in one request
+     * POST /api/bookings/{bookingId}/exit
+     * Accepts: { paymentMethod } (optional, defaults to CARD)
+     * Records exit time, calculates and charges the fee, releases the slot and returns the receipt
+     */
+    @PostMapping("/{bookingId}/exit")
+    public ResponseEntity<?> exitBooking(
+            @PathVariable Long bookingId,
+            @RequestBody(required = false) ExitRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        return idempotencyStore.execute(authentication.getName(), "POST /api/bookings/" + bookingId + "/exit", idempotencyKey, request, () -> {
+            try {
+                Long userId = service.getUserId(authentication);
+                String paymentMethod = request != null && request.paymentMethod != null ? request.paymentMethod : "CARD";
+
+                // Only recording the exit is a location write; the charge runs outside any transaction or lock
+                Long slotId = service.getSlotIdForBooking(bookingId);
+                BookingService.ExitQuote exit = locationWriter.executeForSlot(slotId,
+                        () -> service.recordExit(bookingId, userId));
+                CheckoutResponse response = service.payExit(exit, paymentMethod);
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
     }
 
     /**
@@ -94,8 +251,7 @@ public class BookingController {
             Authentication authentication
     ) {
         try {
-            String email = authentication.getName();
-            Long userId = service.getUserIdByEmail(email);
+            Long userId = service.getUserId(authentication);
 
             // Verify booking belongs to authenticated user
             Booking booking = service.getBookingById(bookingId);
@@ -103,7 +259,7 @@ public class BookingController {
                 return ResponseEntity.status(403).body("Unauthorized: Booking does not belong to user");
             }
 
-            service.cancelBooking(bookingId);
+            locationWriter.runForSlot(booking.getSlotId(), () -> service.cancelBooking(bookingId));
             return ResponseEntity.ok("Booking cancelled successfully");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -123,8 +279,7 @@ public class BookingController {
         // ... (existing logging code) ...
         
         try {
-            String email = auth.getName();
-            Long userId = service.getUserIdByEmail(email);
+            Long userId = service.getUserId(auth);
             
             // ... (rest of implementation) ...
             List<BookingResponse> bookings = service.getUserBookings(userId);
@@ -149,8 +304,7 @@ public class BookingController {
             Authentication authentication
     ) {
         try {
-            String email = authentication.getName();
-            Long userId = service.getUserIdByEmail(email);
+            Long userId = service.getUserId(authentication);
 
             Booking booking = service.getBookingById(bookingId);
             if (!booking.getUserId().equals(userId)) {
@@ -187,7 +341,7 @@ public class BookingController {
         
         try {
             String email = auth.getName();
-            Long userId = service.getUserIdByEmail(email);
+            Long userId = service.getUserId(auth);
             
             // Get all bookings for this user
             List<BookingResponse> userBookings = service.getUserBookings(userId);
@@ -227,8 +381,7 @@ public class BookingController {
         System.out.println("🔧 ========================================");
         
         try {
-            String email = auth.getName();
-            Long userId = service.getUserIdByEmail(email);
+            Long userId = service.getUserId(auth);
             
             // Get all bookings for this user
             List<Booking> allBookings = service.getBookingsByUser(userId);
@@ -276,4 +429,70 @@ public class BookingController {
             return ResponseEntity.status(500).body(java.util.Map.of("error", e.getMessage()));
         }
     }
+
+    /**
+     * Auto Booking Request DTO
+     */
+    public static class AutoBookingRequest {
+        public Long locationId;
+        public String vehicleType; // BIKE, CAR, SUV, TRUCK
+        public LocalDateTime entryTime;
+        public LocalDateTime exitTime;
+
+        public Long getLocationId() {
+            return locationId;
+        }
+
+        public void setLocationId(Long locationId) {
+            this.locationId = locationId;
+        }
+
+        public String getVehicleType() {
+            return vehicleType;
+        }
+
+        public void setVehicleType(String vehicleType) {
+            this.vehicleType = vehicleType;
+        }
+
+        public LocalDateTime getEntryTime() {
+            return entryTime;
+        }
+
+        public void setEntryTime(LocalDateTime entryTime) {
+            this.entryTime = entryTime;
+        }
+
+        public LocalDateTime getExitTime() {
+            return exitTime;
+        }
+
+        public void setExitTime(LocalDateTime exitTime) {
+            this.exitTime = exitTime;
+        }
+    }
+
+    public static class BatchBookingRequest {
+        public List<BookingService.BatchItem> items;
+
+        public List<BookingService.BatchItem> getItems() {
+            return items;
+        }
+
+        public void setItems(List<BookingService.BatchItem> items) {
+            this.items = items;
+        }
+    }
+
+    public static class ExitRequest {
+        public String paymentMethod;
+
+        public String getPaymentMethod() {
+            return paymentMethod;
+        }
+
+        public void setPaymentMethod(String paymentMethod) {
+            this.paymentMethod = paymentMethod;
+        }
+    }
 }
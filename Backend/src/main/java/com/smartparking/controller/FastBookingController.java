@@ -31,8 +31,7 @@ public class FastBookingController {
         try {
             long startTime = System.currentTimeMillis();
 
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
 
             List<BookingDetailDto> bookings = bookingCacheService.getRecentBookingsFromCache(userId, limit);
 
@@ -52,8 +51,7 @@ public class FastBookingController {
     @PostMapping("/cache/clear")
     public ResponseEntity<?> clearUserCache(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
 
             bookingCacheService.clearCache(userId);
 
@@ -13,6 +13,7 @@ import com.smartparking.model.Location;
 import com.smartparking.repository.LocationRepository;
 import com.smartparking.service.MapService;
 import com.smartparking.service.PricingConfigService;
+import com.smartparking.service.TariffTable;
 
 @RestController
 @RequestMapping("/api/locations")
@@ -22,11 +23,14 @@ public class LocationController {
     private final LocationRepository locationRepo;
     private final MapService mapService;
     private final PricingConfigService pricingConfigService;
+    private final TariffTable tariffTable;
 
-    public LocationController(LocationRepository locationRepo, MapService mapService, PricingConfigService pricingConfigService) {
+    public LocationController(LocationRepository locationRepo, MapService mapService,
+                              PricingConfigService pricingConfigService, TariffTable tariffTable) {
         this.locationRepo = locationRepo;
         this.mapService = mapService;
         this.pricingConfigService = pricingConfigService;
+        this.tariffTable = tariffTable;
     }
 
     /**
@@ -108,6 +112,7 @@ public class LocationController {
                 Map<String, Double> pricing = (Map<String, Double>) requestBody.get("pricing");
                 pricingConfigService.savePricingForLocation(saved.getId(), pricing);
             }
+            tariffTable.rebuild();
             
             return ResponseEntity.status(HttpStatus.CREATED).body(saved);
         } catch (Exception e) {
@@ -162,6 +167,7 @@ public class LocationController {
             
             // Delete location
             locationRepo.deleteById(id);
+            tariffTable.rebuild();
             
             return ResponseEntity.ok(Map.of("message", "Location deleted successfully"));
         } catch (Exception e) {
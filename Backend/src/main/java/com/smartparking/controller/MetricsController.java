@@ -0,0 +1,204 @@
+package com.smartparking.controller;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import com.smartparking.repository.BookingRepository;
+import com.smartparking.service.BookingRollupStore;
+import com.smartparking.service.BookingService;
+import com.smartparking.service.BookingStressDriver;
+import com.smartparking.service.GuardedPaymentClient;
+import com.smartparking.service.HoldExpiryWheel;
+import com.smartparking.service.LocationWriteExecutor;
+import com.smartparking.service.PasswordHasher;
+import com.smartparking.service.PaymentPipeline;
+import com.smartparking.service.SettlementWriter;
+import com.smartparking.service.SlotLockManager;
+
+/**
+ * Metrics Controller
+ * Runtime metrics of the booking engine for administrators
+ */
+@RestController
+@RequestMapping("/api/admin/metrics")
+@PreAuthorize("hasRole('ADMIN')")
+@CrossOrigin(origins = "http://localhost:5173")
+public class MetricsController {
+
+    @Autowired
+    private SlotLockManager slotLockManager;
+
+    @Autowired
+    private HoldExpiryWheel holdExpiryWheel;
+
+    @Autowired
+    private LocationWriteExecutor locationWriter;
+
+    @Autowired
+    private PaymentPipeline paymentPipeline;
+
+    @Autowired
+    private SettlementWriter settlementWriter;
+
+    @Autowired
+    private GuardedPaymentClient paymentClient;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private BookingRollupStore rollupStore;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingStressDriver stressDriver;
+
+    /**
+     * Get booking engine metrics
+     * GET /api/admin/metrics
+     */
+    @GetMapping
+    public ResponseEntity<?> getMetrics() {
+        try {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("slotLocks", slotLockManager.getMetrics());
+            metrics.put("pendingHolds", holdExpiryWheel.pendingCount());
+            metrics.put("locationWriters", locationWriter.getMetrics());
+            metrics.put("payments", paymentPipeline.getMetrics());
+            metrics.put("paymentGateway", paymentClient.getMetrics());
+            metrics.put("passwordHashing", passwordHasher.getMetrics());
+            metrics.put("settlements", settlementWriter.getMetrics());
+            metrics.put("reportRollups", rollupStore.getMetrics());
+            return ResponseEntity.ok(metrics);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Check the booking invariant: no slot holds more than one ACTIVE or HELD booking
+     * GET /api/admin/metrics/invariants
+     */
+    @GetMapping("/invariants")
+    public ResponseEntity<?> checkInvariants() {
+        try {
+            List<Long> violations = bookingRepository.findSlotsWithMultipleActiveBookings();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("invariantHolds", violations.isEmpty());
+            result.put("slotsWithMultipleActiveBookings", violations);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Start a concurrent booking stress test against the configured database
+     * Never enable on production data: it books and cancels real slots (see BookingStressDriver)
+     * POST /api/admin/metrics/stress
+     * Accepts: { locationId, vehicleType, threads, operations, skew, checkoutRatio, lockModes }
+     * lockModes, e.g. ["pessimistic", "optimistic"], runs the same load once per mode and compares them
+     * Returns 202 with the run status; poll GET /api/admin/metrics/stress for the report
+     * Disabled unless app.booking.stress-driver.enabled=true
+     */
+    @PostMapping("/stress")
+    public ResponseEntity<?> runStressTest(
+            @RequestBody StressRequest request,
+            Authentication authentication
+    ) {
+        try {
+            Long userId = bookingService.getUserId(authentication);
+            return ResponseEntity.accepted().body(stressDriver.start(userId, request.locationId, request.vehicleType,
+                    request.threads, request.operations, request.skew, request.checkoutRatio, request.lockModes));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Status of the current or last stress test, with its report once done
+     * GET /api/admin/metrics/stress
+     */
+    @GetMapping("/stress")
+    public ResponseEntity<?> getStressTestStatus() {
+        return ResponseEntity.ok(stressDriver.getStatus());
+    }
+
+    public static class StressRequest {
+        public Long locationId;
+        public String vehicleType = "CAR";
+        public int threads = 16;
+        public int operations = 1000;
+        public double skew = 1.0;
+        public double checkoutRatio = 0.5;
+        public List<String> lockModes;
+
+        public Long getLocationId() {
+            return locationId;
+        }
+
+        public void setLocationId(Long locationId) {
+            this.locationId = locationId;
+        }
+
+        public String getVehicleType() {
+            return vehicleType;
+        }
+
+        public void setVehicleType(String vehicleType) {
+            this.vehicleType = vehicleType;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getOperations() {
+            return operations;
+        }
+
+        public void setOperations(int operations) {
+            this.operations = operations;
+        }
+
+        public double getSkew() {
+            return skew;
+        }
+
+        public void setSkew(double skew) {
+            this.skew = skew;
+        }
+
+        public double getCheckoutRatio() {
+            return checkoutRatio;
+        }
+
+        public void setCheckoutRatio(double checkoutRatio) {
+            this.checkoutRatio = checkoutRatio;
+        }
+
+        public List<String> getLockModes() {
+            return lockModes;
+        }
+
+        public void setLockModes(List<String> lockModes) {
+            this.lockModes = lockModes;
+        }
+    }
+}
@@ -28,8 +28,7 @@ public class NotificationController {
     @GetMapping("/my")
     public ResponseEntity<?> getMyNotifications(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             List<NotificationResponse> notifications = notificationService.getUserNotifications(userId);
             return ResponseEntity.ok(notifications);
@@ -42,8 +41,7 @@ public class NotificationController {
     @GetMapping("/unread")
     public ResponseEntity<?> getUnreadNotifications(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             List<NotificationResponse> notifications = notificationService.getUnreadNotifications(userId);
             return ResponseEntity.ok(notifications);
@@ -56,8 +54,7 @@ public class NotificationController {
     @GetMapping("/unread/count")
     public ResponseEntity<?> getUnreadCount(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             long count = notificationService.getUnreadCount(userId);
             return ResponseEntity.ok(Map.of("unreadCount", count));
@@ -81,8 +78,7 @@ public class NotificationController {
     @PutMapping("/read-all")
     public ResponseEntity<?> markAllAsRead(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             notificationService.markAllAsRead(userId);
             return ResponseEntity.ok(Map.of("message", "All notifications marked as read"));
@@ -106,8 +102,7 @@ public class NotificationController {
     @PostMapping("/cleanup")
     public ResponseEntity<?> cleanupOldNotifications(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             notificationService.deleteOldNotifications(userId);
             return ResponseEntity.ok(Map.of("message", "Old notifications deleted"));
@@ -6,17 +6,21 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.smartparking.model.Booking;
 import com.smartparking.model.Booking.ParkingStatus;
-import com.smartparking.model.Slot;
 import com.smartparking.repository.BookingRepository;
-import com.smartparking.repository.SlotRepository;
 import com.smartparking.service.BookingService;
+import com.smartparking.service.FeeTicker;
+import com.smartparking.service.IdempotencyStore;
+import com.smartparking.service.PaymentPipeline;
 import com.smartparking.service.PaymentService;
+import com.smartparking.service.SettlementWriter;
 
 /**
  * Payment Controller
@@ -37,7 +41,16 @@ public class PaymentController {
     private BookingRepository bookingRepository;
 
     @Autowired
-    private SlotRepository slotRepository;
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private SettlementWriter settlementWriter;
+
+    @Autowired
+    private PaymentPipeline paymentPipeline;
+
+    @Autowired
+    private FeeTicker feeTicker;
 
     /**
      * Process payment for a booking
@@ -47,105 +60,220 @@ public class PaymentController {
     @PostMapping("/process")
     public ResponseEntity<?> processPayment(
             @RequestBody PaymentRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             Authentication authentication
     ) {
-        try {
-            System.out.println("💳 Processing payment request: " + request);
+        return idempotencyStore.execute(authentication.getName(), "POST /api/payments/process", idempotencyKey, request, () -> {
+            try {
+                System.out.println("💳 Processing payment request: " + request);
             
-            if (request == null) {
-                return ResponseEntity.badRequest().body(createErrorResponse("Request body is null"));
-            }
-            if (request.bookingId == null) {
-                System.out.println("❌ Error: request.bookingId is NULL");
-                return ResponseEntity.badRequest().body(createErrorResponse("Booking ID is required"));
-            }
+                if (request == null) {
+                    return ResponseEntity.badRequest().body(createErrorResponse("Request body is null"));
+                }
+                if (request.bookingId == null) {
+                    System.out.println("❌ Error: request.bookingId is NULL");
+                    return ResponseEntity.badRequest().body(createErrorResponse("Booking ID is required"));
+                }
             
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+                Long userId = bookingService.getUserId(authentication);
 
-            // Validate booking exists and belongs to user
-            Booking booking = bookingRepository.findById(request.bookingId)
-                    .orElseThrow(() -> new Exception("Booking not found with ID: " + request.bookingId));
+                // Validate booking exists and belongs to user
+                Booking booking = bookingRepository.findById(request.bookingId)
+                        .orElseThrow(() -> new Exception("Booking not found with ID: " + request.bookingId));
 
-            if (!booking.getUserId().equals(userId)) {
-                return ResponseEntity.status(403)
-                        .body(createErrorResponse("Unauthorized: Booking does not belong to user"));
-            }
+                if (!booking.getUserId().equals(userId)) {
+                    return ResponseEntity.status(403)
+                            .body(createErrorResponse("Unauthorized: Booking does not belong to user"));
+                }
+                // A completed booking's fee quotes as final, so it must be rejected before the amount check
+                if (booking.getStatus() != ParkingStatus.ACTIVE) {
+                    return ResponseEntity.badRequest()
+                            .body(createErrorResponse("Booking is not awaiting payment. Current status: " + booking.getStatus()));
+                }
 
-            // Validate amount matches booking fee
-            // Use Math.abs for float comparison or accept if payment >= fee
-            System.out.println("💰 Fee Validation - Required: " + booking.getParkingFee() + ", Provided: " + request.amount);
-            
-            if (request.amount == null) {
-                 return ResponseEntity.badRequest().body(createErrorResponse("Amount is required"));
-            }
-            
-            // Allow small difference for floating point or if user pays more due to live ticker
-            double diff = Math.abs(request.amount - (booking.getParkingFee() != null ? booking.getParkingFee() : 0.0));
-            if (diff > 1.0) { // Allow 1.0 (currency unit) tolerance
-                System.out.println("⚠️ Amount mismatch! Diff: " + diff);
-                // For now, let's accept it if it's close or update the fee
-                // return ResponseEntity.badRequest().body(createErrorResponse("Amount mismatch. Expected: " + booking.getParkingFee()));
-                
-                // UPDATE the fee to match what the user is paying (assuming they paid the live rate)
-                System.out.println("🔧 Updating booking fee to match payment amount: " + request.amount);
-                booking.setParkingFee(request.amount);
-                bookingRepository.save(booking);
+                ResponseEntity<?> invalid = checkAmount(request, booking);
+                if (invalid != null) {
+                    return invalid;
+                }
+
+                // Process payment through PaymentService
+                PaymentService.PaymentResult paymentResult = paymentService.processPayment(
+                        booking.getId(), request.amount, request.paymentMethod);
+
+                if (paymentResult.isSuccess()) {
+                    // Release the parking slot and mark the booking COMPLETED (payment done)
+                    try {
+                        settlementWriter.settle(booking.getId(), booking.getSlotId(), paymentResult.getTransactionId());
+                    } catch (RuntimeException e) {
+                        // Charged but not settled: answer 2xx so a retry with the same Idempotency-Key
+                        // replays this response instead of reaching the gateway again
+                        System.out.println("⚠️ Payment captured for booking " + booking.getId() + " (transaction "
+                                + paymentResult.getTransactionId() + ") but not settled: " + e.getMessage());
+                        Map<String, Object> response = createErrorResponse(e.getMessage());
+                        response.put("captured", true);
+                        response.put("settlementPending", true);
+                        response.put("transactionId", paymentResult.getTransactionId());
+                        response.put("bookingId", booking.getId());
+                        response.put("amount", request.amount);
+                        return ResponseEntity.accepted().body(response);
+                    }
+
+                    System.out.println("✅ Payment processed successfully. Transaction ID: " + paymentResult.getTransactionId());
+
+                    // Return success response
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("transactionId", paymentResult.getTransactionId());
+                    response.put("message", "Payment successful - Slot released");
+                    response.put("bookingId", booking.getId());
+                    response.put("slotId", booking.getSlotId());
+                    response.put("amount", request.amount);
+                    response.put("paymentMethod", request.paymentMethod);
+                    response.put("timestamp", LocalDateTime.now());
+
+                    return ResponseEntity.ok(response);
+                } else if (paymentResult.isInDoubt()) {
+                    // The provider may have charged: the booking stays blocked until the attempt is confirmed
+                    System.out.println("❓ Payment in doubt for booking " + booking.getId() + ": " + paymentResult.getMessage());
+                    Map<String, Object> response = createErrorResponse(paymentResult.getMessage());
+                    response.put("inDoubt", true);
+                    response.put("bookingId", booking.getId());
+                    return ResponseEntity.accepted().body(response);
+                } else if (paymentResult.isPending()) {
+                    // Provider unavailable: nothing was charged, the booking stays payable
+                    System.out.println("⏸️ Payment pending: " + paymentResult.getMessage());
+                    Map<String, Object> response = createErrorResponse(paymentResult.getMessage());
+                    response.put("pending", true);
+                    return ResponseEntity.status(503).body(response);
+                } else {
+                    System.out.println("❌ Payment failed: " + paymentResult.getMessage());
+                    return ResponseEntity.badRequest()
+                            .body(createErrorResponse(paymentResult.getMessage()));
+                }
+
+            } catch (IllegalArgumentException e) {
+                 // Catch specific Spring Data "id must not be null" error
+                 System.out.println("❌ IllegalArgumentException (likely null ID): " + e.getMessage());
+                 e.printStackTrace();
+                 return ResponseEntity.badRequest().body(createErrorResponse("Invalid ID provided: " + e.getMessage()));
+            } catch (Exception e) {
+                System.out.println("❌ Payment processing error: " + e.getMessage());
+                e.printStackTrace();
+                return ResponseEntity.badRequest()
+                        .body(createErrorResponse("Payment processing failed: " + e.getMessage()));
             }
+        });
+    }
 
-            // Process payment through PaymentService
-            PaymentService.PaymentResult paymentResult = paymentService.processPayment(request.amount);
+    /**
+     * Submit a payment without waiting for the gateway
+     * POST /api/payments/submit
+     * Accepts: { bookingId, amount, paymentMethod }
+     * Returns 202 with { paymentId, status: PENDING }; poll /api/payments/status/{paymentId}
+     */
+    @PostMapping("/submit")
+    public ResponseEntity<?> submitPayment(
+            @RequestBody PaymentRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication
+    ) {
+        return idempotencyStore.execute(authentication.getName(), "POST /api/payments/submit", idempotencyKey, request, () -> {
+            try {
+                if (request == null || request.bookingId == null) {
+                    return ResponseEntity.badRequest().body(createErrorResponse("Booking ID is required"));
+                }
 
-            if (paymentResult.isSuccess()) {
-                // Release the parking slot
+                Long userId = bookingService.getUserId(authentication);
+                Booking booking = bookingRepository.findById(request.bookingId)
+                        .orElseThrow(() -> new Exception("Booking not found with ID: " + request.bookingId));
+                if (!booking.getUserId().equals(userId)) {
+                    return ResponseEntity.status(403)
+                            .body(createErrorResponse("Unauthorized: Booking does not belong to user"));
+                }
+                if (booking.getStatus() != ParkingStatus.ACTIVE) {
+                    return ResponseEntity.badRequest()
+                            .body(createErrorResponse("Booking is not awaiting payment. Current status: " + booking.getStatus()));
+                }
                 if (booking.getSlotId() == null) {
-                     System.out.println("❌ Error: booking.SlotId is NULL for booking " + booking.getId());
-                     throw new Exception("Booking has no assigned slot ID");
+                    return ResponseEntity.badRequest().body(createErrorResponse("Booking has no assigned slot ID"));
                 }
-                
-                Slot slot = slotRepository.findById(booking.getSlotId())
-                        .orElseThrow(() -> new Exception("Slot not found with ID: " + booking.getSlotId()));
-                
-                slot.setAvailable(true); // Mark slot as available again
-                slotRepository.save(slot);
-
-                // Update booking status to COMPLETED (payment done)
-                booking.setStatus(ParkingStatus.COMPLETED);
-                booking.setPaymentStatus("PAID");
-                booking.setPaymentTime(LocalDateTime.now());
-                booking.setTransactionId(paymentResult.getTransactionId());
-                bookingRepository.save(booking);
-
-                System.out.println("✅ Payment processed successfully. Transaction ID: " + paymentResult.getTransactionId());
-
-                // Return success response
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("transactionId", paymentResult.getTransactionId());
-                response.put("message", "Payment successful - Slot released");
-                response.put("bookingId", booking.getId());
-                response.put("slotId", booking.getSlotId());
-                response.put("amount", request.amount);
-                response.put("paymentMethod", request.paymentMethod);
-                response.put("timestamp", LocalDateTime.now());
-
-                return ResponseEntity.ok(response);
-            } else {
-                System.out.println("❌ Payment failed: " + paymentResult.getMessage());
+
+                ResponseEntity<?> invalid = checkAmount(request, booking);
+                if (invalid != null) {
+                    return invalid;
+                }
+
+                PaymentPipeline.PaymentTicket ticket = paymentPipeline.submit(
+                        booking.getId(), booking.getSlotId(), request.amount, request.paymentMethod);
+                return ResponseEntity.accepted().body(ticket.toMap());
+            } catch (Exception e) {
+                System.out.println("❌ Payment submit error: " + e.getMessage());
+                return ResponseEntity.badRequest()
+                        .body(createErrorResponse("Payment processing failed: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Get the status of a submitted payment
+     * GET /api/payments/status/{paymentId}
+     */
+    @GetMapping("/status/{paymentId}")
+    public ResponseEntity<?> getPaymentStatus(
+            @PathVariable String paymentId,
+            Authentication authentication
+    ) {
+        try {
+            PaymentPipeline.PaymentTicket ticket = paymentPipeline.getTicket(paymentId);
+            if (ticket == null) {
+                return ResponseEntity.status(404).body(createErrorResponse("Payment not found or expired"));
+            }
+
+            Long userId = bookingService.getUserId(authentication);
+            Booking booking = bookingRepository.findById(ticket.getBookingId()).orElse(null);
+            if (booking == null || !booking.getUserId().equals(userId)) {
+                return ResponseEntity.status(403).body(createErrorResponse("Unauthorized"));
+            }
+
+            return ResponseEntity.ok(ticket.toMap());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Failed to fetch payment status"));
+        }
+    }
+
+    /**
+     * Stream the running fee of a booking
+     * GET /api/payments/fee-stream/{bookingId}
+     * Server-sent "fee" events: { bookingId, durationMinutes, ratePerHour, amount, final }
+     * A new event is sent whenever the billed minutes change; checked-out bookings get one final event
+     */
+    @GetMapping(value = "/fee-stream/{bookingId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamFee(
+            @PathVariable Long bookingId,
+            Authentication authentication
+    ) {
+        try {
+            Long userId = bookingService.getUserId(authentication);
+            Booking booking = bookingRepository.findById(bookingId)
+                    .orElseThrow(() -> new Exception("Booking not found with ID: " + bookingId));
+            if (!booking.getUserId().equals(userId)) {
+                return ResponseEntity.status(403)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(createErrorResponse("Unauthorized"));
+            }
+            if (booking.getStatus() != ParkingStatus.ACTIVE) {
                 return ResponseEntity.badRequest()
-                        .body(createErrorResponse(paymentResult.getMessage()));
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(createErrorResponse("Booking is not awaiting payment. Current status: " + booking.getStatus()));
             }
 
-        } catch (IllegalArgumentException e) {
-             // Catch specific Spring Data "id must not be null" error
-             System.out.println("❌ IllegalArgumentException (likely null ID): " + e.getMessage());
-             e.printStackTrace();
-             return ResponseEntity.badRequest().body(createErrorResponse("Invalid ID provided: " + e.getMessage()));
+            SseEmitter emitter = feeTicker.subscribe(booking);
+            return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
         } catch (Exception e) {
-            System.out.println("❌ Payment processing error: " + e.getMessage());
-            e.printStackTrace();
             return ResponseEntity.badRequest()
-                    .body(createErrorResponse("Payment processing failed: " + e.getMessage()));
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(createErrorResponse("Failed to open fee stream: " + e.getMessage()));
         }
     }
 
@@ -156,8 +284,7 @@ public class PaymentController {
     @GetMapping("/history")
     public ResponseEntity<?> getPaymentHistory(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
 
             // Get all completed bookings (paid bookings)
             List<Booking> paidBookings = bookingRepository.findByUserIdAndStatus(userId, ParkingStatus.COMPLETED);
@@ -187,8 +314,7 @@ public class PaymentController {
             Authentication authentication
     ) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new Exception("Booking not found"));
@@ -213,6 +339,34 @@ public class PaymentController {
         }
     }
 
+    /**
+     * Validate the paid amount against the authoritative fee from FeeTicker
+     * Records the fee on the booking; returns an error response, or null if the payment can go ahead
+     * Callers must have checked that the booking is ACTIVE
+     */
+    private ResponseEntity<?> checkAmount(PaymentRequest request, Booking booking) {
+        System.out.println("💰 Fee Validation - Recorded: " + booking.getParkingFee() + ", Provided: " + request.amount);
+
+        if (request.amount == null) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Amount is required"));
+        }
+
+        // The payment screen shows the streamed fee, so the amount must match it exactly
+        Double fee = feeTicker.matchCharge(booking, request.amount);
+        if (fee == null) {
+            double expected = feeTicker.quote(booking).getAmount();
+            System.out.println("⚠️ Amount mismatch! Expected: " + expected);
+            return ResponseEntity.badRequest().body(createErrorResponse("Amount mismatch. Expected: " + expected));
+        }
+
+        if (booking.getParkingFee() == null || Math.abs(booking.getParkingFee() - fee) >= 0.005) {
+            booking.setParkingFee(fee);
+            bookingRepository.save(booking);
+        }
+        request.amount = fee;
+        return null;
+    }
+
     // Helper method to create error responses
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> error = new HashMap<>();
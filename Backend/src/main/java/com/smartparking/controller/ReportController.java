@@ -1,9 +1,9 @@
 package com.smartparking.controller;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -13,8 +13,11 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import com.smartparking.dto.*;
+import com.smartparking.service.BookingRollupStore;
 import com.smartparking.service.ReportService;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 import java.util.List;
 
 @RestController
@@ -26,6 +29,9 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private BookingRollupStore rollupStore;
+
     @GetMapping("/daily")
     public ResponseEntity<?> getDailyReport() {
         try {
@@ -126,12 +132,17 @@ public class ReportController {
 
     // ========== CSV Export Endpoint ==========
 
+    /**
+     * Stream the bookings CSV straight to the response; gzip=true compresses it on the fly
+     */
     @GetMapping(value = "/export/csv", produces = "text/csv")
     public ResponseEntity<?> exportBookingsCsv(
             @RequestParam(value = "startDate", required = false) String startDateStr,
             @RequestParam(value = "endDate", required = false) String endDateStr,
             @RequestParam(value = "slotId", required = false) Long slotId,
-            @RequestParam(value = "userId", required = false) Long userId
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            HttpServletResponse response
     ) {
         try {
             LocalDateTime start = null;
@@ -146,19 +157,32 @@ public class ReportController {
                 }
             }
 
-            String csv = reportService.generateBookingsCsv(start, end, slotId, userId);
-
             String filename = "bookings_export" +
                     (start != null && end != null ? ("_" + start.toLocalDate() + "-" + end.toLocalDate()) : "") +
                     (slotId != null ? ("_slot-" + slotId) : "") +
                     (userId != null ? ("_user-" + userId) : "") +
                     ".csv";
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                    .body(csv.getBytes(StandardCharsets.UTF_8));
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+            if (gzip) {
+                response.setHeader("Content-Encoding", "gzip");
+                GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 64 * 1024);
+                reportService.writeBookingsCsv(start, end, slotId, userId, out);
+                out.finish();
+            } else {
+                reportService.writeBookingsCsv(start, end, slotId, userId, response.getOutputStream());
+            }
+            response.flushBuffer();
+            // The body has been written; nothing left for Spring to render
+            return null;
         } catch (Exception e) {
+            if (response.isCommitted()) {
+                // Too late for an error body; the client sees a truncated download
+                System.out.println("❌ [ReportController] CSV export aborted: " + e.getMessage());
+                return null;
+            }
+            response.reset();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", e.getMessage()));
         }
@@ -334,4 +358,29 @@ public class ReportController {
                     .body(Map.of("error", e.getMessage()));
         }
     }
+    
+    /**
+     * Rebuild the hourly report rollups for a period, e.g. after bookings were edited in the database
+     */
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<?> backfillRollups(
+            @RequestParam(value = "startDate") String startDateStr,
+            @RequestParam(value = "endDate", required = false) String endDateStr
+    ) {
+        try {
+            LocalDateTime start = LocalDateTime.parse(startDateStr);
+            LocalDateTime end = endDateStr != null ? LocalDateTime.parse(endDateStr) : LocalDateTime.now();
+            if (end.isBefore(start)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "endDate must not be before startDate"));
+            }
+            
+            rollupStore.backfill(start, end);
+            return ResponseEntity.accepted().body(rollupStore.getMetrics());
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid date format: " + e.getParsedString()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
 }
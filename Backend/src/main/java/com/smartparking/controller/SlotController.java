@@ -1,13 +1,18 @@
 package com.smartparking.controller;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.smartparking.dto.SlotResponse;
 import com.smartparking.model.Slot;
 import com.smartparking.repository.SlotRepository;
+import com.smartparking.service.SlotIntervalIndex;
 import com.smartparking.service.SlotService;
 
 @RestController
@@ -17,10 +22,12 @@ public class SlotController {
 
     private final SlotRepository slotRepo;
     private final SlotService slotService;
+    private final SlotIntervalIndex intervalIndex;
 
-    public SlotController(SlotRepository slotRepo, SlotService slotService) {
+    public SlotController(SlotRepository slotRepo, SlotService slotService, SlotIntervalIndex intervalIndex) {
         this.slotRepo = slotRepo;
         this.slotService = slotService;
+        this.intervalIndex = intervalIndex;
     }
 
     // ✅ UPDATED: Return slots with location info AND maintenance status
@@ -50,10 +57,24 @@ public class SlotController {
             @PathVariable Long id,
             @RequestBody Slot updatedSlot) {
 
-        Slot slot = slotRepo.findById(id)
-                .orElseThrow(() -> new RuntimeException("Slot not found"));
+        // Goes through the location's write shard when sharding is enabled
+        return slotService.setSlotAvailability(id, updatedSlot.isAvailable());
+    }
+
+    // ✅ GET /api/slots/{id}/next-free-window?after=2025-01-01T10:00:00&durationMinutes=120
+    @GetMapping("/{id}/next-free-window")
+    public ResponseEntity<?> getNextFreeWindow(
+            @PathVariable Long id,
+            @RequestParam(required = false) LocalDateTime after,
+            @RequestParam(defaultValue = "120") long durationMinutes) {
+
+        LocalDateTime from = after != null ? after : LocalDateTime.now();
+        LocalDateTime freeFrom = intervalIndex.findFirstFreeWindow(id, from, durationMinutes);
 
-        slot.setAvailable(updatedSlot.isAvailable());
-        return slotRepo.save(slot);
+        Map<String, Object> response = new HashMap<>();
+        response.put("slotId", id);
+        response.put("durationMinutes", durationMinutes);
+        response.put("freeFrom", freeFrom); // null while an open-ended booking holds the slot
+        return ResponseEntity.ok(response);
     }
 }
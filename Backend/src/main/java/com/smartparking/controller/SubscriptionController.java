@@ -26,8 +26,7 @@ public class SubscriptionController {
     @GetMapping("/my")
     public ResponseEntity<?> getMySubscription(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             UserSubscription subscription = subscriptionService.getUserSubscription(userId);
             return ResponseEntity.ok(subscription);
@@ -44,8 +43,7 @@ public class SubscriptionController {
             @RequestParam Double monthlyAmount,
             @RequestParam Integer slots) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             UserSubscription subscription = subscriptionService.createSubscription(userId, planType, monthlyAmount, slots);
             return ResponseEntity.status(HttpStatus.CREATED).body(subscription);
@@ -62,8 +60,7 @@ public class SubscriptionController {
             @RequestParam Double monthlyAmount,
             @RequestParam Integer slots) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             UserSubscription subscription = subscriptionService.updateSubscription(userId, planType, monthlyAmount, slots);
             return ResponseEntity.ok(subscription);
@@ -76,8 +73,7 @@ public class SubscriptionController {
     @DeleteMapping("/cancel")
     public ResponseEntity<?> cancelSubscription(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             subscriptionService.cancelSubscription(userId);
             return ResponseEntity.ok(Map.of("message", "Subscription cancelled"));
@@ -90,8 +86,7 @@ public class SubscriptionController {
     @GetMapping("/check")
     public ResponseEntity<?> checkSubscriptionStatus(Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long userId = bookingService.getUserIdByEmail(email);
+            Long userId = bookingService.getUserId(authentication);
             
             Boolean hasSubscription = subscriptionService.hasActiveSubscription(userId);
             return ResponseEntity.ok(Map.of("hasActiveSubscription", hasSubscription));
@@ -3,8 +3,12 @@ package com.smartparking.model;
 import java.time.LocalDateTime;
 import jakarta.persistence.*;
 
+import com.smartparking.service.BookingRollupListener;
+
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings",
+        indexes = @Index(name = "idx_booking_slot_entry", columnList = "slotId, entryTime"))
+@EntityListeners(BookingRollupListener.class)
 public class Booking {
 
     @Id
@@ -24,7 +28,10 @@ public class Booking {
 
     // Parking Status
     @Enumerated(EnumType.STRING)
-    private ParkingStatus status = ParkingStatus.ACTIVE;  // ACTIVE, COMPLETED, CANCELLED
+    private ParkingStatus status = ParkingStatus.ACTIVE;  // HELD, ACTIVE, COMPLETED, CANCELLED
+
+    // Reservation Hold: a HELD booking is released automatically after this time unless confirmed
+    private LocalDateTime holdExpiresAt;
 
     // Payment Details
     private Double parkingFee;         // Calculated fee for the parking duration
@@ -35,6 +42,7 @@ public class Booking {
 
     // Enum for parking status
     public enum ParkingStatus {
+        HELD,
         ACTIVE,
         COMPLETED,
         CANCELLED
@@ -107,6 +115,14 @@ public class Booking {
         this.status = status;
     }
 
+    public LocalDateTime getHoldExpiresAt() {
+        return holdExpiresAt;
+    }
+
+    public void setHoldExpiresAt(LocalDateTime holdExpiresAt) {
+        this.holdExpiresAt = holdExpiresAt;
+    }
+
     public Double getParkingFee() {
         return parkingFee;
     }
@@ -0,0 +1,136 @@
+package com.smartparking.model;
+
+import java.time.LocalDateTime;
+import jakarta.persistence.*;
+
+/**
+ * Hourly booking rollup
+ * One row per (entry hour, location, vehicle type, status) with the counts and sums the
+ * reports need. Maintained by BookingRollupStore; never edited by hand.
+ */
+@Entity
+@Table(name = "booking_hourly_rollups",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"hourStart", "locationId", "vehicleType", "status"}),
+        indexes = @Index(name = "idx_rollup_hour", columnList = "hourStart"))
+public class BookingHourlyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Entry time truncated to the hour
+    @Column(nullable = false)
+    private LocalDateTime hourStart;
+
+    private Long locationId;
+
+    @Enumerated(EnumType.STRING)
+    private VehicleType vehicleType;
+
+    @Enumerated(EnumType.STRING)
+    private Booking.ParkingStatus status;
+
+    private long bookingCount;
+
+    // Fees of COMPLETED bookings only
+    private long feeCount;
+    private double revenue;
+    private double minFee;
+    private double maxFee;
+
+    // Bookings with both entry and exit time and a non-negative duration
+    private long durationCount;
+    private long durationMinutesSum;
+    private long minDurationMinutes;
+    private long maxDurationMinutes;
+
+    public BookingHourlyRollup() {}
+
+    public BookingHourlyRollup(LocalDateTime hourStart, Long locationId, VehicleType vehicleType,
+                               Booking.ParkingStatus status) {
+        this.hourStart = hourStart;
+        this.locationId = locationId;
+        this.vehicleType = vehicleType;
+        this.status = status;
+    }
+
+    /**
+     * Count one booking into this row
+     */
+    public void add(Double parkingFee, Long durationMinutes) {
+        bookingCount++;
+        if (status == Booking.ParkingStatus.COMPLETED && parkingFee != null) {
+            minFee = feeCount == 0 ? parkingFee : Math.min(minFee, parkingFee);
+            maxFee = feeCount == 0 ? parkingFee : Math.max(maxFee, parkingFee);
+            feeCount++;
+            revenue += parkingFee;
+        }
+        if (durationMinutes != null && durationMinutes >= 0) {
+            minDurationMinutes = durationCount == 0 ? durationMinutes : Math.min(minDurationMinutes, durationMinutes);
+            maxDurationMinutes = durationCount == 0 ? durationMinutes : Math.max(maxDurationMinutes, durationMinutes);
+            durationCount++;
+            durationMinutesSum += durationMinutes;
+        }
+    }
+
+    /**
+     * Add the counts and sums of another row into this one
+     */
+    public void merge(BookingHourlyRollup other) {
+        if (other.feeCount > 0) {
+            minFee = feeCount == 0 ? other.minFee : Math.min(minFee, other.minFee);
+            maxFee = feeCount == 0 ? other.maxFee : Math.max(maxFee, other.maxFee);
+        }
+        if (other.durationCount > 0) {
+            minDurationMinutes = durationCount == 0 ? other.minDurationMinutes : Math.min(minDurationMinutes, other.minDurationMinutes);
+            maxDurationMinutes = durationCount == 0 ? other.maxDurationMinutes : Math.max(maxDurationMinutes, other.maxDurationMinutes);
+        }
+        bookingCount += other.bookingCount;
+        feeCount += other.feeCount;
+        revenue += other.revenue;
+        durationCount += other.durationCount;
+        durationMinutesSum += other.durationMinutesSum;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public LocalDateTime getHourStart() { return hourStart; }
+    public void setHourStart(LocalDateTime hourStart) { this.hourStart = hourStart; }
+
+    public Long getLocationId() { return locationId; }
+    public void setLocationId(Long locationId) { this.locationId = locationId; }
+
+    public VehicleType getVehicleType() { return vehicleType; }
+    public void setVehicleType(VehicleType vehicleType) { this.vehicleType = vehicleType; }
+
+    public Booking.ParkingStatus getStatus() { return status; }
+    public void setStatus(Booking.ParkingStatus status) { this.status = status; }
+
+    public long getBookingCount() { return bookingCount; }
+    public void setBookingCount(long bookingCount) { this.bookingCount = bookingCount; }
+
+    public long getFeeCount() { return feeCount; }
+    public void setFeeCount(long feeCount) { this.feeCount = feeCount; }
+
+    public double getRevenue() { return revenue; }
+    public void setRevenue(double revenue) { this.revenue = revenue; }
+
+    public double getMinFee() { return minFee; }
+    public void setMinFee(double minFee) { this.minFee = minFee; }
+
+    public double getMaxFee() { return maxFee; }
+    public void setMaxFee(double maxFee) { this.maxFee = maxFee; }
+
+    public long getDurationCount() { return durationCount; }
+    public void setDurationCount(long durationCount) { this.durationCount = durationCount; }
+
+    public long getDurationMinutesSum() { return durationMinutesSum; }
+    public void setDurationMinutesSum(long durationMinutesSum) { this.durationMinutesSum = durationMinutesSum; }
+
+    public long getMinDurationMinutes() { return minDurationMinutes; }
+    public void setMinDurationMinutes(long minDurationMinutes) { this.minDurationMinutes = minDurationMinutes; }
+
+    public long getMaxDurationMinutes() { return maxDurationMinutes; }
+    public void setMaxDurationMinutes(long maxDurationMinutes) { this.maxDurationMinutes = maxDurationMinutes; }
+}
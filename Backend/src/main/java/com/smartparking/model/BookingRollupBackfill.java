@@ -0,0 +1,66 @@
+package com.smartparking.model;
+
+import java.time.LocalDateTime;
+import jakarta.persistence.*;
+
+/**
+ * Rollup backfill checkpoint
+ * Progress of the initial booking_hourly_rollups backfill: hours before backfilledUntil
+ * are done, and completedAt is set once everything up to targetEnd is. Written in the same
+ * transaction as each backfilled day, so after a crash the backfill resumes where it stopped.
+ * flushedUntil is the start of the last flush that rebuilt every dirty hour: writes committed
+ * before it are in the rollups, later ones are caught up on the next start.
+ * A single row, maintained by BookingRollupStore.
+ */
+@Entity
+@Table(name = "booking_rollup_backfill")
+public class BookingRollupBackfill {
+
+    public static final Long ID = 1L;
+
+    @Id
+    private Long id = ID;
+
+    @Column(nullable = false)
+    private LocalDateTime startedFrom;
+
+    @Column(nullable = false)
+    private LocalDateTime targetEnd;
+
+    @Column(nullable = false)
+    private LocalDateTime backfilledUntil;
+
+    private LocalDateTime completedAt;
+
+    private LocalDateTime flushedUntil;
+
+    public BookingRollupBackfill() {}
+
+    public BookingRollupBackfill(LocalDateTime startedFrom, LocalDateTime targetEnd) {
+        this.startedFrom = startedFrom;
+        this.targetEnd = targetEnd;
+        this.backfilledUntil = startedFrom;
+    }
+
+    public boolean isComplete() {
+        return completedAt != null;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public LocalDateTime getStartedFrom() { return startedFrom; }
+    public void setStartedFrom(LocalDateTime startedFrom) { this.startedFrom = startedFrom; }
+
+    public LocalDateTime getTargetEnd() { return targetEnd; }
+    public void setTargetEnd(LocalDateTime targetEnd) { this.targetEnd = targetEnd; }
+
+    public LocalDateTime getBackfilledUntil() { return backfilledUntil; }
+    public void setBackfilledUntil(LocalDateTime backfilledUntil) { this.backfilledUntil = backfilledUntil; }
+
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+
+    public LocalDateTime getFlushedUntil() { return flushedUntil; }
+    public void setFlushedUntil(LocalDateTime flushedUntil) { this.flushedUntil = flushedUntil; }
+}
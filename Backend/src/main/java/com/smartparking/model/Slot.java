@@ -25,6 +25,11 @@ public class Slot {
     @Column(length = 50, nullable = false)
     private String slotType = "CAR";  // CAR, BIKE, TRUCK, EV
 
+    // Optimistic locking version, used by the optimistic booking mode
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private long version;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "location_id", nullable = false)
     @com.fasterxml.jackson.annotation.JsonIgnore
@@ -87,6 +92,14 @@ public class Slot {
         this.location = location;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getSlotType() {
         return slotType;
     }
@@ -0,0 +1,55 @@
+package com.smartparking.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.smartparking.model.BookingHourlyRollup;
+
+/**
+ * Booking Hourly Rollup Repository
+ */
+public interface BookingHourlyRollupRepository extends JpaRepository<BookingHourlyRollup, Long> {
+
+    /**
+     * Rollup rows for the hours in [from, to)
+     */
+    @Query("""
+        SELECT r FROM BookingHourlyRollup r
+        WHERE r.hourStart >= :from AND r.hourStart < :to
+    """)
+    List<BookingHourlyRollup> findByHourRange(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+
+    /**
+     * Totals per location over the hours in [from, to)
+     * { locationId, bookingCount, feeCount, revenue, durationCount, durationMinutesSum }
+     */
+    @Query("""
+        SELECT r.locationId, SUM(r.bookingCount), SUM(r.feeCount), SUM(r.revenue),
+               SUM(r.durationCount), SUM(r.durationMinutesSum)
+        FROM BookingHourlyRollup r
+        WHERE r.hourStart >= :from AND r.hourStart < :to AND r.locationId IS NOT NULL
+        GROUP BY r.locationId
+    """)
+    List<Object[]> sumByLocation(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+
+    /**
+     * Drop the rows of the hours in [from, to) before they are rewritten
+     */
+    @Modifying
+    @Query("DELETE FROM BookingHourlyRollup r WHERE r.hourStart >= :from AND r.hourStart < :to")
+    int deleteByHourRange(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+}
@@ -2,14 +2,20 @@ package com.smartparking.repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import com.smartparking.model.Booking;
 import com.smartparking.model.Booking.ParkingStatus;
 
+import jakarta.persistence.QueryHint;
+
 /**
  * Booking Repository
  * Handles database queries for parking bookings with timer tracking.
@@ -17,12 +23,12 @@ import com.smartparking.model.Booking.ParkingStatus;
 public interface BookingRepository extends JpaRepository<Booking, Long> {
 
     /**
-     * Check if a time slot has conflicts with existing bookings
+     * Check if a time slot has conflicts with existing bookings (active or held)
      */
     @Query("""
         SELECT COUNT(b) > 0 FROM Booking b
         WHERE b.slotId = :slotId
-        AND b.status = 'ACTIVE'
+        AND b.status IN ('ACTIVE', 'HELD')
         AND (b.entryTime < :exitTime AND (b.exitTime IS NULL OR b.exitTime > :entryTime))
     """)
     boolean hasTimeConflict(
@@ -31,6 +37,12 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
         @Param("exitTime") LocalDateTime exitTime
     );
 
+    /**
+     * Slot of a booking, without loading the booking itself
+     */
+    @Query("SELECT b.slotId FROM Booking b WHERE b.id = :bookingId")
+    Optional<Long> findSlotIdById(@Param("bookingId") Long bookingId);
+
     /**
      * Find all bookings for a specific user
      */
@@ -53,6 +65,11 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
      */
     List<Booking> findByStatus(ParkingStatus status);
 
+    /**
+     * Find all bookings in any of the given statuses
+     */
+    List<Booking> findByStatusIn(List<ParkingStatus> statuses);
+
     /**
      * Find all bookings for a user by status
      */
@@ -85,6 +102,94 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
         @Param("endDate") LocalDateTime endDate
     );
 
+    /**
+     * Report fields of the bookings entering in [from, to), with the location of their slot:
+     * { locationId, vehicleType, status, parkingFee, entryTime, exitTime }
+     * Rows only, no entities are hydrated
+     */
+    @Query("""
+        SELECT s.location.id, b.vehicleType, b.status, b.parkingFee, b.entryTime, b.exitTime
+        FROM Booking b LEFT JOIN Slot s ON b.slotId = s.id
+        WHERE b.entryTime >= :from AND b.entryTime < :to
+    """)
+    List<Object[]> findReportRowsByEntryRange(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+
+    /**
+     * CSV export rows, ordered by entry time; every filter is optional (null matches all)
+     * { id, userId, slotId, vehicleType, entryTime, exitTime, status, parkingFee,
+     *   transactionId, paymentStatus, paymentTime }
+     * Read through a cursor in batches of the fetch size and never attached to the
+     * persistence context; must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        SELECT b.id, b.userId, b.slotId, b.vehicleType, b.entryTime, b.exitTime, b.status,
+               b.parkingFee, b.transactionId, b.paymentStatus, b.paymentTime
+        FROM Booking b
+        WHERE (:startDate IS NULL OR b.entryTime >= :startDate)
+        AND (:endDate IS NULL OR b.entryTime <= :endDate)
+        AND (:slotId IS NULL OR b.slotId = :slotId)
+        AND (:userId IS NULL OR b.userId = :userId)
+        ORDER BY b.entryTime ASC NULLS LAST, b.id ASC
+    """)
+    Stream<Object[]> streamExportRows(
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate,
+        @Param("slotId") Long slotId,
+        @Param("userId") Long userId
+    );
+
+    /**
+     * { entryTime, exitTime } of the finished bookings entering in [from, to)
+     */
+    @Query("""
+        SELECT b.entryTime, b.exitTime FROM Booking b
+        WHERE b.entryTime >= :from AND b.entryTime < :to AND b.exitTime IS NOT NULL
+    """)
+    List<Object[]> findEntryExitTimesByEntryRange(
+        @Param("from") LocalDateTime from,
+        @Param("to") LocalDateTime to
+    );
+
+    /**
+     * { hour of day, count } of the bookings with a slot, by hour of their entry time
+     */
+    @Query("""
+        SELECT extract(hour from b.entryTime), COUNT(b) FROM Booking b
+        WHERE b.slotId IS NOT NULL AND b.entryTime IS NOT NULL
+        GROUP BY extract(hour from b.entryTime)
+    """)
+    List<Object[]> countSlottedBookingsByEntryHour();
+
+    /**
+     * Entry times of the given bookings
+     */
+    @Query("SELECT b.entryTime FROM Booking b WHERE b.id IN :ids AND b.entryTime IS NOT NULL")
+    List<LocalDateTime> findEntryTimesByIdIn(@Param("ids") List<Long> ids);
+
+    /**
+     * Entry times of the bookings that entered, exited or were paid at or after a time
+     * Entry times can lie before it (a late exit or payment) or in the future (advance bookings)
+     */
+    @Query("""
+        SELECT DISTINCT b.entryTime FROM Booking b
+        WHERE b.entryTime IS NOT NULL
+          AND (b.entryTime >= :since OR b.exitTime >= :since OR b.paymentTime >= :since)
+    """)
+    List<LocalDateTime> findEntryTimesTouchedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Earliest entry time of any booking
+     */
+    @Query("SELECT MIN(b.entryTime) FROM Booking b")
+    LocalDateTime findEarliestEntryTime();
+
     /**
      * Find total revenue from completed bookings
      */
@@ -94,6 +199,18 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     """)
     Double getTotalRevenue();
 
+    /**
+     * Booking invariant check: slots holding more than one ACTIVE or HELD booking
+     * A slot is marked unavailable by its first booking, so this should always be empty
+     */
+    @Query("""
+        SELECT b.slotId FROM Booking b
+        WHERE b.status IN ('ACTIVE', 'HELD')
+        GROUP BY b.slotId
+        HAVING COUNT(b) > 1
+    """)
+    List<Long> findSlotsWithMultipleActiveBookings();
+
     /**
      * Count active bookings
      */
@@ -0,0 +1,30 @@
+package com.smartparking.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.smartparking.model.BookingRollupBackfill;
+
+/**
+ * Booking Rollup Backfill Repository
+ * The backfill and the rollup flush each update only their own columns, so neither
+ * overwrites the other's progress with a stale copy of the row
+ */
+public interface BookingRollupBackfillRepository extends JpaRepository<BookingRollupBackfill, Long> {
+
+    @Modifying
+    @Query("UPDATE BookingRollupBackfill c SET c.backfilledUntil = :until WHERE c.id = :id")
+    int updateBackfilledUntil(@Param("id") Long id, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE BookingRollupBackfill c SET c.completedAt = :completedAt WHERE c.id = :id")
+    int updateCompletedAt(@Param("id") Long id, @Param("completedAt") LocalDateTime completedAt);
+
+    @Modifying
+    @Query("UPDATE BookingRollupBackfill c SET c.flushedUntil = :until WHERE c.id = :id")
+    int updateFlushedUntil(@Param("id") Long id, @Param("until") LocalDateTime until);
+}
@@ -1,8 +1,10 @@
 package com.smartparking.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
@@ -13,10 +15,39 @@ import com.smartparking.model.Slot;
 import jakarta.persistence.LockModeType;
 	
 public interface SlotRepository extends JpaRepository<Slot, Long> {
+
+	/**
+	 * Per-slot booking totals for bookings entering in [startDate, endDate]; slots without
+	 * bookings get zeros. Booked hours are whole hours per booking, summed.
+	 * { slotId, slotNumber, locationName, bookings, bookedHours, revenue, lastEntryTime }
+	 */
+	String SLOT_UTILIZATION = """
+		SELECT s.id, s.slotNumber, l.name, COUNT(b.id),
+		       COALESCE(SUM((b.exitTime - b.entryTime) by hour), 0) AS bookedHours,
+		       COALESCE(SUM(CASE WHEN b.status = 'COMPLETED' AND b.parkingFee IS NOT NULL THEN b.parkingFee ELSE 0 END), 0),
+		       MAX(b.entryTime)
+		FROM Slot s JOIN s.location l
+		LEFT JOIN Booking b ON b.slotId = s.id AND b.entryTime >= :startDate AND b.entryTime <= :endDate
+		GROUP BY s.id, s.slotNumber, l.name
+	""";
+
 	List<Slot> findByLocationId(Long locationId);
 	
 	@Query("SELECT s FROM Slot s JOIN FETCH s.location")
 	List<Slot> findAllWithLocation();
+
+	/**
+	 * Slot counts per location: { locationId, total, available, occupied }
+	 * Available and occupied leave out disabled slots
+	 */
+	@Query("""
+		SELECT s.location.id, COUNT(s),
+		       SUM(CASE WHEN s.available = true AND s.isDisabled = false THEN 1 ELSE 0 END),
+		       SUM(CASE WHEN s.available = false AND s.isDisabled = false THEN 1 ELSE 0 END)
+		FROM Slot s
+		GROUP BY s.location.id
+	""")
+	List<Object[]> countSlotsByLocation();
 	
 	/**
 	 * Find slot by ID with pessimistic write lock
@@ -26,4 +57,60 @@ public interface SlotRepository extends JpaRepository<Slot, Long> {
 	@Lock(LockModeType.PESSIMISTIC_WRITE)
 	@Query("SELECT s FROM Slot s WHERE s.id = :id")
 	Optional<Slot> findByIdWithLock(@Param("id") Long id);
+
+	/**
+	 * 1 if the slot is available and not disabled, 0 otherwise
+	 * Reads the committed row without loading or locking the entity
+	 */
+	@Query("SELECT COUNT(s) FROM Slot s WHERE s.id = :id AND s.available = true AND s.isDisabled = false")
+	long countBookableById(@Param("id") Long id);
+
+	/**
+	 * Ids of the available, enabled slots of a type at a location
+	 * Auto-assignment candidates when the in-memory availability engine is disabled
+	 */
+	@Query("""
+		SELECT s.id FROM Slot s
+		WHERE s.location.id = :locationId AND UPPER(s.slotType) = UPPER(:slotType)
+		  AND s.available = true AND s.isDisabled = false
+		ORDER BY s.id
+	""")
+	List<Long> findFreeSlotIds(@Param("locationId") Long locationId, @Param("slotType") String slotType, Pageable pageable);
+
+	/**
+	 * Lock several slots at once for a batch booking
+	 * Rows are locked in ascending id order so overlapping batches cannot deadlock
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT s FROM Slot s WHERE s.id IN :ids ORDER BY s.id")
+	List<Slot> findAllByIdWithLock(@Param("ids") List<Long> ids);
+
+	/**
+	 * Utilization of every slot, see SLOT_UTILIZATION
+	 */
+	@Query(SLOT_UTILIZATION + " ORDER BY s.id")
+	List<Object[]> findSlotUtilization(
+		@Param("startDate") LocalDateTime startDate,
+		@Param("endDate") LocalDateTime endDate
+	);
+
+	/**
+	 * Most booked slots first; the page size is the number of slots returned
+	 */
+	@Query(SLOT_UTILIZATION + " ORDER BY bookedHours DESC, s.id")
+	List<Object[]> findMostUtilizedSlots(
+		@Param("startDate") LocalDateTime startDate,
+		@Param("endDate") LocalDateTime endDate,
+		Pageable pageable
+	);
+
+	/**
+	 * Least booked slots first; the page size is the number of slots returned
+	 */
+	@Query(SLOT_UTILIZATION + " ORDER BY bookedHours ASC, s.id")
+	List<Object[]> findLeastUtilizedSlots(
+		@Param("startDate") LocalDateTime startDate,
+		@Param("endDate") LocalDateTime endDate,
+		Pageable pageable
+	);
 }
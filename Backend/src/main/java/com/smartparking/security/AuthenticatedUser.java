@@ -0,0 +1,56 @@
+package com.smartparking.security;
+
+import java.security.Principal;
+
+import org.springframework.security.core.Authentication;
+
+/**
+ * Authenticated User
+ * Principal published by JwtFilter. getName() is the email, so authentication.getName()
+ * behaves as before; the user id comes from the token (or the principal cache for tokens
+ * issued before it carried one), so controllers need no user lookup.
+ */
+public final class AuthenticatedUser implements Principal {
+
+    private final Long userId;
+    private final String email;
+    private final String role;
+
+    public AuthenticatedUser(Long userId, String email, String role) {
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+    }
+
+    /**
+     * User id of an authentication, or null if it was not created by JwtFilter
+     */
+    public static Long userIdOf(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.userId;
+        }
+        return null;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    @Override
+    public String toString() {
+        return email;
+    }
+}
@@ -16,9 +16,11 @@ import java.io.IOException;
 public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
+    private final PrincipalCache principalCache;
 
-    public JwtFilter(JwtUtil jwtUtil) {
+    public JwtFilter(JwtUtil jwtUtil, PrincipalCache principalCache) {
         this.jwtUtil = jwtUtil;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -48,24 +50,25 @@ public class JwtFilter extends OncePerRequestFilter {
         try {
             String token = header.substring(7);
 
-            if (!jwtUtil.validateToken(token)) {
+            JwtUtil.VerifiedToken verified = jwtUtil.verify(token);
+            if (verified == null) {
                 // Invalid token - let it pass to Spring Security
                 System.out.println("Invalid token for: " + path);
                 filterChain.doFilter(request, response);
                 return;
             }
 
-            String email = jwtUtil.extractUsername(token);
-            String role = jwtUtil.extractRole(token);
-
-            System.out.println("Valid JWT - User: " + email + ", Role: " + role);
-            System.out.println("Authorities: " + jwtUtil.getAuthorities(role));
+            Long userId = verified.getUserId();
+            if (userId == null) {
+                // Token issued before it carried the user id
+                userId = principalCache.getUserId(verified.getEmail());
+            }
 
             UsernamePasswordAuthenticationToken authentication =
                     new UsernamePasswordAuthenticationToken(
-                            email,
+                            new AuthenticatedUser(userId, verified.getEmail(), verified.getRole()),
                             null,
-                            jwtUtil.getAuthorities(role)
+                            verified.getAuthorities()
                     );
 
             authentication.setDetails(
@@ -2,15 +2,22 @@ package com.smartparking.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class JwtUtil {
@@ -21,34 +28,106 @@ public class JwtUtil {
     @Value("${app.jwt.expiration-ms:3600000}") // default 1 hour
     private long expirationMs;
 
-    private Key getKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${app.jwt.verified-cache.max-entries:10000}")
+    private int verifiedCacheMaxEntries;
+
+    // Derived once; the parser is immutable and thread-safe
+    private Key key;
+    private JwtParser parser;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // Recently verified tokens by SHA-256 of the token, least recently used evicted first
+    private final LinkedHashMap<String, VerifiedToken> verified = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+            return size() > verifiedCacheMaxEntries;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
     }
 
     /* ================= TOKEN GENERATION ================= */
 
     public String generateToken(String email, String role) {
+        return generateToken(email, role, null);
+    }
+
+    /**
+     * Token carrying the user id as well, so requests need no user lookup
+     */
+    public String generateToken(String email, String role, Long userId) {
         return Jwts.builder()
                 .setSubject(email)
                 .claim("role", role)
+                .claim("uid", userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(getKey(), SignatureAlgorithm.HS256)
+                .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     /* ================= TOKEN VALIDATION ================= */
 
-    public boolean validateToken(String token) {
+    /**
+     * Verify a token and extract its claims in one pass
+     * A token verified before is answered from the cache until it expires
+     *
+     * @return The verified claims, or null if the token is invalid or expired
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String cacheKey = hash(token);
+        long now = System.currentTimeMillis();
+        synchronized (verified) {
+            VerifiedToken cached = verified.get(cacheKey);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    return cached;
+                }
+                verified.remove(cacheKey);
+                return null;
+            }
+        }
+
+        Claims claims;
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            claims = parser.parseClaimsJws(token).getBody();
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return null;
+        }
+        Number userId = claims.get("uid", Number.class);
+        String role = claims.get("role", String.class);
+        Date expiration = claims.getExpiration();
+        VerifiedToken result = new VerifiedToken(
+                claims.getSubject(),
+                role,
+                userId != null ? userId.longValue() : null,
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE,
+                getAuthorities(role)
+        );
+        synchronized (verified) {
+            verified.put(cacheKey, result);
         }
+        return result;
+    }
+
+    public boolean validateToken(String token) {
+        return verify(token) != null;
     }
 
     /* ================= TOKEN EXTRACTION ================= */
@@ -61,12 +140,21 @@ public class JwtUtil {
         return getClaims(token).get("role", String.class);
     }
 
+    /**
+     * User id claim, or null for tokens issued without one
+     */
+    public Long extractUserId(String token) {
+        Number userId = getClaims(token).get("uid", Number.class);
+        return userId != null ? userId.longValue() : null;
+    }
+
     private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private static String hash(String token) {
+        byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(digest);
     }
 
     /* ================= SPRING SECURITY AUTHORITIES ================= */
@@ -74,4 +162,47 @@ public class JwtUtil {
     public Collection<? extends GrantedAuthority> getAuthorities(String role) {
         return List.of(new SimpleGrantedAuthority("ROLE_" + role));
     }
+
+    /**
+     * Claims of a verified token
+     */
+    public static final class VerifiedToken {
+        private final String email;
+        private final String role;
+        private final Long userId;
+        private final long expiresAt;
+        private final Collection<? extends GrantedAuthority> authorities;
+
+        private VerifiedToken(String email, String role, Long userId, long expiresAt,
+                              Collection<? extends GrantedAuthority> authorities) {
+            this.email = email;
+            this.role = role;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.authorities = authorities;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        /**
+         * User id claim, or null for tokens issued without one
+         */
+        public Long getUserId() {
+            return userId;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public Collection<? extends GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package com.smartparking.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.User;
+import com.smartparking.repository.UserRepository;
+
+/**
+ * Principal Cache
+ * User id by email for tokens that do not carry a userId claim (issued before the claim
+ * was added). Entries live for app.security.principal-cache.ttl-seconds and the cache
+ * holds at most max-entries emails, least recently used evicted first.
+ * Accounts are never deleted or re-keyed through the application, so the TTL alone
+ * bounds how long a changed mapping can be served.
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${app.security.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${app.security.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    // Access-ordered, so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * User id for an email, or null if no such user exists
+     */
+    public Long getUserId(String email) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(email);
+            if (entry != null && entry.expiresAt - now > 0) {
+                return entry.userId;
+            }
+        }
+
+        Long userId = userRepository.findByEmail(email).map(User::getId).orElse(null);
+        if (userId != null) {
+            synchronized (entries) {
+                entries.put(email, new Entry(userId, now + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            }
+        }
+        return userId;
+    }
+
+    private static final class Entry {
+        private final Long userId;
+        private final long expiresAt;
+
+        private Entry(Long userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.smartparking.security;
 
 import java.util.List;
 
+import jakarta.servlet.DispatcherType;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -17,6 +20,8 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.smartparking.service.PasswordHasher;
+
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfig {
@@ -40,6 +45,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/admin/login-request-otp", "/api/auth/admin/verify-otp").permitAll()
                 .requestMatchers("/api/map/**").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // Streaming responses (fee ticker) finish on an async dispatch; the request was authorized already
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
@@ -85,9 +92,17 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * BCrypt encoder; with app.security.password.calibrate=true the cost is chosen at startup
+     * so one hash takes about app.security.password.target-millis on this machine,
+     * never below app.security.password.strength
+     */
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(
+            @Value("${app.security.password.strength:10}") int strength,
+            @Value("${app.security.password.calibrate:false}") boolean calibrate,
+            @Value("${app.security.password.target-millis:250}") long targetMillis) {
+        return new BCryptPasswordEncoder(calibrate ? PasswordHasher.calibrateStrength(targetMillis, strength) : strength);
     }
 
     @Bean
@@ -0,0 +1,485 @@
+package com.smartparking.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.smartparking.model.Booking;
+import com.smartparking.model.BookingHourlyRollup;
+import com.smartparking.model.VehicleType;
+
+/**
+ * Booking Aggregator
+ * Single-pass accumulator behind the usage reports and occupancy statistics. Bookings (or
+ * hourly rollup rows, weighted by their counts) are folded in one at a time into primitive
+ * arrays: status and vehicle type indexed by ordinal, hours by hour of day, days by offset
+ * from the first day of the report, periods by position on an optional timeline. Nothing is
+ * boxed until a result map is asked for.
+ *
+ * Revenue, hourly and daily revenue and min/max fee count COMPLETED bookings only, as the
+ * reports always have; getFeeTotal() sums the fees of every status.
+ *
+ * Not thread-safe; use one per report.
+ */
+public final class BookingAggregator {
+
+    private static final Booking.ParkingStatus[] STATUSES = Booking.ParkingStatus.values();
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+    private static final int COMPLETED = Booking.ParkingStatus.COMPLETED.ordinal();
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private long bookings;
+    private final long[] statusCounts = new long[STATUSES.length];
+    private final long[] statusFeeCounts = new long[STATUSES.length];
+    private final double[] statusFees = new double[STATUSES.length];
+    private final long[] vehicleTypeCounts = new long[VEHICLE_TYPES.length];
+
+    private double feeTotal;
+    private boolean hasFee;
+    private double minFee;
+    private double maxFee;
+
+    private long durationCount;
+    private long durationSum;
+    private long minDuration;
+    private long maxDuration;
+    private long[] durationSamples;
+    private int sampleCount;
+
+    private final long[] hourCounts = new long[24];
+    private final long[] hourFeeCounts = new long[24];
+    private final double[] hourRevenue = new double[24];
+
+    // [hour][day of week 1-7]
+    private final long[][] weekHourCounts = new long[24][8];
+    private final long[][] weekHourDurationCounts = new long[24][8];
+    private final long[][] weekHourDurationSums = new long[24][8];
+
+    private final LocalDate firstDay;
+    private final long[] dayCounts;
+    private final long[] dayFeeCounts;
+    private final double[] dayRevenue;
+
+    private LocalDateTime[] periodBounds;
+    private long[] periodBookings;
+    private long[] periodOccupancyDelta;
+
+    /**
+     * Aggregator without a daily breakdown
+     */
+    public BookingAggregator() {
+        this.firstDay = null;
+        this.dayCounts = new long[0];
+        this.dayFeeCounts = new long[0];
+        this.dayRevenue = new double[0];
+    }
+
+    /**
+     * @param firstDay First day of the daily breakdown
+     * @param lastDay Last day of the daily breakdown (inclusive); bookings outside are left out of it
+     */
+    public BookingAggregator(LocalDate firstDay, LocalDate lastDay) {
+        int days = (int) Math.max(ChronoUnit.DAYS.between(firstDay, lastDay) + 1, 0);
+        this.firstDay = firstDay;
+        this.dayCounts = new long[days];
+        this.dayFeeCounts = new long[days];
+        this.dayRevenue = new double[days];
+    }
+
+    /**
+     * Also count bookings per period of a timeline
+     * Period i runs from bounds[i] to bounds[i + 1]. A booking counts as entering a period when
+     * its entry time is strictly inside it, and as occupying every period its stay touches,
+     * boundaries included.
+     *
+     * @param bounds Ascending period boundaries, one more than the number of periods
+     */
+    public BookingAggregator withPeriods(List<LocalDateTime> bounds) {
+        this.periodBounds = bounds.toArray(new LocalDateTime[0]);
+        int periods = Math.max(periodBounds.length - 1, 0);
+        this.periodBookings = new long[periods];
+        this.periodOccupancyDelta = new long[periods + 1];
+        return this;
+    }
+
+    /**
+     * Also keep every duration, so that the median can be reported
+     */
+    public BookingAggregator withDurationSamples() {
+        this.durationSamples = new long[64];
+        return this;
+    }
+
+    /**
+     * Fold in one booking
+     */
+    public void add(Booking booking) {
+        add(booking.getEntryTime(), booking.getExitTime(), booking.getStatus(), booking.getVehicleType(), booking.getParkingFee());
+    }
+
+    /**
+     * Fold in one booking given by its fields
+     */
+    public void add(LocalDateTime entryTime, LocalDateTime exitTime, Booking.ParkingStatus status,
+                    VehicleType vehicleType, Double parkingFee) {
+        long durationMinutes = entryTime != null && exitTime != null
+                ? Duration.between(entryTime, exitTime).toMinutes()
+                : -1;
+
+        bookings++;
+        if (parkingFee != null) {
+            feeTotal += parkingFee;
+        }
+        if (status != null) {
+            int s = status.ordinal();
+            statusCounts[s]++;
+            if (parkingFee != null) {
+                statusFeeCounts[s]++;
+                statusFees[s] += parkingFee;
+                if (s == COMPLETED) {
+                    addCompletedFees(parkingFee, parkingFee);
+                }
+            }
+        }
+        if (vehicleType != null) {
+            vehicleTypeCounts[vehicleType.ordinal()]++;
+        }
+        if (durationMinutes >= 0) {
+            addDurations(durationMinutes, 1, durationMinutes, durationMinutes);
+            if (durationSamples != null) {
+                addDurationSample(durationMinutes);
+            }
+        }
+        if (entryTime == null) {
+            return;
+        }
+
+        boolean completedFee = status == Booking.ParkingStatus.COMPLETED && parkingFee != null;
+        addTime(entryTime, 1, completedFee ? 1 : 0, completedFee ? parkingFee : 0,
+                durationMinutes >= 0 ? 1 : 0, Math.max(durationMinutes, 0));
+
+        if (periodBounds != null) {
+            addToPeriods(entryTime, exitTime);
+        }
+    }
+
+    /**
+     * Fold in one hourly rollup row; it stands for getBookingCount() bookings entering in its hour
+     */
+    public void add(BookingHourlyRollup row) {
+        long count = row.getBookingCount();
+        bookings += count;
+        feeTotal += row.getRevenue();
+        if (row.getStatus() != null) {
+            int s = row.getStatus().ordinal();
+            statusCounts[s] += count;
+            statusFeeCounts[s] += row.getFeeCount();
+            statusFees[s] += row.getRevenue();
+        }
+        if (row.getFeeCount() > 0) {
+            // Rollups only carry fees of COMPLETED bookings
+            addCompletedFees(row.getMinFee(), row.getMaxFee());
+        }
+        if (row.getVehicleType() != null) {
+            vehicleTypeCounts[row.getVehicleType().ordinal()] += count;
+        }
+        if (row.getDurationCount() > 0) {
+            addDurations(row.getDurationMinutesSum(), row.getDurationCount(), row.getMinDurationMinutes(), row.getMaxDurationMinutes());
+        }
+        addTime(row.getHourStart(), count, row.getFeeCount(), row.getRevenue(), row.getDurationCount(), row.getDurationMinutesSum());
+    }
+
+    /**
+     * Record a duration for the median only, e.g. when the counts come from rollups
+     */
+    public void addDurationSample(long durationMinutes) {
+        if (durationSamples == null) {
+            durationSamples = new long[64];
+        }
+        if (sampleCount == durationSamples.length) {
+            durationSamples = Arrays.copyOf(durationSamples, sampleCount * 2);
+        }
+        durationSamples[sampleCount++] = durationMinutes;
+    }
+
+    private void addCompletedFees(double min, double max) {
+        minFee = hasFee ? Math.min(minFee, min) : min;
+        maxFee = hasFee ? Math.max(maxFee, max) : max;
+        hasFee = true;
+    }
+
+    private void addDurations(long sum, long count, long min, long max) {
+        minDuration = durationCount == 0 ? min : Math.min(minDuration, min);
+        maxDuration = durationCount == 0 ? max : Math.max(maxDuration, max);
+        durationCount += count;
+        durationSum += sum;
+    }
+
+    private void addTime(LocalDateTime time, long count, long feeCount, double revenue, long durations, long durationMinutes) {
+        int hour = time.getHour();
+        int dayOfWeek = time.getDayOfWeek().getValue();
+        hourCounts[hour] += count;
+        hourFeeCounts[hour] += feeCount;
+        hourRevenue[hour] += revenue;
+        weekHourCounts[hour][dayOfWeek] += count;
+        weekHourDurationCounts[hour][dayOfWeek] += durations;
+        weekHourDurationSums[hour][dayOfWeek] += durationMinutes;
+
+        if (dayCounts.length == 0) {
+            return;
+        }
+        long day = ChronoUnit.DAYS.between(firstDay, time.toLocalDate());
+        if (day >= 0 && day < dayCounts.length) {
+            dayCounts[(int) day] += count;
+            dayFeeCounts[(int) day] += feeCount;
+            dayRevenue[(int) day] += revenue;
+        }
+    }
+
+    private void addToPeriods(LocalDateTime entryTime, LocalDateTime exitTime) {
+        int periods = periodBookings.length;
+        if (periods == 0) {
+            return;
+        }
+        // Period whose start is the last bound not after the entry
+        int period = floorBound(entryTime);
+        if (period >= 0 && period < periods
+                && periodBounds[period].isBefore(entryTime) && entryTime.isBefore(periodBounds[period + 1])) {
+            periodBookings[period]++;
+        }
+
+        if (exitTime == null) {
+            return;
+        }
+        // Occupies period i when entry <= end(i) and exit >= start(i)
+        int first = ceilingBound(entryTime, 1) - 1;
+        int last = floorBound(exitTime);
+        first = Math.max(first, 0);
+        last = Math.min(last, periods - 1);
+        if (first <= last) {
+            periodOccupancyDelta[first]++;
+            periodOccupancyDelta[last + 1]--;
+        }
+    }
+
+    /**
+     * Index of the last bound not after the time, or -1
+     */
+    private int floorBound(LocalDateTime time) {
+        int low = 0;
+        int high = periodBounds.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (periodBounds[mid].isAfter(time)) {
+                high = mid - 1;
+            } else {
+                found = mid;
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Index of the first bound at or after from that is not before the time, or the bound count
+     */
+    private int ceilingBound(LocalDateTime time, int from) {
+        int low = from;
+        int high = periodBounds.length - 1;
+        int found = periodBounds.length;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (periodBounds[mid].isBefore(time)) {
+                low = mid + 1;
+            } else {
+                found = mid;
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // ==================== RESULTS ====================
+
+    public long getBookings() {
+        return bookings;
+    }
+
+    public long getCount(Booking.ParkingStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    /**
+     * Revenue of COMPLETED bookings
+     */
+    public double getRevenue() {
+        return statusFees[COMPLETED];
+    }
+
+    /**
+     * Number of COMPLETED bookings with a fee
+     */
+    public long getFeeCount() {
+        return statusFeeCounts[COMPLETED];
+    }
+
+    /**
+     * Sum of the fees of bookings in any status
+     */
+    public double getFeeTotal() {
+        return feeTotal;
+    }
+
+    public double getAverageFee() {
+        return getFeeCount() == 0 ? 0 : getRevenue() / getFeeCount();
+    }
+
+    public double getMinFee() {
+        return hasFee ? minFee : 0;
+    }
+
+    public double getMaxFee() {
+        return hasFee ? maxFee : 0;
+    }
+
+    public long getDurationCount() {
+        return durationCount;
+    }
+
+    public double getAverageDurationMinutes() {
+        return durationCount == 0 ? 0.0 : (double) durationSum / durationCount;
+    }
+
+    public double getMinDurationMinutes() {
+        return durationCount == 0 ? 0.0 : minDuration;
+    }
+
+    public double getMaxDurationMinutes() {
+        return durationCount == 0 ? 0.0 : maxDuration;
+    }
+
+    /**
+     * Median of the duration samples; sorts them in place
+     */
+    public double getMedianDurationMinutes() {
+        if (sampleCount == 0) {
+            return 0.0;
+        }
+        Arrays.sort(durationSamples, 0, sampleCount);
+        int mid = sampleCount / 2;
+        return sampleCount % 2 == 0
+                ? (durationSamples[mid - 1] + durationSamples[mid]) / 2.0
+                : durationSamples[mid];
+    }
+
+    /**
+     * Bookings per hour of day; hours without bookings are left out
+     */
+    public Map<Integer, Long> getHourlyCounts() {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for (int hour = 0; hour < 24; hour++) {
+            if (hourCounts[hour] > 0) {
+                counts.put(hour, hourCounts[hour]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Completed revenue per hour of day; hours without a completed fee are left out
+     */
+    public Map<Integer, Double> getHourlyRevenue() {
+        Map<Integer, Double> revenue = new LinkedHashMap<>();
+        for (int hour = 0; hour < 24; hour++) {
+            if (hourFeeCounts[hour] > 0) {
+                revenue.put(hour, hourRevenue[hour]);
+            }
+        }
+        return revenue;
+    }
+
+    /**
+     * Bookings per day (yyyy-MM-dd); days without bookings are left out
+     */
+    public Map<String, Long> getDailyCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int day = 0; day < dayCounts.length; day++) {
+            if (dayCounts[day] > 0) {
+                counts.put(firstDay.plusDays(day).format(DAY_FORMAT), dayCounts[day]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Completed revenue per day (yyyy-MM-dd); days without a completed fee are left out
+     */
+    public Map<String, Double> getDailyRevenue() {
+        Map<String, Double> revenue = new LinkedHashMap<>();
+        for (int day = 0; day < dayRevenue.length; day++) {
+            if (dayFeeCounts[day] > 0) {
+                revenue.put(firstDay.plusDays(day).format(DAY_FORMAT), dayRevenue[day]);
+            }
+        }
+        return revenue;
+    }
+
+    public Map<String, Long> getVehicleTypeCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (VehicleType type : VEHICLE_TYPES) {
+            if (vehicleTypeCounts[type.ordinal()] > 0) {
+                counts.put(type.toString(), vehicleTypeCounts[type.ordinal()]);
+            }
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Booking.ParkingStatus status : STATUSES) {
+            if (statusCounts[status.ordinal()] > 0) {
+                counts.put(status.toString(), statusCounts[status.ordinal()]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Bookings entering at this hour of day on this day of week (1 = Monday)
+     */
+    public long getCount(int hour, int dayOfWeek) {
+        return weekHourCounts[hour][dayOfWeek];
+    }
+
+    public double getAverageDurationMinutes(int hour, int dayOfWeek) {
+        long count = weekHourDurationCounts[hour][dayOfWeek];
+        return count == 0 ? 0.0 : (double) weekHourDurationSums[hour][dayOfWeek] / count;
+    }
+
+    /**
+     * Bookings entering strictly inside each period of the timeline
+     */
+    public long[] getPeriodBookings() {
+        return periodBookings.clone();
+    }
+
+    /**
+     * Finished bookings whose stay touches each period of the timeline
+     */
+    public long[] getPeriodOccupancy() {
+        long[] occupancy = new long[periodBookings.length];
+        long running = 0;
+        for (int i = 0; i < occupancy.length; i++) {
+            running += periodOccupancyDelta[i];
+            occupancy[i] = running;
+        }
+        return occupancy;
+    }
+}
@@ -0,0 +1,32 @@
+package com.smartparking.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.Booking;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Booking Rollup Listener
+ * Marks the entry hour of every booking written through JPA dirty in BookingRollupStore
+ * once the transaction commits. Writes that bypass JPA report their bookings themselves.
+ */
+@Component
+public class BookingRollupListener {
+
+    // Lazy: listeners are created with the EntityManagerFactory, before the store exists
+    @Autowired
+    @Lazy
+    private BookingRollupStore rollupStore;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void bookingWritten(Booking booking) {
+        TransactionCallbacks.afterCommit(() -> rollupStore.markDirty(booking.getEntryTime()));
+    }
+}
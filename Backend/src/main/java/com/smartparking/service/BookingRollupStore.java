@@ -0,0 +1,444 @@
+package com.smartparking.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.smartparking.model.Booking;
+import com.smartparking.model.BookingHourlyRollup;
+import com.smartparking.model.BookingRollupBackfill;
+import com.smartparking.model.VehicleType;
+import com.smartparking.repository.BookingHourlyRollupRepository;
+import com.smartparking.repository.BookingRepository;
+import com.smartparking.repository.BookingRollupBackfillRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Booking Rollup Store
+ * Keeps booking_hourly_rollups in step with the bookings table: one row per
+ * (entry hour, location, vehicle type, status) with counts, revenue and duration sums.
+ *
+ * Booking writes mark the entry hour of the booking dirty (after commit, through
+ * BookingRollupListener and SettlementWriter). A single rollup thread rebuilds the dirty
+ * hours every app.reports.rollup.flush-seconds from one grouped read of that hour, so a
+ * rollup is never more than a flush interval behind and concurrent writes cannot race.
+ *
+ * On first start the table is backfilled from the bookings day by day; until then, and for
+ * the partial hours at the edges of a report window, read() aggregates the bookings directly,
+ * so reports stay exact. Backfill progress is checkpointed (BookingRollupBackfill) with every
+ * day it commits, so a restart after a crash resumes the backfill instead of trusting a
+ * half-filled table.
+ *
+ * Dirty marks only live in memory. Shutdown flushes them one last time, and every flush that
+ * rebuilt all its hours records its start time in the checkpoint row (flushedUntil). After a
+ * crash, the next start rebuilds every hour from that watermark to now, plus the entry hours
+ * of bookings that exited, were paid or enter after it, before the rollups are used again.
+ */
+@Component
+public class BookingRollupStore {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingHourlyRollupRepository rollupRepository;
+
+    @Autowired
+    private BookingRollupBackfillRepository backfillRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.reports.rollup.flush-seconds:5}")
+    private long flushSeconds;
+
+    @Value("${app.reports.rollup.backfill-on-start:true}")
+    private boolean backfillOnStart;
+
+    // Dirty marks are added after their transaction commits, so they may land just after the
+    // flush that should have seen them; the catch-up on start reaches back this much further
+    private static final long CATCH_UP_SLACK_SECONDS = 60;
+
+    private final Set<LocalDateTime> dirtyHours = ConcurrentHashMap.newKeySet();
+    private final Queue<Long> dirtyBookings = new ConcurrentLinkedQueue<>();
+    private final LongAdder hoursRebuilt = new LongAdder();
+
+    private volatile boolean ready;
+    // False until writes the previous run did not flush have been rebuilt; the watermark must not move before
+    private volatile boolean caughtUp;
+    private volatile String backfillState = "NOT_STARTED";
+    private ScheduledExecutorService rollupThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rollupThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!backfillOnStart) {
+            ready = true;
+            caughtUp = true;
+        } else {
+            resumeBackfill();
+        }
+        rollupThread.scheduleWithFixedDelay(this::flushQuietly, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the rollup thread, then flush the remaining dirty hours, which would otherwise be lost
+     * A running backfill stops after its current day and resumes from its checkpoint on the next start
+     */
+    @PreDestroy
+    public void stop() {
+        if (rollupThread == null) {
+            return;
+        }
+        rollupThread.shutdownNow();
+        try {
+            if (!rollupThread.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.out.println("⚠️ [BookingRollupStore] Rollup thread still busy, flushing anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * A booking entering at this time was written; its hour is rebuilt on the next flush
+     */
+    public void markDirty(LocalDateTime entryTime) {
+        if (entryTime != null) {
+            dirtyHours.add(entryTime.truncatedTo(ChronoUnit.HOURS));
+        }
+    }
+
+    /**
+     * Bookings written without going through JPA; their hours are looked up on the next flush
+     */
+    public void markBookingsDirty(Collection<Long> bookingIds) {
+        dirtyBookings.addAll(bookingIds);
+    }
+
+    /**
+     * Rebuild every hour in [from, to] from the bookings, one day per transaction
+     * Runs on the rollup thread; for repairing a range by hand, the initial backfill runs on start
+     */
+    public void backfill(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = to.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        backfillState = "RUNNING";
+        rollupThread.execute(() -> runBackfill(start, end, null));
+    }
+
+    /**
+     * Start the initial backfill, or pick it up from its checkpoint after a restart
+     * Reports read the bookings directly until it has completed
+     */
+    private void resumeBackfill() {
+        BookingRollupBackfill checkpoint = backfillRepository.findById(BookingRollupBackfill.ID).orElse(null);
+        LocalDateTime flushedUntil = checkpoint == null ? null
+                : checkpoint.getFlushedUntil() != null ? checkpoint.getFlushedUntil() : checkpoint.getCompletedAt();
+        if (flushedUntil != null) {
+            rollupThread.execute(() -> catchUp(flushedUntil));
+        } else {
+            caughtUp = true;
+        }
+        if (checkpoint != null && checkpoint.isComplete()) {
+            backfillState = "DONE";
+            // Rollups are used once the catch-up has run
+            rollupThread.execute(() -> ready = caughtUp);
+            return;
+        }
+
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        if (checkpoint == null) {
+            LocalDateTime earliest = bookingRepository.findEarliestEntryTime();
+            checkpoint = new BookingRollupBackfill(
+                    (earliest != null ? earliest : LocalDateTime.now()).truncatedTo(ChronoUnit.HOURS), end);
+        } else {
+            // Writes made while the application was down were never marked dirty; cover them too
+            if (flushedUntil == null) {
+                // Stopped before its first flush recorded a watermark: days already done may have changed since
+                checkpoint.setBackfilledUntil(checkpoint.getStartedFrom());
+            }
+            System.out.println("📊 [BookingRollupStore] Resuming backfill from " + checkpoint.getBackfilledUntil());
+            checkpoint.setTargetEnd(end);
+        }
+        BookingRollupBackfill resumed = backfillRepository.save(checkpoint);
+        backfillState = "RUNNING";
+        rollupThread.execute(() -> runBackfill(resumed.getBackfilledUntil(), resumed.getTargetEnd(), resumed));
+    }
+
+    /**
+     * Rebuild [start, end) day by day on the rollup thread
+     * With a checkpoint, its high-water mark moves forward in each day's transaction and the
+     * rollups are used for reports once it completes
+     */
+    private void runBackfill(LocalDateTime start, LocalDateTime end, BookingRollupBackfill checkpoint) {
+        try {
+            long began = System.nanoTime();
+            for (LocalDateTime day = start; day.isBefore(end); day = day.plusDays(1)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    backfillState = "STOPPED at " + day;
+                    return;
+                }
+                LocalDateTime dayEnd = day.plusDays(1).isAfter(end) ? end : day.plusDays(1);
+                rebuild(day, dayEnd, checkpoint);
+            }
+            if (checkpoint != null) {
+                LocalDateTime completedAt = LocalDateTime.now();
+                transactionTemplate.executeWithoutResult(status ->
+                        backfillRepository.updateCompletedAt(BookingRollupBackfill.ID, completedAt));
+                ready = caughtUp;
+            }
+            backfillState = "DONE";
+            System.out.println("📊 [BookingRollupStore] Backfilled " + Duration.between(start, end).toHours()
+                    + " hour(s) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began) + "ms");
+        } catch (RuntimeException e) {
+            backfillState = "FAILED: " + e.getMessage();
+            System.out.println("❌ [BookingRollupStore] Backfill failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild what the previous run may have left unflushed: every hour from the watermark
+     * to now, one day per transaction, then the entry hours outside that range of bookings
+     * touched since (late exits and payments, advance bookings)
+     */
+    private void catchUp(LocalDateTime flushedUntil) {
+        try {
+            long began = System.nanoTime();
+            LocalDateTime since = flushedUntil.minusSeconds(CATCH_UP_SLACK_SECONDS);
+            LocalDateTime start = since.truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            for (LocalDateTime day = start; day.isBefore(end); day = day.plusDays(1)) {
+                rebuild(day, day.plusDays(1).isAfter(end) ? end : day.plusDays(1));
+            }
+            TreeSet<LocalDateTime> hours = new TreeSet<>();
+            for (LocalDateTime entryTime : bookingRepository.findEntryTimesTouchedSince(since)) {
+                LocalDateTime hour = entryTime.truncatedTo(ChronoUnit.HOURS);
+                if (hour.isBefore(start) || !hour.isBefore(end)) {
+                    hours.add(hour);
+                }
+            }
+            for (LocalDateTime hour : hours) {
+                rebuild(hour, hour.plusHours(1));
+            }
+            caughtUp = true;
+            System.out.println("📊 [BookingRollupStore] Caught up " + Duration.between(start, end).toHours()
+                    + " hour(s) since " + flushedUntil + " and " + hours.size() + " other hour(s) in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began) + "ms");
+        } catch (RuntimeException e) {
+            // Reports keep reading the bookings directly; the next start tries again from the same watermark
+            System.out.println("❌ [BookingRollupStore] Catch-up failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rollup rows covering bookings that entered in [from, to] (both inclusive)
+     * Whole hours come from the rollup table; partial hours at either edge are aggregated
+     * from the bookings, so the result is exact for any window
+     */
+    public List<BookingHourlyRollup> read(LocalDateTime from, LocalDateTime to) {
+        // Reports treat the end as inclusive
+        LocalDateTime end = to.plusNanos(1);
+        LocalDateTime[] fullHours = fullHours(from, end);
+        if (fullHours == null) {
+            return aggregate(bookingRepository.findReportRowsByEntryRange(from, end));
+        }
+
+        List<BookingHourlyRollup> rows = new ArrayList<>(rollupRepository.findByHourRange(fullHours[0], fullHours[1]));
+        rows.addAll(readEdges(from, fullHours, end));
+        return rows;
+    }
+
+    /**
+     * Totals per location of the bookings that entered in [from, to] (both inclusive)
+     * Whole hours are summed by the database in one grouped query; only the partial edge
+     * hours are aggregated here. Bookings without a slot are left out.
+     */
+    public Map<Long, BookingHourlyRollup> readByLocation(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime end = to.plusNanos(1);
+        LocalDateTime[] fullHours = fullHours(from, end);
+        Map<Long, BookingHourlyRollup> totals = new HashMap<>();
+        if (fullHours == null) {
+            mergeByLocation(totals, aggregate(bookingRepository.findReportRowsByEntryRange(from, end)));
+            return totals;
+        }
+
+        for (Object[] sums : rollupRepository.sumByLocation(fullHours[0], fullHours[1])) {
+            BookingHourlyRollup row = new BookingHourlyRollup(null, (Long) sums[0], null, null);
+            row.setBookingCount(((Number) sums[1]).longValue());
+            row.setFeeCount(((Number) sums[2]).longValue());
+            row.setRevenue(((Number) sums[3]).doubleValue());
+            row.setDurationCount(((Number) sums[4]).longValue());
+            row.setDurationMinutesSum(((Number) sums[5]).longValue());
+            totals.put(row.getLocationId(), row);
+        }
+        mergeByLocation(totals, readEdges(from, fullHours, end));
+        return totals;
+    }
+
+    /**
+     * { first whole hour, end of the last whole hour } inside [from, end), or null when the
+     * rollups cannot be used: before the first backfill, or when no whole hour fits
+     */
+    private LocalDateTime[] fullHours(LocalDateTime from, LocalDateTime end) {
+        if (!ready) {
+            return null;
+        }
+        LocalDateTime firstFullHour = from.truncatedTo(ChronoUnit.HOURS);
+        if (firstFullHour.isBefore(from)) {
+            firstFullHour = firstFullHour.plusHours(1);
+        }
+        LocalDateTime lastFullHourEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (!firstFullHour.isBefore(lastFullHourEnd)) {
+            return null;
+        }
+        return new LocalDateTime[] { firstFullHour, lastFullHourEnd };
+    }
+
+    private List<BookingHourlyRollup> readEdges(LocalDateTime from, LocalDateTime[] fullHours, LocalDateTime end) {
+        List<BookingHourlyRollup> rows = new ArrayList<>();
+        if (from.isBefore(fullHours[0])) {
+            rows.addAll(aggregate(bookingRepository.findReportRowsByEntryRange(from, fullHours[0])));
+        }
+        if (fullHours[1].isBefore(end)) {
+            rows.addAll(aggregate(bookingRepository.findReportRowsByEntryRange(fullHours[1], end)));
+        }
+        return rows;
+    }
+
+    private static void mergeByLocation(Map<Long, BookingHourlyRollup> totals, List<BookingHourlyRollup> rows) {
+        for (BookingHourlyRollup row : rows) {
+            if (row.getLocationId() != null) {
+                totals.computeIfAbsent(row.getLocationId(), id -> new BookingHourlyRollup(null, id, null, null)).merge(row);
+            }
+        }
+    }
+
+    /**
+     * Backfill state, pending dirty hours and rebuild count
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ready", ready);
+        metrics.put("caughtUp", caughtUp);
+        metrics.put("backfill", backfillState);
+        metrics.put("dirtyHours", dirtyHours.size());
+        metrics.put("dirtyBookings", dirtyBookings.size());
+        metrics.put("hoursRebuilt", hoursRebuilt.sum());
+        return metrics;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ [BookingRollupStore] Flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    private void flush() {
+        LocalDateTime flushStarted = LocalDateTime.now();
+        List<Long> bookingIds = new ArrayList<>();
+        Long id;
+        while ((id = dirtyBookings.poll()) != null) {
+            bookingIds.add(id);
+        }
+        if (!bookingIds.isEmpty()) {
+            bookingRepository.findEntryTimesByIdIn(bookingIds).forEach(this::markDirty);
+        }
+
+        TreeSet<LocalDateTime> hours = new TreeSet<>();
+        for (LocalDateTime hour : dirtyHours) {
+            if (dirtyHours.remove(hour)) {
+                hours.add(hour);
+            }
+        }
+        for (LocalDateTime hour : hours) {
+            try {
+                rebuild(hour, hour.plusHours(1));
+            } catch (RuntimeException e) {
+                dirtyHours.addAll(hours.tailSet(hour));
+                throw e;
+            }
+        }
+
+        // Every write committed before this flush started is now in the rollups
+        if (caughtUp) {
+            transactionTemplate.executeWithoutResult(status ->
+                    backfillRepository.updateFlushedUntil(BookingRollupBackfill.ID, flushStarted));
+        }
+    }
+
+    /**
+     * Replace the rollup rows of the hours in [from, to) with a fresh aggregate of the bookings
+     */
+    private void rebuild(LocalDateTime from, LocalDateTime to) {
+        rebuild(from, to, null);
+    }
+
+    /**
+     * Same, moving the backfill checkpoint (if any) up to the end of the range in the same transaction
+     */
+    private void rebuild(LocalDateTime from, LocalDateTime to, BookingRollupBackfill checkpoint) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<BookingHourlyRollup> rows = aggregate(bookingRepository.findReportRowsByEntryRange(from, to));
+            rollupRepository.deleteByHourRange(from, to);
+            rollupRepository.saveAll(rows);
+            if (checkpoint != null) {
+                backfillRepository.updateBackfilledUntil(BookingRollupBackfill.ID, to);
+            }
+        });
+        hoursRebuilt.add(Duration.between(from, to).toHours());
+    }
+
+    /**
+     * Group report rows (see BookingRepository.findReportRowsByEntryRange) into hourly rollups
+     */
+    private static List<BookingHourlyRollup> aggregate(List<Object[]> bookings) {
+        Map<List<Object>, BookingHourlyRollup> rows = new HashMap<>();
+        for (Object[] booking : bookings) {
+            Long locationId = (Long) booking[0];
+            VehicleType vehicleType = (VehicleType) booking[1];
+            Booking.ParkingStatus status = (Booking.ParkingStatus) booking[2];
+            Double parkingFee = (Double) booking[3];
+            LocalDateTime entryTime = (LocalDateTime) booking[4];
+            LocalDateTime exitTime = (LocalDateTime) booking[5];
+
+            LocalDateTime hour = entryTime.truncatedTo(ChronoUnit.HOURS);
+            BookingHourlyRollup row = rows.computeIfAbsent(Arrays.asList(hour, locationId, vehicleType, status),
+                    key -> new BookingHourlyRollup(hour, locationId, vehicleType, status));
+            Long durationMinutes = exitTime != null ? Duration.between(entryTime, exitTime).toMinutes() : null;
+            row.add(parkingFee, durationMinutes);
+        }
+        return new ArrayList<>(rows.values());
+    }
+}
@@ -2,13 +2,28 @@ package com.smartparking.service;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.smartparking.dto.BookingResponse;
 import com.smartparking.dto.CheckoutResponse;
@@ -21,11 +36,16 @@ import com.smartparking.repository.BookingRepository;
 import com.smartparking.repository.SlotRepository;
 import com.smartparking.repository.UserRepository;
 import com.smartparking.repository.VehicleRepository;
+import com.smartparking.security.AuthenticatedUser;
+
+import jakarta.annotation.PostConstruct;
 
 /**
  * Booking Service
  * Handles parking slot booking, checkout, and slot release with integrated payment processing.
- * Uses pessimistic locking to prevent race conditions during concurrent booking attempts.
+ * Uses pessimistic locking to prevent race conditions during concurrent booking attempts;
+ * the lock comes from the configured SlotLockManager (database row lock by default).
+ * Setting app.booking.lock-mode=optimistic switches bookSlot to versioned slot updates with a bounded retry.
  */
 @Service
 @Transactional
@@ -46,9 +66,54 @@ public class BookingService {
     @Autowired
     private FeeCalculationService feeCalculationService;
 
+    @Autowired
+    private TariffTable tariffTable;
+
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private SettlementWriter settlementWriter;
+
+    @Autowired
+    private FeeTicker feeTicker;
+
+    @Autowired
+    private SlotAvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private SlotIntervalIndex intervalIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HoldExpiryWheel holdExpiryWheel;
+
+    @Autowired
+    private SlotLockManager slotLockManager;
+
+    @Value("${app.booking.lock-mode:pessimistic}")
+    private String lockMode;
+
+    private static final int AUTO_ASSIGN_MAX_CANDIDATES = 5;
+
+    private static final int BATCH_MAX_ITEMS = 200;
+
+    @Value("${app.booking.optimistic.max-attempts:3}")
+    private int optimisticMaxAttempts;
+
+    @Value("${app.booking.hold.ttl-minutes:10}")
+    private long holdTtlMinutes;
+
+    /**
+     * Let the hold expiry wheel release expired holds through this service
+     */
+    @PostConstruct
+    public void registerHoldExpiryHandler() {
+        holdExpiryWheel.onExpired(this::expireHolds);
+    }
+
     // ============================================
     // USER AUTHENTICATION
     // ============================================
@@ -77,6 +142,15 @@ public class BookingService {
         }
     }
 
+    /**
+     * User ID of the authenticated caller
+     * Taken from the JWT principal; only falls back to a lookup by email when it has none
+     */
+    public Long getUserId(Authentication authentication) {
+        Long userId = AuthenticatedUser.userIdOf(authentication);
+        return userId != null ? userId : getUserIdByEmail(authentication.getName());
+    }
+
     // ============================================
     // BOOKING MANAGEMENT
     // ============================================
@@ -85,18 +159,121 @@ public class BookingService {
      * Book a parking slot
      * Validates time range, checks for conflicts, creates booking with ACTIVE status
      * Only allows booking with registered vehicles
-     * Uses pessimistic locking to prevent race conditions during concurrent booking attempts
+     * Uses pessimistic locking to prevent race conditions during concurrent booking attempts,
+     * or versioned slot updates with retry when app.booking.lock-mode=optimistic
      *
      * @param booking Booking details (userId, slotId, entryTime, vehicleType)
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void bookSlot(Booking booking) {
+        reserveSlot(booking, ParkingStatus.ACTIVE, lockMode);
+    }
+
+    /**
+     * Book a parking slot with the given lock mode instead of app.booking.lock-mode
+     * Lets the stress driver compare pessimistic and optimistic booking on one database
+     *
+     * @param lockMode pessimistic or optimistic
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void bookSlot(Booking booking, String lockMode) {
+        reserveSlot(booking, ParkingStatus.ACTIVE, lockMode);
+    }
+
+    /**
+     * Hold a parking slot for app.booking.hold.ttl-minutes
+     * Same checks as bookSlot, but the booking is created HELD and is cancelled
+     * automatically when the hold expires unless it is confirmed first
+     *
+     * @param booking Booking details (userId, slotId, entryTime, vehicleType)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void holdSlot(Booking booking) {
+        reserveSlot(booking, ParkingStatus.HELD, lockMode);
+        // The transaction has committed, arm the expiry timer
+        holdExpiryWheel.schedule(booking.getId(), booking.getSlotId(), booking.getHoldExpiresAt());
+    }
+
+    /**
+     * Run a booking attempt with the given lock mode
+     *
+     * @param initialStatus ACTIVE for a booking, HELD for a hold
+     * @param mode pessimistic or optimistic
+     */
+    private void reserveSlot(Booking booking, ParkingStatus initialStatus, String mode) {
+        reserveSlot(booking, initialStatus, mode, true);
+    }
+
+    /**
+     * @param resolveVehicleType false when the caller has already applied the registered vehicle type
+     */
+    private void reserveSlot(Booking booking, ParkingStatus initialStatus, String mode, boolean resolveVehicleType) {
+        if (!"optimistic".equalsIgnoreCase(mode)) {
+            transactionTemplate.executeWithoutResult(status -> doBookSlot(booking, true, initialStatus, resolveVehicleType));
+            return;
+        }
+
+        // Optimistic mode: nothing blocks, a concurrent update of the same slot fails the
+        // version check at commit and the whole attempt is retried in a new transaction
+        for (int attempt = 1; ; attempt++) {
+            try {
+                booking.setId(null);
+                transactionTemplate.executeWithoutResult(status -> doBookSlot(booking, false, initialStatus, resolveVehicleType));
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= optimisticMaxAttempts) {
+                    throw new RuntimeException("Slot is being booked by another user, please try again");
+                }
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Booking interrupted");
+                }
+            }
+        }
+    }
+
+    /**
+     * Single booking attempt, always runs inside a transaction
+     *
+     * @param pessimistic true to take the database row lock on the slot, false to rely on its version
+     * @param initialStatus ACTIVE for a booking, HELD for a hold
+     * @param resolveVehicleType false when the caller has already applied the registered vehicle type
+     */
+    private void doBookSlot(Booking booking, boolean pessimistic, ParkingStatus initialStatus, boolean resolveVehicleType) {
+        // ============================================
+        // STEP 0: RESERVE SLOT IN MEMORY
+        // ============================================
+        // Compare-and-set on the in-memory availability bitmap. Concurrent requests for
+        // the same slot fail here instead of queueing on the database row lock.
+        // The reservation is undone if this transaction rolls back.
+        // The bitmap is only this instance's view: a slot freed on another instance or
+        // directly in the database still reads occupied here, so an occupied bit is only
+        // believed if the database agrees. Otherwise the row lock below decides, and the
+        // bit is set again once the booking has committed.
+        Long reservedSlotId = booking.getSlotId();
+        boolean reserved = availabilityEngine.tryReserve(reservedSlotId);
+        if (!reserved && slotRepo.countBookableById(reservedSlotId) == 0) {
+            throw new RuntimeException("Slot is currently unavailable");
+        }
+        if (reserved) {
+            TransactionCallbacks.afterRollback(() -> availabilityEngine.release(reservedSlotId));
+        } else {
+            TransactionCallbacks.afterCommit(() -> availabilityEngine.markOccupied(reservedSlotId));
+        }
+
         // ============================================
         // STEP 1: ACQUIRE PESSIMISTIC LOCK ON SLOT
         // ============================================
         // This lock ensures only ONE transaction can proceed with booking this slot
         // Other concurrent requests will wait until this transaction completes
-        Slot slot = slotRepo.findByIdWithLock(booking.getSlotId())
-                .orElseThrow(() -> new RuntimeException("Slot not found"));
+        // (database row lock, or a JVM-local striped lock when app.booking.slot-lock=striped)
+        // In optimistic mode the slot is read without a lock and the version check
+        // on the slot update below decides which concurrent booking wins
+        Slot slot = pessimistic
+                ? slotLockManager.lockSlot(booking.getSlotId())
+                : slotRepo.findById(booking.getSlotId()).orElseThrow(() -> new RuntimeException("Slot not found"));
         
         // ============================================
         // STEP 2: VALIDATE INPUT
@@ -108,46 +285,97 @@ public class BookingService {
         // ============================================
         // STEP 3: ENFORCE VEHICLE TYPE VALIDATION
         // ============================================
-        // Enforce vehicle type to be a registered vehicle for this user
+        // bookAnySlot resolves it once before trying its candidates
+        if (resolveVehicleType) {
+            applyRegisteredVehicleType(booking);
+        }
+
+        // ============================================
+        // STEPS 4-7: VALIDATE TIME RANGE, CONFLICTS, AVAILABILITY AND SLOT TYPE
+        // ============================================
+        validateSlotForBooking(booking, slot);
+
+        // ============================================
+        // STEP 8: CREATE BOOKING AND MARK SLOT UNAVAILABLE
+        // ============================================
+        // Set booking status (ACTIVE, or HELD with an expiry time) and persist
+        booking.setStatus(initialStatus);
+        booking.setHoldExpiresAt(initialStatus == ParkingStatus.HELD
+                ? LocalDateTime.now().plusMinutes(holdTtlMinutes)
+                : null);
+        bookingRepo.save(booking);
+
+        // Index the range before commit so a booking waiting on this slot's lock sees it;
+        // drop it again if the transaction rolls back
+        intervalIndex.put(booking);
+        Long bookedSlotId = booking.getSlotId();
+        Long bookingId = booking.getId();
+        TransactionCallbacks.afterRollback(() -> intervalIndex.remove(bookedSlotId, bookingId));
+
+        // Mark slot as unavailable (within the same transaction)
+        slot.setAvailable(false);
+        slotRepo.save(slot);
+        
+        // Transaction commits here - lock is released
+        // If any exception occurs above, transaction rolls back automatically
+    }
+
+    /**
+     * Enforce vehicle type to be a registered vehicle for the booking's user
+     * Falls back to the default vehicle, then the profile vehicle type, then CAR
+     */
+    private void applyRegisteredVehicleType(Booking booking) {
         if (booking.getUserId() != null) {
             User user = userRepo.findById(booking.getUserId())
                     .orElseThrow(() -> new RuntimeException("User not found"));
 
             java.util.List<Vehicle> registeredVehicles = vehicleRepo.findByUserId(user.getId());
+            applyRegisteredVehicleType(booking, user, registeredVehicles);
+        } else if (booking.getVehicleType() == null) {
+            // No user context provided; default to CAR
+            booking.setVehicleType(com.smartparking.model.VehicleType.CAR);
+        }
+    }
+
+    /**
+     * Same as above with the user and their vehicles already loaded
+     */
+    private void applyRegisteredVehicleType(Booking booking, User user, List<Vehicle> registeredVehicles) {
+        if (!registeredVehicles.isEmpty()) {
+            // Verify that requested vehicle type matches one of user's registered vehicles
+            com.smartparking.model.VehicleType requestedType = booking.getVehicleType();
+            
+            // Check if the vehicle type matches any registered vehicle
+            boolean hasVehicleOfType = registeredVehicles.stream()
+                    .anyMatch(v -> v.getVehicleType() == requestedType);
 
-            if (!registeredVehicles.isEmpty()) {
-                // Verify that requested vehicle type matches one of user's registered vehicles
-                com.smartparking.model.VehicleType requestedType = booking.getVehicleType();
+            if (!hasVehicleOfType) {
+                // If no exact match, use the default vehicle
+                Vehicle defaultVehicle = registeredVehicles.stream()
+                        .filter(v -> Boolean.TRUE.equals(v.getIsDefault()))
+                        .findFirst()
+                        .orElse(registeredVehicles.get(0));
                 
-                // Check if the vehicle type matches any registered vehicle
-                boolean hasVehicleOfType = registeredVehicles.stream()
-                        .anyMatch(v -> v.getVehicleType() == requestedType);
-
-                if (!hasVehicleOfType) {
-                    // If no exact match, use the default vehicle
-                    Vehicle defaultVehicle = registeredVehicles.stream()
-                            .filter(v -> Boolean.TRUE.equals(v.getIsDefault()))
-                            .findFirst()
-                            .orElse(registeredVehicles.get(0));
-                    
-                    booking.setVehicleType(defaultVehicle.getVehicleType());
-                }
-                // If exact match found, keep the requested type
+                booking.setVehicleType(defaultVehicle.getVehicleType());
+            }
+            // If exact match found, keep the requested type
+        } else {
+            // No registered vehicles: use user profile vehicleType if present, else default to CAR
+            if (user.getVehicleType() != null && !user.getVehicleType().isEmpty()) {
+                booking.setVehicleType(com.smartparking.model.VehicleType.fromString(user.getVehicleType()));
+            } else if (booking.getVehicleType() != null) {
+                booking.setVehicleType(booking.getVehicleType());
             } else {
-                // No registered vehicles: use user profile vehicleType if present, else default to CAR
-                if (user.getVehicleType() != null && !user.getVehicleType().isEmpty()) {
-                    booking.setVehicleType(com.smartparking.model.VehicleType.fromString(user.getVehicleType()));
-                } else if (booking.getVehicleType() != null) {
-                    booking.setVehicleType(booking.getVehicleType());
-                } else {
-                    booking.setVehicleType(com.smartparking.model.VehicleType.CAR);
-                }
+                booking.setVehicleType(com.smartparking.model.VehicleType.CAR);
             }
-        } else if (booking.getVehicleType() == null) {
-            // No user context provided; default to CAR
-            booking.setVehicleType(com.smartparking.model.VehicleType.CAR);
         }
+    }
 
+    /**
+     * Validate that the slot can take the booking (time range, conflicts, availability, slot type)
+     * Must run while the slot is locked or version-checked
+     */
+    private void validateSlotForBooking(Booking booking, Slot slot) {
         // ============================================
         // STEP 4: VALIDATE TIME RANGE
         // ============================================
@@ -160,11 +388,13 @@ public class BookingService {
         // STEP 5: CHECK FOR TIME CONFLICTS
         // ============================================
         // Check for time conflicts with existing bookings
-        boolean conflict = bookingRepo.hasTimeConflict(
-                booking.getSlotId(),
-                booking.getEntryTime(),
-                booking.getExitTime() != null ? booking.getExitTime() : booking.getEntryTime().plusHours(2)
-        );
+        // Uses the in-memory interval index once loaded, the COUNT query otherwise.
+        // The index may hold bookings ended elsewhere, so a conflict it finds is confirmed
+        // with the COUNT query before the booking is refused.
+        LocalDateTime conflictCheckEnd = booking.getExitTime() != null ? booking.getExitTime() : booking.getEntryTime().plusHours(2);
+        boolean conflict = (!intervalIndex.isReady()
+                        || intervalIndex.hasConflict(booking.getSlotId(), booking.getEntryTime(), conflictCheckEnd))
+                && bookingRepo.hasTimeConflict(booking.getSlotId(), booking.getEntryTime(), conflictCheckEnd);
 
         if (conflict) {
             throw new RuntimeException("Slot already booked for this time period");
@@ -199,20 +429,314 @@ public class BookingService {
         if (!slotType.equalsIgnoreCase(bookingVehicleType)) {
             throw new RuntimeException("❌ Vehicle type mismatch: This slot is designated for " + slotType + " vehicles only, but you are trying to book it with a " + bookingVehicleType + " vehicle.");
         }
+    }
+
+    /**
+     * Book any free slot of the booking's vehicle type at a location
+     * Free slots are taken from the in-memory per-(location, type) queue, so concurrent
+     * callers are handed different slots instead of colliding on the same one; with the
+     * availability engine disabled they are read from the database instead.
+     *
+     * @param booking Booking details (userId, entryTime, vehicleType); slotId is assigned here
+     * @param locationId Location to book at
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void bookAnySlot(Booking booking, Long locationId) {
+        if (locationId == null) {
+            throw new RuntimeException("Location is required");
+        }
+        if (booking.getEntryTime() == null) {
+            throw new RuntimeException("Entry time is required");
+        }
+
+        // Resolve the user's vehicle type once, up front, so we pick from the right queue
+        // and the candidates below do not look the user and their vehicles up again
+        applyRegisteredVehicleType(booking);
+        String slotType = booking.getVehicleType() != null ? booking.getVehicleType().name() : "CAR";
+
+        Supplier<Long> candidates = freeSlotCandidates(locationId, slotType, Collections.emptySet());
+        for (int attempt = 1; attempt <= AUTO_ASSIGN_MAX_CANDIDATES; attempt++) {
+            Long candidate = candidates.get();
+            if (candidate == null) {
+                break;
+            }
+            booking.setId(null);
+            booking.setSlotId(candidate);
+            try {
+                reserveSlot(booking, ParkingStatus.ACTIVE, lockMode, false);
+                return;
+            } catch (RuntimeException e) {
+                // Candidate lost to a concurrent booking or has a time conflict; try the next one.
+                // A rolled-back reservation puts the candidate back in the queue.
+            }
+        }
+
+        booking.setSlotId(null);
+        throw new RuntimeException("No free " + slotType + " slots available at this location");
+    }
+
+    /**
+     * Book several slots for one user in a single transaction (fleet bookings)
+     * The user and their vehicles are loaded once, all slots are locked with one query
+     * in ascending id order, and every item is reported individually: items that fail
+     * validation are skipped while the rest are booked.
+     *
+     * @param userId User making the bookings
+     * @param items Either a slotId, or a locationId to be assigned a free slot of the vehicle type
+     * @return One result per item, in request order
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BatchItemResult> bookSlots(Long userId, List<BatchItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("At least one booking item is required");
+        }
+        if (items.size() > BATCH_MAX_ITEMS) {
+            throw new RuntimeException("A batch can contain at most " + BATCH_MAX_ITEMS + " bookings");
+        }
+
+        User user = userRepo.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        List<Vehicle> registeredVehicles = vehicleRepo.findByUserId(user.getId());
+
+        return transactionTemplate.execute(status -> doBookSlots(user, registeredVehicles, items));
+    }
+
+    private List<BatchItemResult> doBookSlots(User user, List<Vehicle> registeredVehicles, List<BatchItem> items) {
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        Booking[] bookings = new Booking[items.size()];
+        Set<Long> claimedSlotIds = new HashSet<>();
 
         // ============================================
-        // STEP 8: CREATE BOOKING AND MARK SLOT UNAVAILABLE
+        // STEP 1: RESOLVE VEHICLE TYPES AND RESERVE SLOTS IN MEMORY
+        // ============================================
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            Booking booking = new Booking(user.getId(), item.getSlotId(), item.getEntryTime());
+            booking.setExitTime(item.getExitTime());
+            if (item.getVehicleType() != null && !item.getVehicleType().isEmpty()) {
+                booking.setVehicleType(com.smartparking.model.VehicleType.fromString(item.getVehicleType()));
+            }
+
+            if (booking.getEntryTime() == null) {
+                results[i] = BatchItemResult.failed(i, booking, "Entry time is required");
+                continue;
+            }
+            if (booking.getSlotId() == null && item.getLocationId() == null) {
+                results[i] = BatchItemResult.failed(i, booking, "Either slotId or locationId is required");
+                continue;
+            }
+            applyRegisteredVehicleType(booking, user, registeredVehicles);
+
+            Long slotId = booking.getSlotId() != null
+                    ? reserveForBatch(booking.getSlotId(), claimedSlotIds)
+                    : reserveAnyForBatch(item.getLocationId(), booking, claimedSlotIds);
+            if (slotId == null) {
+                results[i] = BatchItemResult.failed(i, booking, booking.getSlotId() != null
+                        ? "Slot is currently unavailable"
+                        : "No free " + booking.getVehicleType().name() + " slots available at this location");
+                continue;
+            }
+            booking.setSlotId(slotId);
+            bookings[i] = booking;
+        }
+
+        if (claimedSlotIds.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        // ============================================
+        // STEP 2: LOCK ALL SLOTS IN ONE ORDERED QUERY
+        // ============================================
+        List<Long> lockOrder = new ArrayList<>(claimedSlotIds);
+        Collections.sort(lockOrder);
+        Map<Long, Slot> lockedSlots = new HashMap<>();
+        for (Slot slot : slotLockManager.lockSlots(lockOrder)) {
+            lockedSlots.put(slot.getId(), slot);
+        }
+
+        // ============================================
+        // STEP 3: VALIDATE EACH ITEM AGAINST ITS LOCKED SLOT
+        // ============================================
+        List<Booking> accepted = new ArrayList<>();
+        List<Slot> bookedSlots = new ArrayList<>();
+        for (int i = 0; i < bookings.length; i++) {
+            Booking booking = bookings[i];
+            if (booking == null) {
+                continue;
+            }
+            try {
+                Slot slot = lockedSlots.get(booking.getSlotId());
+                if (slot == null) {
+                    throw new RuntimeException("Slot not found");
+                }
+                validateSlotForBooking(booking, slot);
+                booking.setStatus(ParkingStatus.ACTIVE);
+                slot.setAvailable(false);
+                accepted.add(booking);
+                bookedSlots.add(slot);
+            } catch (RuntimeException e) {
+                availabilityEngine.release(booking.getSlotId());
+                results[i] = BatchItemResult.failed(i, booking, e.getMessage());
+                bookings[i] = null;
+            }
+        }
+
         // ============================================
-        // Set booking status to ACTIVE and persist
+        // STEP 4: PERSIST ACCEPTED BOOKINGS AND SLOTS
+        // ============================================
+        bookingRepo.saveAll(accepted);
+        slotRepo.saveAll(bookedSlots);
+
+        for (int i = 0; i < bookings.length; i++) {
+            Booking booking = bookings[i];
+            if (booking == null) {
+                continue;
+            }
+            intervalIndex.put(booking);
+            Long bookedSlotId = booking.getSlotId();
+            Long bookingId = booking.getId();
+            TransactionCallbacks.afterRollback(() -> intervalIndex.remove(bookedSlotId, bookingId));
+            results[i] = BatchItemResult.booked(i, booking);
+        }
+
+        System.out.println("🚗 [BookingService.bookSlots] User " + user.getId() + " booked "
+                + accepted.size() + "/" + items.size() + " slot(s)");
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Reserve a requested slot for a batch, rejecting duplicates within the same batch
+     */
+    private Long reserveForBatch(Long slotId, Set<Long> claimedSlotIds) {
+        if (claimedSlotIds.contains(slotId)) {
+            return null;
+        }
+        if (availabilityEngine.tryReserve(slotId)) {
+            TransactionCallbacks.afterRollback(() -> availabilityEngine.release(slotId));
+        } else if (slotRepo.countBookableById(slotId) == 0) {
+            return null;
+        }
+        // Otherwise the occupied bit is stale (see doBookSlot) and the row lock decides
+        claimedSlotIds.add(slotId);
+        return slotId;
+    }
+
+    /**
+     * Reserve the next free slot of the booking's vehicle type at a location for a batch
+     */
+    private Long reserveAnyForBatch(Long locationId, Booking booking, Set<Long> claimedSlotIds) {
+        String slotType = booking.getVehicleType() != null ? booking.getVehicleType().name() : "CAR";
+        Supplier<Long> candidates = freeSlotCandidates(locationId, slotType, claimedSlotIds);
+        for (int attempt = 1; attempt <= AUTO_ASSIGN_MAX_CANDIDATES; attempt++) {
+            Long candidate = candidates.get();
+            if (candidate == null) {
+                return null;
+            }
+            Long reserved = reserveForBatch(candidate, claimedSlotIds);
+            if (reserved != null) {
+                return reserved;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Free-slot candidates for auto-assignment, one per call, null once there are no more
+     * Taken from the availability engine's queue, or read from the database when the engine
+     * is disabled; that list is shuffled so concurrent callers spread over the free slots
+     *
+     * @param exclude Slots the caller has already claimed
+     */
+    private Supplier<Long> freeSlotCandidates(Long locationId, String slotType, Set<Long> exclude) {
+        if (availabilityEngine.isEnabled()) {
+            return () -> availabilityEngine.pollFree(locationId, slotType);
+        }
+        List<Long> free = new ArrayList<>(slotRepo.findFreeSlotIds(locationId, slotType,
+                PageRequest.of(0, AUTO_ASSIGN_MAX_CANDIDATES * 4 + exclude.size())));
+        free.removeAll(exclude);
+        Collections.shuffle(free);
+        Iterator<Long> iterator = free.iterator();
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Confirm a held booking, turning it into a regular ACTIVE booking
+     *
+     * @param bookingId HELD booking to confirm
+     * @param userId Owner of the booking
+     */
+    public Booking confirmHold(Long bookingId, Long userId) {
+        // Lock the slot before reading the booking, the same order the expiry batch uses,
+        // so a confirm and an expiry of the same hold cannot both succeed
+        Long slotId = bookingRepo.findSlotIdById(bookingId)
+                .orElseThrow(() -> new RuntimeException("Booking not found"));
+        slotLockManager.lockSlot(slotId);
+
+        Booking booking = bookingRepo.findById(bookingId)
+                .orElseThrow(() -> new RuntimeException("Booking not found"));
+        if (!booking.getUserId().equals(userId)) {
+            throw new RuntimeException("Unauthorized: Booking does not belong to user");
+        }
+        if (booking.getStatus() != ParkingStatus.HELD) {
+            throw new RuntimeException("Booking is not on hold. Current status: " + booking.getStatus());
+        }
+        if (booking.getHoldExpiresAt() != null && booking.getHoldExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("Hold has expired");
+        }
+
         booking.setStatus(ParkingStatus.ACTIVE);
-        bookingRepo.save(booking);
+        booking.setHoldExpiresAt(null);
+        Booking confirmed = bookingRepo.save(booking);
+        TransactionCallbacks.afterCommit(() -> holdExpiryWheel.cancel(bookingId));
+        return confirmed;
+    }
 
-        // Mark slot as unavailable (within the same transaction)
-        slot.setAvailable(false);
-        slotRepo.save(slot);
-        
-        // Transaction commits here - lock is released
-        // If any exception occurs above, transaction rolls back automatically
+    /**
+     * Cancel a batch of expired holds and free their slots in one transaction
+     * Called by the hold expiry wheel; holds confirmed in the meantime are left alone
+     */
+    public void expireHolds(List<HoldExpiryWheel.HoldTimeout> expired) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> slotIds = expired.stream()
+                    .map(HoldExpiryWheel.HoldTimeout::getSlotId)
+                    .filter(java.util.Objects::nonNull)
+                    .distinct()
+                    .sorted()
+                    .collect(Collectors.toList());
+            Map<Long, Slot> lockedSlots = new HashMap<>();
+            for (Slot slot : slotLockManager.lockSlots(slotIds)) {
+                lockedSlots.put(slot.getId(), slot);
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            List<Booking> released = new ArrayList<>();
+            for (Booking booking : bookingRepo.findAllById(expired.stream()
+                    .map(HoldExpiryWheel.HoldTimeout::getBookingId)
+                    .collect(Collectors.toList()))) {
+                if (booking.getStatus() != ParkingStatus.HELD
+                        || (booking.getHoldExpiresAt() != null && booking.getHoldExpiresAt().isAfter(now))) {
+                    continue;
+                }
+                booking.setStatus(ParkingStatus.CANCELLED);
+                if (booking.getExitTime() == null) {
+                    booking.setExitTime(now);
+                }
+                Slot slot = lockedSlots.get(booking.getSlotId());
+                if (slot != null) {
+                    slot.setAvailable(true);
+                }
+                released.add(booking);
+            }
+
+            bookingRepo.saveAll(released);
+            slotRepo.saveAll(lockedSlots.values());
+            TransactionCallbacks.afterCommit(() -> released.forEach(booking -> {
+                intervalIndex.remove(booking.getSlotId(), booking.getId());
+                availabilityEngine.release(booking.getSlotId());
+            }));
+            System.out.println("⏱️ [BookingService.expireHolds] Released " + released.size() + "/" + expired.size()
+                    + " expired hold(s)");
+        });
     }
 
     /**
@@ -242,15 +766,18 @@ public CheckoutResponse checkoutBooking(Long bookingId) {
     );
 
     // Get location ID from slot for location-based pricing
-    Long locationId = null;
-    try {
-        Slot slot = slotRepo.findById(booking.getSlotId()).orElse(null);
-        if (slot != null && slot.getLocation() != null) {
-            locationId = slot.getLocation().getId();
+    // (in-memory slot map first, falls back to the slot row)
+    Long locationId = availabilityEngine.getLocationId(booking.getSlotId());
+    if (locationId == null) {
+        try {
+            Slot slot = slotRepo.findById(booking.getSlotId()).orElse(null);
+            if (slot != null && slot.getLocation() != null) {
+                locationId = slot.getLocation().getId();
+            }
+        } catch (Exception e) {
+            // If we can't get location, will fall back to default pricing
+            System.err.println("Could not retrieve location for slot: " + e.getMessage());
         }
-    } catch (Exception e) {
-        // If we can't get location, will fall back to default pricing
-        System.err.println("Could not retrieve location for slot: " + e.getMessage());
     }
 
     // Calculate fee based on vehicle type and location
@@ -270,18 +797,21 @@ public CheckoutResponse checkoutBooking(Long bookingId) {
         );
     }
 
+    // Rate for the response, from the precompiled tariff table
+    double appliedRate = tariffTable.getRatePerHour(locationId, booking.getVehicleType());
+
     // Do NOT auto-process payment here. Build a pending payment response instead.
-    // Get vehicle type and rate for response
     String vehicleTypeName = booking.getVehicleType() != null ? 
                              booking.getVehicleType().name() : "CAR";
-    double appliedRate = booking.getVehicleType() != null ? 
-                         feeCalculationService.getRatePerHour(locationId, booking.getVehicleType()) :
-                         feeCalculationService.getRatePerHour();
 
     // Mark booking as pending payment and save fee
     booking.setParkingFee(parkingFee);
     booking.setPaymentStatus("PENDING_PAYMENT");
     bookingRepo.save(booking);
+    TransactionCallbacks.afterCommit(() -> {
+        intervalIndex.put(booking);
+        feeTicker.finish(booking);
+    });
 
     // Do NOT release the slot here; wait for payment confirmation via /api/payments/process
 
@@ -300,6 +830,105 @@ public CheckoutResponse checkoutBooking(Long bookingId) {
             "Pending payment"
     );
 }
+
+    /**
+     * Exit, step 1: record the exit time and fee and mark the booking PENDING_PAYMENT
+     * A short transaction under the slot lock, loading the booking and slot once; the charge
+     * itself is made afterwards by payExit, outside any transaction or lock
+     *
+     * @param bookingId Booking ID to exit
+     * @param userId Owner of the booking
+     * @return The priced exit, to pass to payExit
+     */
+    public ExitQuote recordExit(Long bookingId, Long userId) {
+        // Lock the slot first, the same order as checkout, settlement and hold expiry
+        Long slotId = getSlotIdForBooking(bookingId);
+        Slot slot = slotLockManager.lockSlot(slotId);
+
+        Booking booking = bookingRepo.findById(bookingId)
+                .orElseThrow(() -> new RuntimeException("Booking not found"));
+        if (!booking.getUserId().equals(userId)) {
+            throw new RuntimeException("Unauthorized: Booking does not belong to user");
+        }
+        if (booking.getStatus() != ParkingStatus.ACTIVE) {
+            throw new RuntimeException("Booking is not active. Current status: " + booking.getStatus());
+        }
+
+        LocalDateTime exitTime = LocalDateTime.now();
+        booking.setExitTime(exitTime);
+        long durationMinutes = feeCalculationService.calculateDurationMinutes(booking.getEntryTime(), exitTime);
+
+        Long locationId = availabilityEngine.getLocationId(slotId);
+        if (locationId == null && slot.getLocation() != null) {
+            locationId = slot.getLocation().getId();
+        }
+        double appliedRate = tariffTable.getRatePerHour(locationId, booking.getVehicleType());
+        double parkingFee = booking.getVehicleType() != null
+                ? feeCalculationService.calculateFee(booking.getEntryTime(), exitTime, booking.getVehicleType(), locationId)
+                : feeCalculationService.calculateFee(booking.getEntryTime(), exitTime);
+        booking.setParkingFee(parkingFee);
+        booking.setPaymentStatus("PENDING_PAYMENT");
+        bookingRepo.save(booking);
+        TransactionCallbacks.afterCommit(() -> {
+            intervalIndex.put(booking);
+            feeTicker.finish(booking);
+        });
+
+        String vehicleTypeName = booking.getVehicleType() != null ? booking.getVehicleType().name() : "CAR";
+        return new ExitQuote(bookingId, slotId, vehicleTypeName, booking.getEntryTime(), exitTime,
+                durationMinutes, appliedRate, parkingFee);
+    }
+
+    /**
+     * Exit, step 2: charge the recorded fee and settle the booking
+     * Runs outside any transaction, so a slow gateway holds neither a connection nor the slot
+     * lock; the slot release and COMPLETED status are committed by SettlementWriter
+     *
+     * If the charge is declined, pending or in doubt, the booking is left ACTIVE with the fee
+     * and PENDING_PAYMENT recorded, as after a plain checkout
+     * If the charge went through but the settlement did not commit, the receipt carries the
+     * transaction id and says so; the booking stays ACTIVE and paying again settles that
+     * same transaction (see GuardedPaymentClient) instead of charging twice
+     *
+     * @param exit Result of recordExit
+     * @param paymentMethod Payment method: CARD or UPI
+     * @return Receipt with fee, duration and transaction ID
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CheckoutResponse payExit(ExitQuote exit, String paymentMethod) {
+        PaymentService.PaymentResult payment = paymentService.processPayment(exit.bookingId, exit.parkingFee, paymentMethod);
+        if (!payment.isSuccess()) {
+            return exit.toResponse(false, null, payment.getMessage());
+        }
+
+        try {
+            settlementWriter.settle(exit.bookingId, exit.slotId, payment.getTransactionId());
+        } catch (RuntimeException e) {
+            // Answered, not thrown: the receipt is stored under the Idempotency-Key, so a retry
+            // replays it instead of recording the exit and charging again
+            System.out.println("❌ [BookingService.payExit] Booking " + exit.bookingId + " charged ("
+                    + payment.getTransactionId() + ") but not settled: " + e.getMessage());
+            String message = e instanceof SettlementWriter.Pending
+                    ? e.getMessage()
+                    : "Payment captured (transaction " + payment.getTransactionId()
+                            + ") but the booking is not completed yet: " + e.getMessage();
+            return exit.toResponse(true, payment.getTransactionId(), message);
+        }
+        return exit.toResponse(true, payment.getTransactionId(), "Payment successful - Slot released");
+    }
+
+    /**
+     * Slot of a booking, without loading the booking itself
+     */
+    public Long getSlotIdForBooking(Long bookingId) {
+        Long slotId = bookingRepo.findSlotIdById(bookingId)
+                .orElseThrow(() -> new RuntimeException("Booking not found"));
+        if (slotId == null) {
+            throw new RuntimeException("Booking has no assigned slot ID");
+        }
+        return slotId;
+    }
+
     /**
      * Cancel a booking and release the slot
      *
@@ -325,6 +954,12 @@ public CheckoutResponse checkoutBooking(Long bookingId) {
                 .orElseThrow(() -> new RuntimeException("Slot not found"));
         slot.setAvailable(true);
         slotRepo.save(slot);
+        TransactionCallbacks.afterCommit(() -> {
+            holdExpiryWheel.cancel(booking.getId());
+            intervalIndex.remove(slot.getId(), booking.getId());
+            availabilityEngine.release(slot.getId());
+            feeTicker.close(Collections.singletonList(booking.getId()));
+        });
     }
 
     // ============================================
@@ -580,6 +1215,7 @@ public CheckoutResponse checkoutBooking(Long bookingId) {
             
             booking.setExitTime(null);
             Booking savedBooking = bookingRepo.save(booking);
+            TransactionCallbacks.afterCommit(() -> intervalIndex.put(savedBooking));
             
             System.out.println("   ✅ Fixed: ExitTime now = " + savedBooking.getExitTime());
             return savedBooking;
@@ -594,5 +1230,163 @@ public CheckoutResponse checkoutBooking(Long bookingId) {
     public List<Booking> getActiveBookings() {
         return bookingRepo.findByStatus(ParkingStatus.ACTIVE);
     }
-}
 
+    // ============================================
+    // EXIT TYPES
+    // ============================================
+
+    /**
+     * A recorded exit waiting to be paid: what recordExit priced, for payExit
+     */
+    public static class ExitQuote {
+        private final Long bookingId;
+        private final Long slotId;
+        private final String vehicleType;
+        private final LocalDateTime entryTime;
+        private final LocalDateTime exitTime;
+        private final long durationMinutes;
+        private final double appliedRate;
+        private final double parkingFee;
+
+        private ExitQuote(Long bookingId, Long slotId, String vehicleType, LocalDateTime entryTime,
+                LocalDateTime exitTime, long durationMinutes, double appliedRate, double parkingFee) {
+            this.bookingId = bookingId;
+            this.slotId = slotId;
+            this.vehicleType = vehicleType;
+            this.entryTime = entryTime;
+            this.exitTime = exitTime;
+            this.durationMinutes = durationMinutes;
+            this.appliedRate = appliedRate;
+            this.parkingFee = parkingFee;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+
+        public Long getSlotId() {
+            return slotId;
+        }
+
+        public double getParkingFee() {
+            return parkingFee;
+        }
+
+        private CheckoutResponse toResponse(boolean paid, String transactionId, String message) {
+            return new CheckoutResponse(bookingId, slotId, vehicleType, entryTime, exitTime,
+                    durationMinutes, appliedRate, parkingFee, paid, transactionId, message);
+        }
+    }
+
+    // ============================================
+    // BATCH BOOKING TYPES
+    // ============================================
+
+    /**
+     * One vehicle in a batch booking request
+     */
+    public static class BatchItem {
+        public Long slotId;
+        public Long locationId;
+        public String vehicleType;
+        public LocalDateTime entryTime;
+        public LocalDateTime exitTime;
+
+        public Long getSlotId() {
+            return slotId;
+        }
+
+        public void setSlotId(Long slotId) {
+            this.slotId = slotId;
+        }
+
+        public Long getLocationId() {
+            return locationId;
+        }
+
+        public void setLocationId(Long locationId) {
+            this.locationId = locationId;
+        }
+
+        public String getVehicleType() {
+            return vehicleType;
+        }
+
+        public void setVehicleType(String vehicleType) {
+            this.vehicleType = vehicleType;
+        }
+
+        public LocalDateTime getEntryTime() {
+            return entryTime;
+        }
+
+        public void setEntryTime(LocalDateTime entryTime) {
+            this.entryTime = entryTime;
+        }
+
+        public LocalDateTime getExitTime() {
+            return exitTime;
+        }
+
+        public void setExitTime(LocalDateTime exitTime) {
+            this.exitTime = exitTime;
+        }
+    }
+
+    /**
+     * Outcome of one item in a batch booking
+     */
+    public static class BatchItemResult {
+        public int index;
+        public boolean success;
+        public Long bookingId;
+        public Long slotId;
+        public String vehicleType;
+        public String message;
+
+        static BatchItemResult booked(int index, Booking booking) {
+            BatchItemResult result = new BatchItemResult();
+            result.index = index;
+            result.success = true;
+            result.bookingId = booking.getId();
+            result.slotId = booking.getSlotId();
+            result.vehicleType = booking.getVehicleType() != null ? booking.getVehicleType().name() : null;
+            result.message = "Slot booked successfully";
+            return result;
+        }
+
+        static BatchItemResult failed(int index, Booking booking, String message) {
+            BatchItemResult result = new BatchItemResult();
+            result.index = index;
+            result.success = false;
+            result.slotId = booking.getSlotId();
+            result.vehicleType = booking.getVehicleType() != null ? booking.getVehicleType().name() : null;
+            result.message = message;
+            return result;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+
+        public Long getSlotId() {
+            return slotId;
+        }
+
+        public String getVehicleType() {
+            return vehicleType;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
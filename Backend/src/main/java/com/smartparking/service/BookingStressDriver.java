@@ -0,0 +1,337 @@
+package com.smartparking.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.Booking;
+import com.smartparking.model.Slot;
+import com.smartparking.model.VehicleType;
+import com.smartparking.repository.BookingRepository;
+import com.smartparking.repository.SlotRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Booking Stress Driver
+ * Drives bookSlot, checkoutBooking and cancelBooking from many threads against the
+ * configured database and checks that no slot ever holds two ACTIVE bookings.
+ *
+ * NEVER run it against production data. It writes and cancels real bookings on real slots
+ * through the admin endpoint: while it runs, customers lose those slots to the workers, and
+ * the CANCELLED booking rows stay behind in bookings, reports and rollups. Only enable it
+ * (app.booking.stress-driver.enabled=true) on a disposable test or staging database.
+ *
+ * A run is started in the background and polled with getStatus(); one run at a time, with
+ * threads and operations capped by app.booking.stress-driver.max-threads / max-operations.
+ * Given several lock modes, the same load is run once per mode (pessimistic row lock vs
+ * optimistic version check) and throughput and book latency are reported side by side.
+ */
+@Component
+public class BookingStressDriver {
+
+    private static final long INVARIANT_SAMPLE_MILLIS = 200;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private SlotRepository slotRepository;
+
+    @Value("${app.booking.stress-driver.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.booking.stress-driver.max-threads:64}")
+    private int maxThreads;
+
+    @Value("${app.booking.stress-driver.max-operations:100000}")
+    private int maxOperations;
+
+    @Value("${app.booking.stress-driver.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder attempted = new LongAdder();
+
+    private ExecutorService runner;
+
+    private volatile String state = "IDLE";
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile int requestedOperations;
+    private volatile Map<String, Object> lastReport;
+    private volatile String error;
+
+    @PostConstruct
+    public void start() {
+        runner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stress-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * Start a stress test in the background; poll getStatus() for progress and the report
+     *
+     * @param userId User the test bookings are made for
+     * @param locationId Location whose slots are used
+     * @param vehicleType Vehicle type to book with; only slots of this type are used
+     * @param threads Number of concurrent workers, 1..max-threads
+     * @param operations Number of book attempts, 1..max-operations
+     * @param skew 0 spreads attempts evenly; higher values concentrate them on a few hot slots
+     * @param checkoutRatio Fraction of successful bookings that are checked out before cancelling
+     * @param lockModes Lock modes to compare (pessimistic, optimistic); empty for app.booking.lock-mode
+     * @return Status of the run that was started
+     */
+    public Map<String, Object> start(Long userId, Long locationId, String vehicleType, int threads, int operations,
+                                     double skew, double checkoutRatio, List<String> lockModes) {
+        if (!enabled) {
+            throw new RuntimeException("Stress driver is disabled (app.booking.stress-driver.enabled)");
+        }
+        if (threads < 1 || threads > maxThreads) {
+            throw new RuntimeException("threads must be between 1 and " + maxThreads);
+        }
+        if (operations < 1 || operations > maxOperations) {
+            throw new RuntimeException("operations must be between 1 and " + maxOperations);
+        }
+        VehicleType type = VehicleType.fromString(vehicleType);
+        List<String> modes = lockModes != null ? lockModes : Collections.emptyList();
+        for (String mode : modes) {
+            if (!"pessimistic".equalsIgnoreCase(mode) && !"optimistic".equalsIgnoreCase(mode)) {
+                throw new RuntimeException("Unknown lock mode: " + mode);
+            }
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("A stress run is already in progress");
+        }
+
+        attempted.reset();
+        requestedOperations = operations * Math.max(modes.size(), 1);
+        lastReport = null;
+        error = null;
+        finishedAt = null;
+        startedAt = LocalDateTime.now();
+        state = "RUNNING";
+        runner.execute(() -> {
+            try {
+                lastReport = modes.isEmpty()
+                        ? doRun(userId, locationId, type, threads, operations, Math.max(skew, 0), checkoutRatio, null)
+                        : compare(userId, locationId, type, threads, operations, Math.max(skew, 0), checkoutRatio, modes);
+                state = "DONE";
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+                state = "FAILED";
+                System.out.println("❌ [BookingStressDriver] Run failed: " + e.getMessage());
+            } finally {
+                finishedAt = LocalDateTime.now();
+                running.set(false);
+            }
+        });
+        return getStatus();
+    }
+
+    /**
+     * State of the current or last run, with its report once it is done
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("attempted", attempted.sum());
+        status.put("operations", requestedOperations);
+        status.put("error", error);
+        status.put("report", lastReport);
+        return status;
+    }
+
+    /**
+     * Run the same load once per lock mode, one after another, and put the results side by side
+     */
+    private Map<String, Object> compare(Long userId, Long locationId, VehicleType vehicleType, int threads,
+                                        int operations, double skew, double checkoutRatio, List<String> modes) {
+        Map<String, Object> runs = new LinkedHashMap<>();
+        Map<String, Object> comparison = new LinkedHashMap<>();
+        for (String mode : modes) {
+            String name = mode.toLowerCase();
+            Map<String, Object> run = doRun(userId, locationId, vehicleType, threads, operations, skew, checkoutRatio, name);
+            runs.put(name, run);
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> bookLatency = (Map<String, Object>) run.get("bookLatency");
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("bookAttemptsPerSecond", run.get("bookAttemptsPerSecond"));
+            summary.put("booked", run.get("booked"));
+            summary.put("rejected", run.get("rejected"));
+            summary.put("bookP50Micros", bookLatency.get("p50Micros"));
+            summary.put("bookP99Micros", bookLatency.get("p99Micros"));
+            summary.put("invariantHolds", run.get("invariantHolds"));
+            comparison.put(name, summary);
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("comparison", comparison);
+        report.put("runs", runs);
+        System.out.println("🏁 [BookingStressDriver] Lock mode comparison: " + comparison);
+        return report;
+    }
+
+    /**
+     * @param lockMode Lock mode for bookSlot, or null for app.booking.lock-mode
+     */
+    private Map<String, Object> doRun(Long userId, Long locationId, VehicleType vehicleType, int threads,
+                                      int operations, double skew, double checkoutRatio, String lockMode) {
+        List<Long> slotIds = slotRepository.findByLocationId(locationId).stream()
+                .filter(slot -> !slot.isDisabled() && slot.isAvailable())
+                .filter(slot -> vehicleType.name().equalsIgnoreCase(slot.getSlotType()))
+                .map(Slot::getId)
+                .collect(Collectors.toList());
+        if (slotIds.isEmpty()) {
+            throw new RuntimeException("No free " + vehicleType + " slots at location " + locationId);
+        }
+
+        LatencyHistogram bookLatency = new LatencyHistogram();
+        LatencyHistogram checkoutLatency = new LatencyHistogram();
+        LatencyHistogram cancelLatency = new LatencyHistogram();
+        LongAdder booked = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder errors = new LongAdder();
+        Set<Long> violations = ConcurrentHashMap.newKeySet();
+
+        // Sample the invariant while the workers run; at the end every booking is cancelled again
+        ExecutorService monitor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stress-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicBoolean done = new AtomicBoolean();
+        monitor.execute(() -> {
+            while (!done.get()) {
+                violations.addAll(bookingRepository.findSlotsWithMultipleActiveBookings());
+                try {
+                    Thread.sleep(INVARIANT_SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "stress-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long attemptedBefore = attempted.sum();
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            workers.execute(() -> {
+                attempted.increment();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Long slotId = slotIds.get(pickSlot(random.nextDouble(), slotIds.size(), skew));
+                Booking booking = new Booking(userId, slotId, LocalDateTime.now());
+                booking.setVehicleType(vehicleType);
+
+                long opStart = System.nanoTime();
+                try {
+                    if (lockMode != null) {
+                        bookingService.bookSlot(booking, lockMode);
+                    } else {
+                        bookingService.bookSlot(booking);
+                    }
+                } catch (RuntimeException e) {
+                    // Lost the slot to another worker, the expected outcome under contention
+                    rejected.increment();
+                    bookLatency.recordSince(opStart);
+                    return;
+                }
+                bookLatency.recordSince(opStart);
+                booked.increment();
+
+                try {
+                    if (random.nextDouble() < checkoutRatio) {
+                        opStart = System.nanoTime();
+                        bookingService.checkoutBooking(booking.getId());
+                        checkoutLatency.recordSince(opStart);
+                    }
+                    opStart = System.nanoTime();
+                    bookingService.cancelBooking(booking.getId());
+                    cancelLatency.recordSince(opStart);
+                } catch (RuntimeException e) {
+                    errors.increment();
+                    System.out.println("❌ [BookingStressDriver] Booking " + booking.getId() + ": " + e.getMessage());
+                }
+            });
+        }
+        workers.shutdown();
+        boolean finished;
+        try {
+            finished = workers.awaitTermination(timeoutMinutes, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        }
+        if (!finished) {
+            workers.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        done.set(true);
+        monitor.shutdownNow();
+        violations.addAll(bookingRepository.findSlotsWithMultipleActiveBookings());
+
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("lockMode", lockMode != null ? lockMode : "configured");
+        report.put("slots", slotIds.size());
+        report.put("threads", threads);
+        report.put("operations", operations);
+        report.put("completed", finished);
+        report.put("skew", skew);
+        report.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        report.put("bookAttemptsPerSecond", Math.round((attempted.sum() - attemptedBefore) / seconds));
+        report.put("booked", booked.sum());
+        report.put("rejected", rejected.sum());
+        report.put("errors", errors.sum());
+        report.put("bookLatency", bookLatency.summary());
+        report.put("checkoutLatency", checkoutLatency.summary());
+        report.put("cancelLatency", cancelLatency.summary());
+        report.put("invariantHolds", violations.isEmpty());
+        report.put("slotsWithMultipleActiveBookings", new ArrayList<>(violations));
+        System.out.println("🏁 [BookingStressDriver] " + report);
+        return report;
+    }
+
+    /**
+     * Map a uniform random number to a slot index; skew bends the distribution towards index 0
+     */
+    private static int pickSlot(double uniform, int slotCount, double skew) {
+        int index = (int) (slotCount * Math.pow(uniform, 1 + skew));
+        return Math.min(index, slotCount - 1);
+    }
+}
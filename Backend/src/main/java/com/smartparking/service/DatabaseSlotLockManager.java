@@ -0,0 +1,62 @@
+package com.smartparking.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.Slot;
+import com.smartparking.repository.SlotRepository;
+
+/**
+ * Database Slot Lock Manager
+ * Default lock manager: pessimistic write lock on the slot row, released when the
+ * transaction commits or rolls back. Works across any number of application instances.
+ */
+@Component
+@ConditionalOnProperty(name = "app.booking.slot-lock", havingValue = "database", matchIfMissing = true)
+public class DatabaseSlotLockManager implements SlotLockManager {
+
+    @Autowired
+    private SlotRepository slotRepository;
+
+    private final LockWaitStats stats = new LockWaitStats();
+
+    @Override
+    public Slot lockSlot(Long slotId) {
+        return timed(() -> slotRepository.findByIdWithLock(slotId))
+                .orElseThrow(() -> new RuntimeException("Slot not found"));
+    }
+
+    @Override
+    public List<Slot> lockSlots(List<Long> slotIds) {
+        // The query locks rows in ascending id order
+        return timed(() -> slotRepository.findAllByIdWithLock(slotIds));
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = stats.toMap();
+        metrics.put("type", "database");
+        return metrics;
+    }
+
+    private <T> T timed(Supplier<T> lockQuery) {
+        long start = stats.beginWait();
+        try {
+            T result = lockQuery.get();
+            stats.acquired(start);
+            return result;
+        } catch (PessimisticLockingFailureException e) {
+            stats.timedOut();
+            throw e;
+        } catch (RuntimeException e) {
+            stats.acquired(start);
+            throw e;
+        }
+    }
+}
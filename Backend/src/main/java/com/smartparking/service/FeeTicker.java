@@ -0,0 +1,344 @@
+package com.smartparking.service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.smartparking.model.Booking;
+import com.smartparking.model.Slot;
+import com.smartparking.model.VehicleType;
+import com.smartparking.repository.SlotRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Fee Ticker
+ * Streams the authoritative running fee of a booking to the payment screen over
+ * server-sent events. All open streams share one scheduler thread; each tick works out the
+ * billed minutes of every subscription and only prices it and sends an event when they
+ * change, so an idle stream costs nothing but the connection.
+ *
+ * The fee comes from FeeCalculationService exactly as checkout bills it (the rate shown is
+ * read from the tariff table), and quote() exposes the same calculation to the payment
+ * endpoints, so the amount shown is the amount charged.
+ * Checkout, settlement and cancellation end the streams of their booking through finish()
+ * and close(), so an open payment screen never keeps showing a running fee.
+ */
+@Component
+public class FeeTicker {
+
+    @Autowired
+    private TariffTable tariffTable;
+
+    @Autowired
+    private FeeCalculationService feeCalculationService;
+
+    @Autowired
+    private SlotAvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private SlotRepository slotRepository;
+
+    @Value("${app.payment.fee-ticker.tick-seconds:5}")
+    private long tickSeconds;
+
+    @Value("${app.payment.fee-ticker.stream-timeout-minutes:30}")
+    private long streamTimeoutMinutes;
+
+    private final ConcurrentHashMap<SseEmitter, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fee-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, tickSeconds, tickSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        subscriptions.keySet().forEach(SseEmitter::complete);
+        subscriptions.clear();
+    }
+
+    /**
+     * Open a fee stream for a booking. The current fee is sent straight away; a booking that
+     * is already checked out has a final fee, so its stream ends after that first event.
+     */
+    public SseEmitter subscribe(Booking booking) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(streamTimeoutMinutes));
+        Subscription subscription = new Subscription(booking, resolveLocationId(booking.getSlotId()));
+
+        emitter.onCompletion(() -> subscriptions.remove(emitter));
+        emitter.onTimeout(() -> subscriptions.remove(emitter));
+        emitter.onError(error -> subscriptions.remove(emitter));
+
+        FeeQuote quote = subscription.quote(LocalDateTime.now());
+        if (!send(emitter, subscription, quote)) {
+            return emitter;
+        }
+        if (quote.isFinal()) {
+            emitter.complete();
+        } else {
+            subscriptions.put(emitter, subscription);
+        }
+        return emitter;
+    }
+
+    /**
+     * Authoritative fee for a booking right now: the recorded fee once checked out,
+     * otherwise the running fee from the entry time and the tariff table
+     */
+    public FeeQuote quote(Booking booking) {
+        return new Subscription(booking, resolveLocationId(booking.getSlotId())).quote(LocalDateTime.now());
+    }
+
+    /**
+     * Match an amount the client is paying against the authoritative fee
+     * While the booking is still running, the fee of the previous minute is accepted too,
+     * since a payment can cross a minute boundary after the last streamed event.
+     *
+     * @return The fee to charge, or null if the amount matches neither
+     */
+    public Double matchCharge(Booking booking, double amount) {
+        Subscription subscription = new Subscription(booking, resolveLocationId(booking.getSlotId()));
+        FeeQuote current = subscription.quote(LocalDateTime.now());
+        if (sameAmount(amount, current.getAmount())) {
+            return current.getAmount();
+        }
+        if (!current.isFinal() && current.getDurationMinutes() > 0) {
+            double previous = subscription.fee(LocalDateTime.now().minusMinutes(1));
+            if (sameAmount(amount, previous)) {
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * End the streams of a booking that was checked out: send its final fee and complete them
+     * Call after the checkout has committed
+     */
+    public void finish(Booking booking) {
+        Long bookingId = booking.getId();
+        LocalDateTime exitTime = booking.getExitTime();
+        Double recordedFee = booking.getParkingFee();
+        onTicker(() -> subscriptions.forEach((emitter, subscription) -> {
+            if (!bookingId.equals(subscription.bookingId)) {
+                return;
+            }
+            subscriptions.remove(emitter);
+            Subscription checkedOut = subscription.checkedOut(exitTime, recordedFee);
+            if (send(emitter, checkedOut, checkedOut.quote(LocalDateTime.now()))) {
+                emitter.complete();
+            }
+        }));
+    }
+
+    /**
+     * End the streams of bookings that are no longer awaiting payment (paid or cancelled)
+     * Call after the change has committed
+     */
+    public void close(Collection<Long> bookingIds) {
+        Set<Long> closed = new HashSet<>(bookingIds);
+        onTicker(() -> subscriptions.forEach((emitter, subscription) -> {
+            if (closed.contains(subscription.bookingId)) {
+                subscriptions.remove(emitter);
+                emitter.complete();
+            }
+        }));
+    }
+
+    /**
+     * Number of open fee streams
+     */
+    public int getOpenStreams() {
+        return subscriptions.size();
+    }
+
+    private void tick() {
+        LocalDateTime now = LocalDateTime.now();
+        subscriptions.forEach((emitter, subscription) -> {
+            try {
+                if (subscription.minutes(now) != subscription.lastSentMinutes) {
+                    send(emitter, subscription, subscription.quote(now));
+                }
+            } catch (RuntimeException e) {
+                // One broken stream must not stop the ticker for the others
+                subscriptions.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        });
+    }
+
+    /**
+     * Run on the ticker thread, so events for one stream are never sent concurrently
+     */
+    private void onTicker(Runnable task) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        try {
+            scheduler.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; stop() completes every stream
+        }
+    }
+
+    private boolean send(SseEmitter emitter, Subscription subscription, FeeQuote quote) {
+        try {
+            emitter.send(SseEmitter.event().name("fee").data(quote.toMap()));
+            subscription.lastSentMinutes = quote.getDurationMinutes();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            subscriptions.remove(emitter);
+            return false;
+        }
+    }
+
+    private Long resolveLocationId(Long slotId) {
+        // In-memory slot map first, falls back to the slot row
+        Long locationId = availabilityEngine.getLocationId(slotId);
+        if (locationId == null && slotId != null) {
+            Slot slot = slotRepository.findById(slotId).orElse(null);
+            if (slot != null && slot.getLocation() != null) {
+                locationId = slot.getLocation().getId();
+            }
+        }
+        return locationId;
+    }
+
+    private static boolean sameAmount(double a, double b) {
+        return Math.abs(a - b) < 0.005;
+    }
+
+    private final class Subscription {
+        private final Long bookingId;
+        private final LocalDateTime entryTime;
+        private final LocalDateTime exitTime;
+        private final Double recordedFee;
+        private final Long locationId;
+        private final VehicleType vehicleType;
+        // Owned by the ticker thread after registration
+        private long lastSentMinutes = -1;
+
+        private Subscription(Booking booking, Long locationId) {
+            this(booking.getId(), booking.getEntryTime(), booking.getExitTime(), booking.getParkingFee(),
+                    locationId, booking.getVehicleType());
+        }
+
+        private Subscription(Long bookingId, LocalDateTime entryTime, LocalDateTime exitTime, Double recordedFee,
+                Long locationId, VehicleType vehicleType) {
+            this.bookingId = bookingId;
+            this.entryTime = entryTime;
+            this.exitTime = exitTime;
+            this.recordedFee = recordedFee;
+            this.locationId = locationId;
+            this.vehicleType = vehicleType;
+        }
+
+        /**
+         * The same subscription after checkout recorded the exit time and fee
+         */
+        private Subscription checkedOut(LocalDateTime exitTime, Double recordedFee) {
+            return new Subscription(bookingId, entryTime, exitTime, recordedFee, locationId, vehicleType);
+        }
+
+        private boolean isFinal() {
+            return exitTime != null && recordedFee != null;
+        }
+
+        /**
+         * Billed minutes; cheap, so the ticker checks it before pricing
+         */
+        private long minutes(LocalDateTime now) {
+            return feeCalculationService.calculateDurationMinutes(entryTime, isFinal() ? exitTime : now);
+        }
+
+        /**
+         * Running fee up to the given time, priced as checkout prices it
+         */
+        private double fee(LocalDateTime until) {
+            return vehicleType != null
+                    ? feeCalculationService.calculateFee(entryTime, until, vehicleType, locationId)
+                    : feeCalculationService.calculateFee(entryTime, until);
+        }
+
+        private FeeQuote quote(LocalDateTime now) {
+            // Rate is looked up on every event so a tariff swap shows up on open streams
+            double ratePerHour = tariffTable.getRatePerHour(locationId, vehicleType);
+            if (isFinal()) {
+                return new FeeQuote(bookingId, minutes(now), ratePerHour, recordedFee, true);
+            }
+            return new FeeQuote(bookingId, minutes(now), ratePerHour, fee(now), false);
+        }
+    }
+
+    public static final class FeeQuote {
+        private final Long bookingId;
+        private final long durationMinutes;
+        private final double ratePerHour;
+        private final double amount;
+        private final boolean isFinal;
+
+        private FeeQuote(Long bookingId, long durationMinutes, double ratePerHour, double amount, boolean isFinal) {
+            this.bookingId = bookingId;
+            this.durationMinutes = durationMinutes;
+            this.ratePerHour = ratePerHour;
+            this.amount = amount;
+            this.isFinal = isFinal;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+
+        public long getDurationMinutes() {
+            return durationMinutes;
+        }
+
+        public double getRatePerHour() {
+            return ratePerHour;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public boolean isFinal() {
+            return isFinal;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("bookingId", bookingId);
+            map.put("durationMinutes", durationMinutes);
+            map.put("ratePerHour", ratePerHour);
+            map.put("amount", amount);
+            map.put("final", isFinal);
+            map.put("timestamp", LocalDateTime.now());
+            return map;
+        }
+    }
+}
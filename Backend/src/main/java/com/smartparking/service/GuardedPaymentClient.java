@@ -0,0 +1,363 @@
+package com.smartparking.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Guarded Payment Client
+ * Calls the configured PaymentGateway so that a slow or failing provider only degrades
+ * payments, never the threads that called it:
+ *
+ * - Bulkhead: at most app.payment.client.max-concurrent charges run at once; a caller waits
+ *   up to bulkhead-wait-millis for a permit
+ * - Timeout: a charge that has not answered after timeout-millis is abandoned
+ * - Circuit breaker: breaker.failure-threshold consecutive errors or timeouts open the circuit
+ *   for breaker.open-seconds, then a single trial charge decides whether it closes again
+ *
+ * When the provider is not called (open circuit, full bulkhead) the result is PENDING: nothing
+ * was charged and the user can pay again later. When it was called but did not answer (timeout,
+ * error) the result is IN_DOUBT: the charge may have gone through. Every attempt carries an
+ * idempotency key (booking id plus attempt id), and an in-doubt attempt keeps its booking from
+ * being charged afresh: the next payment for that booking replays the same key, so the
+ * provider reports what happened instead of charging twice. Only a declined replay lets a new
+ * attempt go ahead. A declined card is an answer, not an error, and does not trip the breaker.
+ *
+ * A successful charge stays recorded as captured until SettlementWriter reports its booking
+ * settled: paying again for a captured booking returns the same transaction to settle instead
+ * of charging a second time.
+ */
+@Component
+public class GuardedPaymentClient {
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Value("${app.payment.client.max-concurrent:32}")
+    private int maxConcurrent;
+
+    @Value("${app.payment.client.bulkhead-wait-millis:50}")
+    private long bulkheadWaitMillis;
+
+    @Value("${app.payment.client.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    @Value("${app.payment.client.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${app.payment.client.breaker.open-seconds:30}")
+    private long openSeconds;
+
+    private Semaphore bulkhead;
+    private ExecutorService callers;
+    private CircuitBreaker breaker;
+
+    // Latest unsettled attempt per booking: in flight, in doubt until a replay is answered,
+    // or captured until its settlement commits
+    private final ConcurrentHashMap<Long, Attempt> attempts = new ConcurrentHashMap<>();
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong bulkheadRejected = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong reconciled = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        bulkhead = new Semaphore(maxConcurrent);
+        breaker = new CircuitBreaker(failureThreshold, TimeUnit.SECONDS.toMillis(openSeconds));
+        AtomicInteger counter = new AtomicInteger();
+        // Unbounded pool, but never more live calls than bulkhead permits plus abandoned ones
+        callers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "payment-gateway-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        callers.shutdownNow();
+    }
+
+    /**
+     * Charge through the gateway; never blocks longer than bulkhead wait plus timeout
+     * An in-doubt earlier attempt for the booking is replayed instead of charging afresh,
+     * and a captured but unsettled one is returned as it is
+     */
+    public PaymentService.PaymentResult charge(Long bookingId, double amount, String paymentMethod) {
+        if (bookingId == null) {
+            return call(null, idGenerator.nextId("ATT"), amount, paymentMethod);
+        }
+
+        Attempt attempt = claim(bookingId, amount, paymentMethod);
+        if (attempt == null) {
+            return PaymentService.PaymentResult.inDoubt("A payment for this booking is already being processed - please check the booking before paying again");
+        }
+        if (attempt.capturedTransactionId != null) {
+            // Charged before but not settled yet: settle that charge, do not take another
+            return new PaymentService.PaymentResult(true, attempt.capturedTransactionId,
+                    "Earlier payment of " + attempt.amount + " was already captured");
+        }
+
+        PaymentService.PaymentResult result = call(bookingId, attempt.key, attempt.amount, attempt.paymentMethod);
+        if (result.isInDoubt() || (result.isPending() && attempt.replay)) {
+            // Still unknown whether the provider charged; keep the booking blocked
+            attempts.computeIfPresent(bookingId, (id, current) -> {
+                current.inFlight = false;
+                return current;
+            });
+            return attempt.replay
+                    ? PaymentService.PaymentResult.inDoubt("An earlier payment for this booking is still being confirmed with the provider - please do not pay again yet")
+                    : result;
+        }
+
+        if (result.isSuccess()) {
+            // Keep the booking blocked until SettlementWriter confirms the settlement
+            attempts.computeIfPresent(bookingId, (id, current) -> {
+                current.inFlight = false;
+                current.capturedTransactionId = result.getTransactionId();
+                return current;
+            });
+        } else {
+            attempts.remove(bookingId, attempt);
+        }
+        if (!attempt.replay) {
+            return result;
+        }
+        reconciled.incrementAndGet();
+        System.out.println("🔁 [GuardedPaymentClient] Reconciled attempt " + attempt.key + ": "
+                + (result.isSuccess() ? "charged " + result.getTransactionId() : "not charged"));
+        if (result.isSuccess()) {
+            return new PaymentService.PaymentResult(true, result.getTransactionId(),
+                    "Earlier payment of " + attempt.amount + " was confirmed");
+        }
+        // The earlier attempt was declined, so nothing was charged: this payment can go ahead
+        return charge(bookingId, amount, paymentMethod);
+    }
+
+    /**
+     * Start a new attempt for the booking, or take over its in-doubt attempt for a replay
+     * Returns null while another attempt for the booking is in flight
+     */
+    private Attempt claim(Long bookingId, double amount, String paymentMethod) {
+        Attempt[] claimed = new Attempt[1];
+        attempts.compute(bookingId, (id, current) -> {
+            if (current == null) {
+                claimed[0] = new Attempt(id + ":" + idGenerator.nextId("ATT"), amount, paymentMethod, false);
+                return claimed[0];
+            }
+            if (current.inFlight) {
+                return current;
+            }
+            if (current.capturedTransactionId != null) {
+                claimed[0] = current;
+                return current;
+            }
+            current.inFlight = true;
+            claimed[0] = new Attempt(current.key, current.amount, current.paymentMethod, true);
+            return claimed[0];
+        });
+        return claimed[0];
+    }
+
+    /**
+     * The booking's captured charge has been settled; it may be charged again from now on
+     */
+    public void settled(Long bookingId) {
+        if (bookingId != null) {
+            attempts.computeIfPresent(bookingId, (id, current) -> current.capturedTransactionId != null ? null : current);
+        }
+    }
+
+    private PaymentService.PaymentResult call(Long bookingId, String idempotencyKey, double amount, String paymentMethod) {
+        if (!breaker.allowRequest()) {
+            shortCircuited.incrementAndGet();
+            return PaymentService.PaymentResult.pending("Payment provider is unavailable - your booking is saved, please pay again shortly");
+        }
+
+        boolean permitted;
+        try {
+            permitted = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permitted = false;
+        }
+        if (!permitted) {
+            bulkheadRejected.incrementAndGet();
+            // The provider was not called, so this says nothing about its health
+            breaker.release();
+            return PaymentService.PaymentResult.pending("Payment provider is busy - your booking is saved, please pay again shortly");
+        }
+
+        Future<PaymentService.PaymentResult> call;
+        try {
+            call = callers.submit(() -> paymentGateway.charge(bookingId, amount, paymentMethod, idempotencyKey));
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            breaker.release();
+            throw e;
+        }
+
+        try {
+            PaymentService.PaymentResult result = call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            breaker.recordSuccess();
+            (result.isSuccess() ? succeeded : declined).incrementAndGet();
+            return result;
+        } catch (TimeoutException e) {
+            // Frees the caller thread only; the provider may still complete the charge
+            call.cancel(true);
+            timeouts.incrementAndGet();
+            breaker.recordFailure();
+            System.out.println("⚠️ [GuardedPaymentClient] Gateway timed out after " + timeoutMillis + "ms for attempt " + idempotencyKey);
+            return PaymentService.PaymentResult.inDoubt("Payment provider did not respond - we are confirming your payment, please do not pay again yet");
+        } catch (ExecutionException e) {
+            errors.incrementAndGet();
+            breaker.recordFailure();
+            System.out.println("❌ [GuardedPaymentClient] Gateway error for attempt " + idempotencyKey + ": " + e.getCause());
+            return PaymentService.PaymentResult.inDoubt("Payment provider error - we are confirming your payment, please do not pay again yet");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.cancel(true);
+            breaker.release();
+            return PaymentService.PaymentResult.inDoubt("Payment interrupted - we are confirming your payment, please do not pay again yet");
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Breaker state and call outcomes
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("circuit", breaker.getState().name());
+        metrics.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        metrics.put("maxConcurrent", maxConcurrent);
+        metrics.put("timeoutMillis", timeoutMillis);
+        metrics.put("succeeded", succeeded.get());
+        metrics.put("declined", declined.get());
+        metrics.put("errors", errors.get());
+        metrics.put("timeouts", timeouts.get());
+        metrics.put("bulkheadRejected", bulkheadRejected.get());
+        metrics.put("shortCircuited", shortCircuited.get());
+        metrics.put("inDoubt", attempts.values().stream().filter(a -> !a.inFlight && a.capturedTransactionId == null).count());
+        metrics.put("capturedUnsettled", attempts.values().stream().filter(a -> a.capturedTransactionId != null).count());
+        metrics.put("reconciled", reconciled.get());
+        return metrics;
+    }
+
+    /**
+     * One charge attempt; the key is sent to the provider as the idempotency key
+     */
+    private static final class Attempt {
+        private final String key;
+        private final double amount;
+        private final String paymentMethod;
+        private final boolean replay;
+        // Written only inside attempts.compute / computeIfPresent
+        private volatile boolean inFlight = true;
+        private volatile String capturedTransactionId;
+
+        private Attempt(String key, double amount, String paymentMethod, boolean replay) {
+            this.key = key;
+            this.amount = amount;
+            this.paymentMethod = paymentMethod;
+            this.replay = replay;
+        }
+    }
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Consecutive-failure circuit breaker; HALF_OPEN lets exactly one trial call through
+     */
+    private static final class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openMillis;
+
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        private CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = Math.max(failureThreshold, 1);
+            this.openMillis = openMillis;
+        }
+
+        private synchronized boolean allowRequest() {
+            if (state == CircuitState.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+                System.out.println("🔌 [GuardedPaymentClient] Circuit half-open, sending a trial payment");
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        private synchronized void recordSuccess() {
+            if (state != CircuitState.CLOSED) {
+                System.out.println("🔌 [GuardedPaymentClient] Circuit closed");
+            }
+            state = CircuitState.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+
+        private synchronized void recordFailure() {
+            trialInFlight = false;
+            consecutiveFailures++;
+            if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                if (state != CircuitState.OPEN) {
+                    System.out.println("🔌 [GuardedPaymentClient] Circuit opened after " + consecutiveFailures + " failure(s)");
+                }
+                state = CircuitState.OPEN;
+                openedAt = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * The permitted call never reached the provider; give the trial slot back
+         */
+        private synchronized void release() {
+            trialInFlight = false;
+        }
+
+        private synchronized CircuitState getState() {
+            return state;
+        }
+    }
+}
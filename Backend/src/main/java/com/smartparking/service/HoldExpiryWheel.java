@@ -0,0 +1,242 @@
+package com.smartparking.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.Booking;
+import com.smartparking.model.Booking.ParkingStatus;
+import com.smartparking.repository.BookingRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Hold Expiry Wheel
+ * Hashed timing wheel that expires HELD bookings. One scheduler thread advances the
+ * wheel a bucket per tick; scheduling and cancelling a hold are O(1) regardless of
+ * how many holds are pending, and there is no periodic scan of the bookings table.
+ *
+ * Holds that fall due in the same tick are handed to the expiry handler together,
+ * in chunks of app.booking.hold.expiry-batch-size, on a separate worker thread so
+ * slow database work never delays the wheel.
+ */
+@Component
+public class HoldExpiryWheel {
+
+    private static final long RETRY_DELAY_SECONDS = 30;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Value("${app.booking.hold.tick-millis:1000}")
+    private long tickMillis;
+
+    @Value("${app.booking.hold.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${app.booking.hold.expiry-batch-size:500}")
+    private int expiryBatchSize;
+
+    private final ConcurrentHashMap<Long, HoldTimeout> timeouts = new ConcurrentHashMap<>();
+    private final Queue<HoldTimeout> pendingAdds = new ConcurrentLinkedQueue<>();
+
+    // Owned by the wheel thread
+    private List<HoldTimeout>[] buckets;
+    private long startMillis;
+    private long tick;
+
+    private volatile Consumer<List<HoldTimeout>> expiryHandler;
+    private ScheduledExecutorService wheelThread;
+    private ExecutorService expiryWorker;
+
+    /**
+     * Register the callback that releases expired holds
+     */
+    public void onExpired(Consumer<List<HoldTimeout>> handler) {
+        this.expiryHandler = handler;
+    }
+
+    /**
+     * Start the wheel and re-arm the holds that were pending when the application stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @SuppressWarnings("unchecked")
+    public void start() {
+        buckets = new List[Integer.highestOneBit(Math.max(wheelSize, 2) * 2 - 1)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        startMillis = System.currentTimeMillis();
+
+        List<Booking> held = bookingRepository.findByStatus(ParkingStatus.HELD);
+        held.forEach(booking -> schedule(booking.getId(), booking.getSlotId(), booking.getHoldExpiresAt()));
+
+        wheelThread = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "hold-expiry-wheel"));
+        expiryWorker = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "hold-expiry-worker"));
+        wheelThread.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        System.out.println("⏱️ [HoldExpiryWheel] Started with " + buckets.length + " buckets of " + tickMillis
+                + "ms, re-armed " + held.size() + " hold(s)");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (wheelThread != null) {
+            wheelThread.shutdownNow();
+            expiryWorker.shutdown();
+        }
+    }
+
+    /**
+     * Arm the expiry timer for a hold. A missing expiry time expires on the next tick.
+     */
+    public void schedule(Long bookingId, Long slotId, LocalDateTime expiresAt) {
+        long deadline = expiresAt != null ? toMillis(expiresAt) : System.currentTimeMillis();
+        HoldTimeout timeout = new HoldTimeout(bookingId, slotId, deadline);
+        HoldTimeout previous = timeouts.put(bookingId, timeout);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        pendingAdds.offer(timeout);
+    }
+
+    /**
+     * Disarm a hold that was confirmed or cancelled; the wheel drops it lazily
+     */
+    public void cancel(Long bookingId) {
+        HoldTimeout timeout = bookingId != null ? timeouts.remove(bookingId) : null;
+        if (timeout != null) {
+            timeout.cancelled = true;
+        }
+    }
+
+    /**
+     * Number of holds currently armed
+     */
+    public int pendingCount() {
+        return timeouts.size();
+    }
+
+    /**
+     * One tick: place newly scheduled holds in their bucket, then expire the current bucket
+     */
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            // Catch up if the thread was delayed, but never run ahead of the clock
+            long targetTick = (now - startMillis) / tickMillis;
+            List<HoldTimeout> expired = new ArrayList<>();
+            while (tick <= targetTick) {
+                transferPending();
+                expireBucket(buckets[(int) (tick & (buckets.length - 1))], expired);
+                tick++;
+            }
+            dispatch(expired);
+        } catch (RuntimeException e) {
+            System.out.println("❌ [HoldExpiryWheel] Tick failed: " + e.getMessage());
+        }
+    }
+
+    private void transferPending() {
+        HoldTimeout timeout;
+        while ((timeout = pendingAdds.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // Past deadlines go into the current bucket and expire this tick
+            long dueTick = Math.max(tick, (timeout.deadline - startMillis + tickMillis - 1) / tickMillis);
+            timeout.remainingRounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & (buckets.length - 1))].add(timeout);
+        }
+    }
+
+    private void expireBucket(List<HoldTimeout> bucket, List<HoldTimeout> expired) {
+        int kept = 0;
+        for (HoldTimeout timeout : bucket) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                bucket.set(kept++, timeout);
+            } else if (timeouts.remove(timeout.bookingId, timeout)) {
+                expired.add(timeout);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void dispatch(List<HoldTimeout> expired) {
+        Consumer<List<HoldTimeout>> handler = expiryHandler;
+        if (expired.isEmpty() || handler == null) {
+            return;
+        }
+        for (int from = 0; from < expired.size(); from += expiryBatchSize) {
+            List<HoldTimeout> batch = new ArrayList<>(
+                    expired.subList(from, Math.min(from + expiryBatchSize, expired.size())));
+            expiryWorker.execute(() -> {
+                try {
+                    handler.accept(batch);
+                } catch (RuntimeException e) {
+                    System.out.println("❌ [HoldExpiryWheel] Failed to expire " + batch.size() + " hold(s), retrying in "
+                            + RETRY_DELAY_SECONDS + "s: " + e.getMessage());
+                    LocalDateTime retryAt = LocalDateTime.now().plusSeconds(RETRY_DELAY_SECONDS);
+                    batch.forEach(timeout -> timeouts.computeIfAbsent(timeout.bookingId, id -> {
+                        HoldTimeout retry = new HoldTimeout(timeout.bookingId, timeout.slotId, toMillis(retryAt));
+                        pendingAdds.offer(retry);
+                        return retry;
+                    }));
+                }
+            });
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A pending hold in the wheel
+     */
+    public static final class HoldTimeout {
+        private final Long bookingId;
+        private final Long slotId;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private HoldTimeout(Long bookingId, Long slotId, long deadline) {
+            this.bookingId = bookingId;
+            this.slotId = slotId;
+            this.deadline = deadline;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+
+        public Long getSlotId() {
+            return slotId;
+        }
+    }
+}
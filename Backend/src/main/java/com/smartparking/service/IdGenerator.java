@@ -0,0 +1,23 @@
+package com.smartparking.service;
+
+/**
+ * ID Generator
+ * Produces unique identifiers for transactions, payments, booking references and
+ * notifications.
+ *
+ * Selected with app.ids.generator:
+ * - snowflake (default): time-ordered 64-bit ids, compact base32 strings that index well
+ * - uuid: random UUID based ids, the previous format
+ */
+public interface IdGenerator {
+
+    /**
+     * Next numeric id
+     */
+    long nextId();
+
+    /**
+     * Next id as a string with the given prefix, e.g. TXN_01HV3K9Q2B7XZ
+     */
+    String nextId(String prefix);
+}
@@ -0,0 +1,199 @@
+package com.smartparking.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Idempotency Store
+ * Remembers the response of a request sent with an Idempotency-Key header so that a
+ * client retry is answered from memory instead of running the booking or payment again.
+ *
+ * - A completed 2xx response is replayed until it expires (app.idempotency.ttl-minutes)
+ * - A duplicate that arrives while the first request is still running waits for its result
+ * - Error responses are not kept, so the client can retry with the same key
+ * - The key is bound to a SHA-256 hash of the request body; reusing it with a different
+ *   body is answered with 422 instead of replaying an unrelated response
+ *
+ * Keys are scoped to the caller and the endpoint. The store holds at most
+ * app.idempotency.max-entries completed keys; the oldest are evicted first. Requests still
+ * in flight are never evicted, so a duplicate can always find them.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.idempotency.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${app.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.idempotency.wait-seconds:30}")
+    private long waitSeconds;
+
+    // Insertion-ordered: the eldest keys are evicted first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Run the action once per (caller, endpoint, key), replaying the stored response for duplicates.
+     * Without a key the action simply runs.
+     *
+     * @param caller Authenticated principal name
+     * @param endpoint Endpoint the key applies to, e.g. "POST /api/bookings/book"
+     * @param idempotencyKey Value of the Idempotency-Key header, may be null
+     * @param requestBody Request body the key is bound to, may be null for endpoints without one
+     */
+    public ResponseEntity<?> execute(String caller, String endpoint, String idempotencyKey, Object requestBody,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > 255) {
+            return ResponseEntity.badRequest().body(Map.of("error", HEADER + " must be at most 255 characters"));
+        }
+
+        String key = caller + "|" + endpoint + "|" + idempotencyKey;
+        // Hashed before the action runs, which may adjust the request (e.g. the charged amount)
+        Entry owned = new Entry(hash(requestBody));
+        Entry existing;
+        synchronized (entries) {
+            long now = System.nanoTime();
+            evictExpired(now);
+            existing = entries.get(key);
+            if (existing != null && existing.expiresAt != 0 && existing.expiresAt - now <= 0) {
+                entries.remove(key);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(key, owned);
+                if (entries.size() > maxEntries) {
+                    evictEldestCompleted();
+                }
+            }
+        }
+
+        if (existing != null) {
+            if (!Arrays.equals(existing.requestHash, owned.requestHash)) {
+                return ResponseEntity.status(422)
+                        .body(Map.of("error", HEADER + " was already used with a different request body"));
+            }
+            return awaitReplay(existing);
+        }
+
+        try {
+            ResponseEntity<?> response = action.get();
+            if (response.getStatusCode().is2xxSuccessful()) {
+                owned.expiresAt = System.nanoTime() + TimeUnit.MINUTES.toNanos(ttlMinutes);
+            } else {
+                forget(key, owned);
+            }
+            owned.result.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            forget(key, owned);
+            owned.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for the first request with the same key and return its response
+     */
+    private ResponseEntity<?> awaitReplay(Entry entry) {
+        try {
+            ResponseEntity<?> response = entry.result.get(waitSeconds, TimeUnit.SECONDS);
+            System.out.println("🔁 [IdempotencyStore] Replaying stored response");
+            return response;
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(409)
+                    .body(Map.of("error", "A request with this " + HEADER + " is still being processed"));
+        } catch (ExecutionException e) {
+            return ResponseEntity.status(500)
+                    .body(Map.of("error", "Original request failed: " + e.getCause().getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(503).body(Map.of("error", "Request interrupted"));
+        }
+    }
+
+    private void forget(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Drop the oldest entry whose response is stored; in-flight entries are skipped
+     * If every entry is in flight the map briefly exceeds max-entries, bounded by the request threads
+     */
+    private void evictEldestCompleted() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresAt != 0) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    private byte[] hash(Object requestBody) {
+        byte[] body;
+        try {
+            body = requestBody != null ? objectMapper.writeValueAsBytes(requestBody) : new byte[0];
+        } catch (JsonProcessingException e) {
+            body = String.valueOf(requestBody).getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Drop expired entries from the head of the map; stops at the first live or in-flight entry
+     */
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt == 0 || entry.expiresAt - now > 0) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] requestHash;
+        private final CompletableFuture<ResponseEntity<?>> result = new CompletableFuture<>();
+        // 0 while in flight, set once a response has been stored
+        private volatile long expiresAt;
+
+        private Entry(byte[] requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.smartparking.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.repository.SlotRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Location Write Executor
+ * Optional actor-style sharding of booking writes (app.booking.location-writer.enabled=true).
+ * Every mutation for a location runs on the single thread of the shard that owns it, so
+ * writes for one garage are serialized in arrival order while different garages run in
+ * parallel on different shards.
+ *
+ * Each shard has a bounded mailbox; when it is full the write is rejected straight away
+ * instead of piling up request threads. Calls made from a shard thread run inline so a
+ * write never waits on its own mailbox.
+ *
+ * A write still queued when the caller's wait (timeout-seconds) runs out is withdrawn, so
+ * an error always means "not applied" and a retry cannot apply it twice; a write that has
+ * already started is waited for.
+ */
+@Component
+public class LocationWriteExecutor {
+
+    @Autowired
+    private SlotRepository slotRepository;
+
+    @Autowired
+    private SlotAvailabilityEngine availabilityEngine;
+
+    @Value("${app.booking.location-writer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.booking.location-writer.shards:0}")
+    private int shardCount;
+
+    @Value("${app.booking.location-writer.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${app.booking.location-writer.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    private final ThreadLocal<Boolean> onShardThread = new ThreadLocal<>();
+
+    private Shard[] shards;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+        System.out.println("🏬 [LocationWriteExecutor] Routing location writes through " + count
+                + " shard(s), mailbox capacity " + queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (shards != null) {
+            for (Shard shard : shards) {
+                shard.executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Run a write on the shard that owns the location and wait for its result
+     * Runs directly on the caller when sharding is disabled or the location is unknown
+     */
+    public <T> T execute(Long locationId, Supplier<T> write) {
+        if (shards == null || locationId == null || Boolean.TRUE.equals(onShardThread.get())) {
+            return write.get();
+        }
+        Shard shard = shards[Math.floorMod(Long.hashCode(locationId), shards.length)];
+
+        Future<T> result;
+        try {
+            result = shard.executor.submit(() -> {
+                onShardThread.set(Boolean.TRUE);
+                try {
+                    return write.get();
+                } finally {
+                    onShardThread.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            shard.rejected.increment();
+            throw new RuntimeException("Too many pending requests for this location, please try again");
+        }
+
+        try {
+            return result.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // Never leave a write behind the caller's back: a retry would run it a second time
+            if (result.cancel(false)) {
+                shard.executor.remove((Runnable) result);
+                shard.timedOut.increment();
+                throw new RuntimeException("Request timed out waiting for this location and was not applied, please try again");
+            }
+            // Already running, so it cannot be withdrawn; wait for its outcome instead
+            return awaitRunning(result);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (result.cancel(false)) {
+                shard.executor.remove((Runnable) result);
+            }
+            throw new RuntimeException("Request interrupted");
+        }
+    }
+
+    private static <T> T awaitRunning(Future<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Request interrupted while it was being applied, please check its status");
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException) e.getCause();
+        }
+        return new RuntimeException(e.getCause());
+    }
+
+    /**
+     * Same as execute, routed by the location the slot belongs to
+     */
+    public <T> T executeForSlot(Long slotId, Supplier<T> write) {
+        if (shards == null || slotId == null) {
+            return write.get();
+        }
+        return execute(locationOf(slotId), write);
+    }
+
+    /**
+     * Void variant of executeForSlot
+     */
+    public void runForSlot(Long slotId, Runnable write) {
+        executeForSlot(slotId, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    /**
+     * Queue depth and throughput per shard
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", shards != null);
+        if (shards == null) {
+            return metrics;
+        }
+        List<Map<String, Object>> shardMetrics = new ArrayList<>();
+        for (Shard shard : shards) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("shard", shard.index);
+            entry.put("queueDepth", shard.executor.getQueue().size());
+            entry.put("busy", shard.executor.getActiveCount() > 0);
+            entry.put("completed", shard.executor.getCompletedTaskCount());
+            entry.put("rejected", shard.rejected.sum());
+            entry.put("timedOut", shard.timedOut.sum());
+            shardMetrics.add(entry);
+        }
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("shards", shardMetrics);
+        return metrics;
+    }
+
+    private Long locationOf(Long slotId) {
+        Long locationId = availabilityEngine.getLocationId(slotId);
+        if (locationId != null) {
+            return locationId;
+        }
+        return slotRepository.findById(slotId)
+                .map(slot -> slot.getLocation() != null ? slot.getLocation().getId() : null)
+                .orElse(null);
+    }
+
+    private static final class Shard {
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+
+        private Shard(int index, int queueCapacity) {
+            this.index = index;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "location-writer-" + index);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.smartparking.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock Wait Stats
+ * Counters for how long callers waited to acquire slot locks.
+ */
+final class LockWaitStats {
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicLong waiting = new AtomicLong();
+
+    long beginWait() {
+        waiting.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void acquired(long startNanos) {
+        long waited = System.nanoTime() - startNanos;
+        waiting.decrementAndGet();
+        acquisitions.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulate(waited);
+    }
+
+    void timedOut() {
+        waiting.decrementAndGet();
+        timeouts.increment();
+    }
+
+    Map<String, Object> toMap() {
+        long count = acquisitions.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("acquisitions", count);
+        metrics.put("timeouts", timeouts.sum());
+        metrics.put("waitingNow", waiting.get());
+        metrics.put("avgWaitMicros", count > 0 ? TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / count) : 0);
+        metrics.put("maxWaitMicros", TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()));
+        return metrics;
+    }
+}
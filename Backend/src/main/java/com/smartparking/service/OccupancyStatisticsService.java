@@ -2,12 +2,13 @@ package com.smartparking.service;
 
 import java.time.LocalDateTime;
 import java.time.LocalDate;
-import java.time.Duration;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -58,10 +59,17 @@ public class OccupancyStatisticsService {
         response.setCurrentOccupancyPercentage(totalSlots > 0 ? (double) currentlyOccupied / totalSlots * 100 : 0);
         response.setTimeGranularity(timeGranularity);
 
-        List<OccupancyDataPoint> dataPoints = generateDataPoints(locationBookings, totalSlots, timeGranularity, startDate, endDate);
+        // One pass over the bookings fills both the data points and the aggregate statistics
+        List<String> labels = new ArrayList<>();
+        List<LocalDateTime> bounds = new ArrayList<>();
+        generateTimeline(timeGranularity, startDate, endDate, labels, bounds);
+        BookingAggregator totals = new BookingAggregator().withPeriods(bounds);
+        locationBookings.forEach(totals::add);
+
+        List<OccupancyDataPoint> dataPoints = generateDataPoints(totals, labels, totalSlots);
         response.setDataPoints(dataPoints);
 
-        calculateAggregateStatistics(response, locationBookings);
+        calculateAggregateStatistics(response, totals);
 
         response.setFetchTimeMs(System.currentTimeMillis() - fetchStartTime);
 
@@ -85,16 +93,17 @@ public class OccupancyStatisticsService {
     }
 
     public Map<String, Object> getPeakHours(Long locationId) {
-        List<Booking> bookings = bookingRepository.findAll().stream()
-                .filter(b -> b.getSlotId() != null)
-                .collect(Collectors.toList());
+        long[] bookingsByHour = new long[24];
+        for (Object[] row : bookingRepository.countSlottedBookingsByEntryHour()) {
+            bookingsByHour[((Number) row[0]).intValue()] = ((Number) row[1]).longValue();
+        }
 
-        Map<Integer, Long> hourlyCount = bookings.stream()
-                .filter(b -> b.getEntryTime() != null)
-                .collect(Collectors.groupingBy(
-                        b -> b.getEntryTime().getHour(),
-                        Collectors.counting()
-                ));
+        Map<Integer, Long> hourlyCount = new LinkedHashMap<>();
+        for (int hour = 0; hour < 24; hour++) {
+            if (bookingsByHour[hour] > 0) {
+                hourlyCount.put(hour, bookingsByHour[hour]);
+            }
+        }
 
         Integer peakHour = hourlyCount.entrySet().stream()
                 .max(Map.Entry.comparingByValue())
@@ -112,205 +121,119 @@ public class OccupancyStatisticsService {
 
     public Map<String, Object> getUsageTrends(Long locationId, LocalDateTime startDate, LocalDateTime endDate) {
         List<Booking> bookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
-        List<Booking> locationBookings = filterBookingsByLocation(bookings, locationId);
-
-        long completedBookings = locationBookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .count();
+        BookingAggregator totals = new BookingAggregator();
+        filterBookingsByLocation(bookings, locationId).forEach(totals::add);
 
-        long cancelledBookings = locationBookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.CANCELLED)
-                .count();
-
-        double averageDuration = locationBookings.stream()
-                .filter(b -> b.getEntryTime() != null && b.getExitTime() != null)
-                .mapToDouble(b -> Duration.between(b.getEntryTime(), b.getExitTime()).toMinutes())
-                .average()
-                .orElse(0);
-
-        double totalRevenue = locationBookings.stream()
-                .filter(b -> b.getParkingFee() != null)
-                .mapToDouble(Booking::getParkingFee)
-                .sum();
+        long totalBookings = totals.getBookings();
+        long completedBookings = totals.getCount(Booking.ParkingStatus.COMPLETED);
+        long cancelledBookings = totals.getCount(Booking.ParkingStatus.CANCELLED);
 
         return Map.of(
                 "locationId", locationId,
                 "periodStart", startDate,
                 "periodEnd", endDate,
-                "totalBookings", locationBookings.size(),
+                "totalBookings", totalBookings,
                 "completedBookings", completedBookings,
                 "cancelledBookings", cancelledBookings,
-                "averageDurationMinutes", averageDuration,
-                "totalRevenue", totalRevenue,
-                "completionRate", locationBookings.size() > 0 ? 
-                                  (double) completedBookings / locationBookings.size() * 100 : 0
+                "averageDurationMinutes", totals.getAverageDurationMinutes(),
+                "totalRevenue", totals.getFeeTotal(),
+                "completionRate", totalBookings > 0 ? 
+                                  (double) completedBookings / totalBookings * 100 : 0
         );
     }
 
-    private List<OccupancyDataPoint> generateDataPoints(List<Booking> bookings, long totalSlots, 
-                                                        String granularity, LocalDateTime startDate, LocalDateTime endDate) {
+    private List<OccupancyDataPoint> generateDataPoints(BookingAggregator totals, List<String> labels, long totalSlots) {
         List<OccupancyDataPoint> dataPoints = new ArrayList<>();
+        long[] occupied = totals.getPeriodOccupancy();
+        long[] bookingsCount = totals.getPeriodBookings();
+
+        for (int i = 0; i < labels.size(); i++) {
+            OccupancyDataPoint point = new OccupancyDataPoint(labels.get(i), (int) totalSlots, (int) occupied[i]);
+            point.setBookingsCount(bookingsCount[i]);
+            dataPoints.add(point);
+        }
 
+        return dataPoints;
+    }
+
+    /**
+     * Label and bounds of every period; bounds holds one more entry than labels
+     */
+    private void generateTimeline(String granularity, LocalDateTime startDate, LocalDateTime endDate,
+                                  List<String> labels, List<LocalDateTime> bounds) {
         if ("HOURLY".equalsIgnoreCase(granularity)) {
-            dataPoints = generateHourlyDataPoints(bookings, totalSlots, startDate, endDate);
+            generateHourlyTimeline(startDate, endDate, labels, bounds);
         } else if ("DAILY".equalsIgnoreCase(granularity)) {
-            dataPoints = generateDailyDataPoints(bookings, totalSlots, startDate, endDate);
+            generateDailyTimeline(startDate, endDate, labels, bounds);
         } else if ("WEEKLY".equalsIgnoreCase(granularity)) {
-            dataPoints = generateWeeklyDataPoints(bookings, totalSlots, startDate, endDate);
+            generateWeeklyTimeline(startDate, endDate, labels, bounds);
         } else if ("MONTHLY".equalsIgnoreCase(granularity)) {
-            dataPoints = generateMonthlyDataPoints(bookings, totalSlots, startDate, endDate);
+            generateMonthlyTimeline(startDate, endDate, labels, bounds);
         }
-
-        return dataPoints;
     }
 
-    private List<OccupancyDataPoint> generateHourlyDataPoints(List<Booking> bookings, long totalSlots,
-                                                              LocalDateTime startDate, LocalDateTime endDate) {
-        List<OccupancyDataPoint> points = new ArrayList<>();
-
+    private void generateHourlyTimeline(LocalDateTime startDate, LocalDateTime endDate,
+                                        List<String> labels, List<LocalDateTime> bounds) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
         LocalDateTime currentTime = startDate;
+        bounds.add(currentTime);
         while (currentTime.isBefore(endDate)) {
-            LocalDateTime hourEnd = currentTime.plusHours(1);
-            final LocalDateTime periodStart = currentTime;
-            final LocalDateTime periodEnd = hourEnd;
-            
-            long occupiedInHour = countOccupiedSlots(bookings, periodStart, periodEnd);
-
-            OccupancyDataPoint point = new OccupancyDataPoint(
-                    periodStart.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00")),
-                    (int) totalSlots,
-                    (int) occupiedInHour
-            );
-
-            long bookingsInHour = bookings.stream()
-                    .filter(b -> b.getEntryTime().isAfter(periodStart) && b.getEntryTime().isBefore(periodEnd))
-                    .count();
-            point.setBookingsCount(bookingsInHour);
-
-            points.add(point);
-            currentTime = periodEnd;
+            labels.add(currentTime.format(formatter));
+            currentTime = currentTime.plusHours(1);
+            bounds.add(currentTime);
         }
-
-        return points;
     }
 
-    private List<OccupancyDataPoint> generateDailyDataPoints(List<Booking> bookings, long totalSlots,
-                                                             LocalDateTime startDate, LocalDateTime endDate) {
-        List<OccupancyDataPoint> points = new ArrayList<>();
-
+    private void generateDailyTimeline(LocalDateTime startDate, LocalDateTime endDate,
+                                       List<String> labels, List<LocalDateTime> bounds) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate currentDate = startDate.toLocalDate();
         LocalDate endDateLocal = endDate.toLocalDate();
-
+        bounds.add(currentDate.atStartOfDay());
         while (!currentDate.isAfter(endDateLocal)) {
-            LocalDateTime dayStart = currentDate.atStartOfDay();
-            LocalDateTime dayEnd = currentDate.atStartOfDay().plusDays(1);
-            final LocalDateTime periodStart = dayStart;
-            final LocalDateTime periodEnd = dayEnd;
-
-            long occupiedInDay = countOccupiedSlots(bookings, periodStart, periodEnd);
-
-            OccupancyDataPoint point = new OccupancyDataPoint(
-                    currentDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                    (int) totalSlots,
-                    (int) occupiedInDay
-            );
-
-            long bookingsInDay = bookings.stream()
-                    .filter(b -> b.getEntryTime().isAfter(periodStart) && b.getEntryTime().isBefore(periodEnd))
-                    .count();
-            point.setBookingsCount(bookingsInDay);
-
-            points.add(point);
+            labels.add(currentDate.format(formatter));
             currentDate = currentDate.plusDays(1);
+            bounds.add(currentDate.atStartOfDay());
         }
-
-        return points;
     }
 
-    private List<OccupancyDataPoint> generateWeeklyDataPoints(List<Booking> bookings, long totalSlots,
-                                                              LocalDateTime startDate, LocalDateTime endDate) {
-        List<OccupancyDataPoint> points = new ArrayList<>();
-
+    private void generateWeeklyTimeline(LocalDateTime startDate, LocalDateTime endDate,
+                                        List<String> labels, List<LocalDateTime> bounds) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate currentDate = startDate.toLocalDate();
         LocalDate endDateLocal = endDate.toLocalDate();
-
+        bounds.add(currentDate.atStartOfDay());
         while (!currentDate.isAfter(endDateLocal)) {
-            LocalDateTime weekStart = currentDate.atStartOfDay();
-            LocalDateTime weekEnd = currentDate.atStartOfDay().plusWeeks(1);
-            final LocalDateTime periodStart = weekStart;
-            final LocalDateTime periodEnd = weekEnd;
-
-            long occupiedInWeek = countOccupiedSlots(bookings, periodStart, periodEnd);
-
-            OccupancyDataPoint point = new OccupancyDataPoint(
-                    "Week of " + currentDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                    (int) totalSlots,
-                    (int) occupiedInWeek
-            );
-
-            long bookingsInWeek = bookings.stream()
-                    .filter(b -> b.getEntryTime().isAfter(periodStart) && b.getEntryTime().isBefore(periodEnd))
-                    .count();
-            point.setBookingsCount(bookingsInWeek);
-
-            points.add(point);
+            labels.add("Week of " + currentDate.format(formatter));
             currentDate = currentDate.plusWeeks(1);
+            bounds.add(currentDate.atStartOfDay());
         }
-
-        return points;
     }
 
-    private List<OccupancyDataPoint> generateMonthlyDataPoints(List<Booking> bookings, long totalSlots,
-                                                               LocalDateTime startDate, LocalDateTime endDate) {
-        List<OccupancyDataPoint> points = new ArrayList<>();
-
+    private void generateMonthlyTimeline(LocalDateTime startDate, LocalDateTime endDate,
+                                         List<String> labels, List<LocalDateTime> bounds) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM");
         YearMonth currentMonth = YearMonth.from(startDate);
         YearMonth endMonth = YearMonth.from(endDate);
-
+        bounds.add(currentMonth.atDay(1).atStartOfDay());
         while (!currentMonth.isAfter(endMonth)) {
-            LocalDateTime monthStart = currentMonth.atDay(1).atStartOfDay();
-            LocalDateTime monthEnd = currentMonth.plusMonths(1).atDay(1).atStartOfDay();
-            final LocalDateTime periodStart = monthStart;
-            final LocalDateTime periodEnd = monthEnd;
-
-            long occupiedInMonth = countOccupiedSlots(bookings, periodStart, periodEnd);
-
-            OccupancyDataPoint point = new OccupancyDataPoint(
-                    currentMonth.format(DateTimeFormatter.ofPattern("yyyy-MM")),
-                    (int) totalSlots,
-                    (int) occupiedInMonth
-            );
-
-            long bookingsInMonth = bookings.stream()
-                    .filter(b -> b.getEntryTime().isAfter(periodStart) && b.getEntryTime().isBefore(periodEnd))
-                    .count();
-            point.setBookingsCount(bookingsInMonth);
-
-            points.add(point);
+            labels.add(currentMonth.format(formatter));
             currentMonth = currentMonth.plusMonths(1);
+            bounds.add(currentMonth.atDay(1).atStartOfDay());
         }
-
-        return points;
-    }
-
-    private long countOccupiedSlots(List<Booking> bookings, LocalDateTime start, LocalDateTime end) {
-        return bookings.stream()
-                .filter(b -> b.getEntryTime() != null && b.getExitTime() != null)
-                .filter(b -> !b.getEntryTime().isAfter(end) && !b.getExitTime().isBefore(start))
-                .count();
     }
 
     private List<Booking> filterBookingsByLocation(List<Booking> bookings, Long locationId) {
-        List<Long> slotIds = slotRepository.findByLocationId(locationId).stream()
+        Set<Long> slotIds = slotRepository.findByLocationId(locationId).stream()
                 .map(Slot::getId)
-                .collect(Collectors.toList());
+                .collect(Collectors.toSet());
 
         return bookings.stream()
                 .filter(b -> slotIds.contains(b.getSlotId()))
                 .collect(Collectors.toList());
     }
 
-    private void calculateAggregateStatistics(OccupancyStatisticsResponse response, List<Booking> bookings) {
+    private void calculateAggregateStatistics(OccupancyStatisticsResponse response, BookingAggregator totals) {
         if (response.getDataPoints().isEmpty()) {
             response.setAverageOccupancyPercentage(0.0);
             response.setPeakOccupancyPercentage(0.0);
@@ -329,18 +252,10 @@ public class OccupancyStatisticsService {
 
         response.setAverageOccupancyPercentage(averageOccupancy);
         response.setPeakOccupancyPercentage(peakOccupancy);
-        response.setTotalBookingsInPeriod((long) bookings.size());
-
-        double avgDuration = bookings.stream()
-                .filter(b -> b.getEntryTime() != null && b.getExitTime() != null)
-                .mapToDouble(b -> Duration.between(b.getEntryTime(), b.getExitTime()).toMinutes())
-                .average()
-                .orElse(0);
+        response.setTotalBookingsInPeriod(totals.getBookings());
 
-        double totalRevenue = bookings.stream()
-                .filter(b -> b.getParkingFee() != null)
-                .mapToDouble(Booking::getParkingFee)
-                .sum();
+        double avgDuration = totals.getAverageDurationMinutes();
+        double totalRevenue = totals.getFeeTotal();
 
         response.setAverageSessionDurationMinutes(avgDuration);
         response.setTotalRevenueInPeriod(totalRevenue);
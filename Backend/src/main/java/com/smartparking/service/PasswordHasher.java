@@ -0,0 +1,216 @@
+package com.smartparking.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Password Hasher
+ * Runs BCrypt hashing and verification on a dedicated, bounded pool so that a login spike
+ * uses at most app.security.password.threads cores and never ties up more request threads
+ * than the pool and its queue (app.security.password.queue-capacity) can hold.
+ *
+ * When the queue is full, or a task has waited longer than max-wait-millis, the caller gets
+ * a Saturated exception straight away instead of joining the backlog.
+ *
+ * The BCrypt cost can be calibrated at startup to a target hashing time, see calibrateStrength.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final int MIN_STRENGTH = 4;
+    private static final int MAX_STRENGTH = 16;
+
+    @Autowired
+    private BCryptPasswordEncoder encoder;
+
+    @Value("${app.security.password.threads:0}")
+    private int threads;
+
+    @Value("${app.security.password.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.security.password.max-wait-millis:2000}")
+    private long maxWaitMillis;
+
+    private ThreadPoolExecutor workers;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram hashTime = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdown();
+    }
+
+    /**
+     * Hash a new password
+     */
+    public String encode(String rawPassword) {
+        return run(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Check a password against a stored hash
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Pool size, queue depth, rejections, queue wait and hash time
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("threads", workers.getMaximumPoolSize());
+        metrics.put("active", workers.getActiveCount());
+        metrics.put("queued", workers.getQueue().size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("rejected", rejected.get());
+        metrics.put("queueWait", queueWait.summary());
+        metrics.put("hashTime", hashTime.summary());
+        return metrics;
+    }
+
+    /**
+     * Highest BCrypt cost whose hash takes no longer than the target on this machine, but never
+     * below the configured cost: calibration may only make hashes stronger. On a machine too slow
+     * to meet the target at that cost, the configured cost is kept and a warning is logged.
+     * Each cost step doubles the work, so one timing at a low cost is enough to extrapolate;
+     * the chosen cost is then measured once to confirm it.
+     *
+     * @param targetMillis Target time for one hash
+     * @param minStrength Configured cost; the lowest that may be returned, and the result if the measurement is unusable
+     */
+    public static int calibrateStrength(long targetMillis, int minStrength) {
+        String sample = "calibration-password";
+        int probe = 8;
+        // First run warms up the JIT
+        new BCryptPasswordEncoder(probe).encode(sample);
+        long probeNanos = time(new BCryptPasswordEncoder(probe), sample);
+        if (probeNanos <= 0 || targetMillis <= 0) {
+            return minStrength;
+        }
+
+        int strength = probe;
+        double nanos = probeNanos;
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        while (strength < MAX_STRENGTH && nanos * 2 <= targetNanos) {
+            strength++;
+            nanos *= 2;
+        }
+        while (strength > MIN_STRENGTH && nanos > targetNanos) {
+            strength--;
+            nanos /= 2;
+        }
+
+        if (strength < minStrength) {
+            long measured = time(new BCryptPasswordEncoder(minStrength), sample);
+            System.out.println("⚠️ [PasswordHasher] Target " + targetMillis + "ms needs BCrypt cost " + strength
+                    + ", below the configured " + minStrength + "; keeping " + minStrength + " ("
+                    + TimeUnit.NANOSECONDS.toMillis(measured) + "ms per hash)");
+            return minStrength;
+        }
+
+        long measured = time(new BCryptPasswordEncoder(strength), sample);
+        System.out.println("🔐 [PasswordHasher] BCrypt cost " + strength + " takes "
+                + TimeUnit.NANOSECONDS.toMillis(measured) + "ms (target " + targetMillis + "ms)");
+        return strength;
+    }
+
+    private static long time(BCryptPasswordEncoder probeEncoder, String sample) {
+        long start = System.nanoTime();
+        probeEncoder.encode(sample);
+        return System.nanoTime() - start;
+    }
+
+    private <T> T run(Callable<T> work) {
+        long submitted = System.nanoTime();
+        Future<T> task;
+        try {
+            task = workers.submit(() -> {
+                long started = System.nanoTime();
+                queueWait.record((started - submitted) / 1000);
+                if (started - submitted > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+                    // The caller has given up already; don't spend the CPU
+                    throw new Saturated();
+                }
+                try {
+                    return work.call();
+                } finally {
+                    hashTime.recordSince(started);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new Saturated();
+        }
+
+        try {
+            return task.get(maxWaitMillis + hashBudgetMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(false);
+            rejected.incrementAndGet();
+            throw new Saturated();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Saturated saturated) {
+                rejected.incrementAndGet();
+                throw saturated;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(false);
+            throw new Saturated();
+        }
+    }
+
+    /**
+     * Time a hash may take once started: ten times the worst seen so far, at least one second
+     */
+    private long hashBudgetMillis() {
+        return Math.max(1000, hashTime.percentile(100) / 100);
+    }
+
+    /**
+     * Thrown when password hashing is saturated; the caller should answer 503 and let the client retry
+     */
+    public static class Saturated extends RuntimeException {
+        public Saturated() {
+            super("Too many sign-in attempts right now, please try again shortly");
+        }
+    }
+}
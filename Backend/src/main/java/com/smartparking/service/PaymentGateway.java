@@ -0,0 +1,22 @@
+package com.smartparking.service;
+
+/**
+ * Payment Gateway
+ * Charges a payment with an external provider. PaymentService delegates to the
+ * implementation selected with app.payment.gateway (default: simulated).
+ */
+public interface PaymentGateway {
+
+    /**
+     * Charge the amount for a booking; blocks until the provider answers
+     *
+     * A repeated call with the same idempotency key must not charge again: the provider
+     * answers with the outcome of the first call carrying that key.
+     *
+     * @param bookingId Booking the payment is for
+     * @param amount Amount to charge, already validated as positive
+     * @param paymentMethod CARD or UPI
+     * @param idempotencyKey Identifies this payment attempt, e.g. 42:ATT_01HV3K9Q2B7XZ
+     */
+    PaymentService.PaymentResult charge(Long bookingId, double amount, String paymentMethod, String idempotencyKey);
+}
@@ -0,0 +1,334 @@
+package com.smartparking.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Payment Pipeline
+ * Runs payments off the request thread. A submitted payment gets an id and PENDING
+ * status straight away; a bounded worker pool charges it through PaymentService and then
+ * hands the booking to SettlementWriter (slot released, booking COMPLETED).
+ *
+ * - At most one payment per booking is in flight; a second submit returns the first one
+ * - When the queue is full new payments are rejected instead of queueing without bound
+ * - Finished payments stay queryable for app.payment.pipeline.retention-minutes
+ * - A charge whose settlement is not confirmed is CAPTURED, not FAILED: it keeps blocking
+ *   new payments for the booking and its settlement is retried every settle-retry-seconds,
+ *   up to settle-retries times; submitting again for the booking starts another round
+ */
+@Component
+public class PaymentPipeline {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private SettlementWriter settlementWriter;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Value("${app.payment.pipeline.threads:16}")
+    private int threads;
+
+    @Value("${app.payment.pipeline.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.payment.pipeline.retention-minutes:30}")
+    private long retentionMinutes;
+
+    @Value("${app.payment.pipeline.settle-retries:12}")
+    private int settleRetries;
+
+    @Value("${app.payment.pipeline.settle-retry-seconds:5}")
+    private long settleRetrySeconds;
+
+    private final ConcurrentHashMap<String, PaymentTicket> tickets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, PaymentTicket> inFlightByBooking = new ConcurrentHashMap<>();
+    // Finished tickets in completion order, so expiry only looks at the head
+    private final Queue<PaymentTicket> finished = new ConcurrentLinkedQueue<>();
+
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService settleRetryTimer;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "payment-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        workers.allowCoreThreadTimeOut(true);
+        settleRetryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-settle-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        settleRetryTimer.shutdownNow();
+        workers.shutdown();
+    }
+
+    /**
+     * Queue a payment for a booking and return its ticket with PENDING status
+     */
+    public PaymentTicket submit(Long bookingId, Long slotId, double amount, String paymentMethod) {
+        evictFinished();
+
+        PaymentTicket ticket = new PaymentTicket(idGenerator.nextId("PAY"), bookingId, slotId, amount, paymentMethod);
+        PaymentTicket existing = inFlightByBooking.putIfAbsent(bookingId, ticket);
+        if (existing != null) {
+            if (existing.status == PaymentStatus.CAPTURED) {
+                // Already charged: settle that charge again instead of taking another payment
+                retrySettlement(existing, true);
+            }
+            return existing;
+        }
+        tickets.put(ticket.paymentId, ticket);
+
+        try {
+            workers.execute(() -> process(ticket));
+        } catch (RejectedExecutionException e) {
+            tickets.remove(ticket.paymentId);
+            inFlightByBooking.remove(bookingId, ticket);
+            throw new RuntimeException("Payment service is busy, please try again shortly");
+        }
+        System.out.println("💳 [PaymentPipeline] Queued " + ticket.paymentId + " for booking " + bookingId);
+        return ticket;
+    }
+
+    /**
+     * Current state of a payment, or null if unknown or expired
+     */
+    public PaymentTicket getTicket(String paymentId) {
+        return paymentId != null ? tickets.get(paymentId) : null;
+    }
+
+    /**
+     * Queue depth and in-flight counts
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queued", workers.getQueue().size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("activeWorkers", workers.getActiveCount());
+        metrics.put("inFlight", inFlightByBooking.size());
+        metrics.put("capturedUnsettled", inFlightByBooking.values().stream()
+                .filter(t -> t.status == PaymentStatus.CAPTURED).count());
+        metrics.put("completed", workers.getCompletedTaskCount());
+        return metrics;
+    }
+
+    private void process(PaymentTicket ticket) {
+        ticket.status = PaymentStatus.PROCESSING;
+        PaymentService.PaymentResult result;
+        try {
+            result = paymentService.processPayment(ticket.bookingId, ticket.amount, ticket.paymentMethod);
+        } catch (RuntimeException e) {
+            System.out.println("❌ [PaymentPipeline] " + ticket.paymentId + " failed: " + e.getMessage());
+            finish(ticket, PaymentStatus.FAILED, null, "Payment processing failed: " + e.getMessage());
+            return;
+        }
+        if (result.isInDoubt()) {
+            finish(ticket, PaymentStatus.IN_DOUBT, null, result.getMessage());
+            return;
+        }
+        if (!result.isSuccess()) {
+            finish(ticket, PaymentStatus.FAILED, null, result.getMessage());
+            return;
+        }
+        ticket.transactionId = result.getTransactionId();
+        ticket.settling = true;
+        settle(ticket);
+    }
+
+    /**
+     * Settle a captured charge; until that is confirmed the ticket stays CAPTURED and in flight
+     */
+    private void settle(PaymentTicket ticket) {
+        try {
+            settlementWriter.settle(ticket.bookingId, ticket.slotId, ticket.transactionId);
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ [PaymentPipeline] " + ticket.paymentId + " captured (" + ticket.transactionId
+                    + ") but not settled, attempt " + ticket.settleAttempts + ": " + e.getMessage());
+            ticket.message = e instanceof SettlementWriter.Pending
+                    ? e.getMessage()
+                    : "Payment captured (transaction " + ticket.transactionId + ") but the booking is not completed yet: " + e.getMessage();
+            ticket.status = PaymentStatus.CAPTURED;
+            ticket.settling = false;
+            retrySettlement(ticket, false);
+            return;
+        }
+        finish(ticket, PaymentStatus.SUCCEEDED, ticket.transactionId, "Payment successful - Slot released");
+        System.out.println("✅ [PaymentPipeline] " + ticket.paymentId + " succeeded: " + ticket.transactionId);
+    }
+
+    /**
+     * Queue another settlement attempt for a CAPTURED ticket after settle-retry-seconds
+     *
+     * @param resubmitted true when the user paid again, which starts a fresh round of retries
+     */
+    private void retrySettlement(PaymentTicket ticket, boolean resubmitted) {
+        synchronized (ticket) {
+            if (ticket.settling || ticket.status != PaymentStatus.CAPTURED) {
+                return;
+            }
+            if (resubmitted) {
+                ticket.settleAttempts = 0;
+            } else if (ticket.settleAttempts >= settleRetries) {
+                System.out.println("❌ [PaymentPipeline] " + ticket.paymentId + " still unsettled after "
+                        + ticket.settleAttempts + " attempts; the booking stays blocked until it is paid again");
+                return;
+            }
+            ticket.settling = true;
+            ticket.settleAttempts++;
+        }
+        try {
+            settleRetryTimer.schedule(() -> {
+                try {
+                    workers.execute(() -> settle(ticket));
+                } catch (RejectedExecutionException e) {
+                    ticket.settling = false;
+                }
+            }, resubmitted ? 0 : settleRetrySeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            ticket.settling = false;
+        }
+    }
+
+    private void finish(PaymentTicket ticket, PaymentStatus status, String transactionId, String message) {
+        ticket.transactionId = transactionId;
+        ticket.message = message;
+        ticket.completedAt = LocalDateTime.now();
+        ticket.status = status;
+        inFlightByBooking.remove(ticket.bookingId, ticket);
+        finished.offer(ticket);
+    }
+
+    private void evictFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        PaymentTicket head;
+        while ((head = finished.peek()) != null && head.completedAt.isBefore(cutoff)) {
+            finished.poll();
+            tickets.remove(head.paymentId);
+        }
+    }
+
+    public enum PaymentStatus {
+        PENDING,
+        PROCESSING,
+        SUCCEEDED,
+        FAILED,
+        // The provider may have charged; paying again replays the same attempt
+        IN_DOUBT,
+        // Charged, settlement not confirmed yet; the booking cannot be paid again meanwhile
+        CAPTURED
+    }
+
+    /**
+     * A payment moving through the pipeline
+     */
+    public static final class PaymentTicket {
+        private final String paymentId;
+        private final Long bookingId;
+        private final Long slotId;
+        private final double amount;
+        private final String paymentMethod;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private volatile PaymentStatus status = PaymentStatus.PENDING;
+        private volatile String transactionId;
+        private volatile String message = "Payment queued";
+        private volatile LocalDateTime completedAt;
+        // Settlement attempt queued or running; guarded by the ticket's monitor
+        private volatile boolean settling;
+        private int settleAttempts = 1;
+
+        private PaymentTicket(String paymentId, Long bookingId, Long slotId, double amount, String paymentMethod) {
+            this.paymentId = paymentId;
+            this.bookingId = bookingId;
+            this.slotId = slotId;
+            this.amount = amount;
+            this.paymentMethod = paymentMethod;
+        }
+
+        public String getPaymentId() {
+            return paymentId;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public String getPaymentMethod() {
+            return paymentMethod;
+        }
+
+        public PaymentStatus getStatus() {
+            return status;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public LocalDateTime getSubmittedAt() {
+            return submittedAt;
+        }
+
+        public LocalDateTime getCompletedAt() {
+            return completedAt;
+        }
+
+        /**
+         * Response body for the payment endpoints
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("paymentId", paymentId);
+            map.put("bookingId", bookingId);
+            map.put("status", status.name());
+            map.put("success", status == PaymentStatus.SUCCEEDED);
+            map.put("amount", amount);
+            map.put("paymentMethod", paymentMethod);
+            map.put("transactionId", transactionId);
+            map.put("message", message);
+            map.put("submittedAt", submittedAt);
+            map.put("completedAt", completedAt);
+            return map;
+        }
+    }
+}
@@ -1,65 +1,88 @@
 package com.smartparking.service;
 
-import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
- * Payment Simulation Service
- * Handles payment processing for parking fees without real money transactions.
- * Simulates success/failure and generates transaction IDs on success.
+ * Payment Service
+ * Handles payment processing for parking fees. The actual charge is made by the
+ * configured PaymentGateway (a local simulation by default, no real money moves),
+ * called through GuardedPaymentClient so a stalled provider cannot hold callers.
  */
 @Service
 public class PaymentService {
 
-    private static final double SUCCESS_PROBABILITY = 0.95; // 95% success rate for simulation
+    @Autowired
+    private GuardedPaymentClient paymentClient;
 
     /**
-     * Process payment simulation
+     * Process payment
      * @param amount Parking fee amount
      * @return PaymentResult containing success status and transaction ID
      */
     public PaymentResult processPayment(Double amount) {
-        if (amount == null || amount <= 0) {
-            return new PaymentResult(false, null, "Invalid amount");
-        }
-
-        // Simulate payment processing (random success/failure)
-        boolean isSuccess = Math.random() < SUCCESS_PROBABILITY;
-
-        if (isSuccess) {
-            // Generate unique transaction ID on success
-            String transactionId = generateTransactionId();
-            return new PaymentResult(true, transactionId, "Payment successful");
-        } else {
-            return new PaymentResult(false, null, "Payment failed - Please try again");
-        }
+        return processPayment(null, amount, null);
     }
 
     /**
-     * Generate unique transaction ID using UUID
+     * Process payment for a booking
+     * @param bookingId Booking the payment is for
+     * @param amount Parking fee amount
+     * @param paymentMethod CARD or UPI
+     * @return PaymentResult containing success status and transaction ID
      */
-    private String generateTransactionId() {
-        return "TXN_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase();
+    public PaymentResult processPayment(Long bookingId, Double amount, String paymentMethod) {
+        if (amount == null || amount <= 0) {
+            return new PaymentResult(false, null, "Invalid amount");
+        }
+        return paymentClient.charge(bookingId, amount, paymentMethod);
     }
 
     /**
      * Payment Result DTO
+     * Pending results were not charged: the provider was never called.
+     * In-doubt results may have been charged: the provider was called but did not answer,
+     * so the booking must not be charged again until that attempt is reconciled.
      */
     public static class PaymentResult {
         private final boolean success;
+        private final boolean pending;
+        private final boolean inDoubt;
         private final String transactionId;
         private final String message;
 
         public PaymentResult(boolean success, String transactionId, String message) {
+            this(success, false, false, transactionId, message);
+        }
+
+        private PaymentResult(boolean success, boolean pending, boolean inDoubt, String transactionId, String message) {
             this.success = success;
+            this.pending = pending;
+            this.inDoubt = inDoubt;
             this.transactionId = transactionId;
             this.message = message;
         }
 
+        public static PaymentResult pending(String message) {
+            return new PaymentResult(false, true, false, null, message);
+        }
+
+        public static PaymentResult inDoubt(String message) {
+            return new PaymentResult(false, false, true, null, message);
+        }
+
         public boolean isSuccess() {
             return success;
         }
 
+        public boolean isPending() {
+            return pending;
+        }
+
+        public boolean isInDoubt() {
+            return inDoubt;
+        }
+
         public String getTransactionId() {
             return transactionId;
         }
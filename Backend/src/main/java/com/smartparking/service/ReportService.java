@@ -1,19 +1,27 @@
 package com.smartparking.service;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.smartparking.dto.*;
 import com.smartparking.dto.UsageReportResponse.PeakHourInfo;
 import com.smartparking.model.Booking;
+import com.smartparking.model.BookingHourlyRollup;
 import com.smartparking.model.Location;
-import com.smartparking.model.Slot;
 import com.smartparking.model.User;
 import com.smartparking.repository.BookingRepository;
 import com.smartparking.repository.LocationRepository;
@@ -23,6 +31,8 @@ import com.smartparking.repository.UserRepository;
 @Service
 public class ReportService {
 
+    private static final int CSV_BUFFER_SIZE = 64 * 1024;
+
     @Autowired
     private BookingRepository bookingRepository;
 
@@ -35,21 +45,16 @@ public class ReportService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BookingRollupStore rollupStore;
+
     public ReportResponse generateReport(LocalDateTime startDate, LocalDateTime endDate, String reportType) {
-        List<Booking> bookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
-        
-        long totalBookings = bookings.size();
-        long completedBookings = bookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.COMPLETED).count();
-        long activeBookings = bookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.ACTIVE).count();
-        long cancelledBookings = bookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.CANCELLED).count();
-        
-        double totalRevenue = bookings.stream()
-                .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .mapToDouble(Booking::getParkingFee)
-                .sum();
+        BookingAggregator totals = aggregate(startDate, endDate);
+        long totalBookings = totals.getBookings();
+        long completedBookings = totals.getCount(Booking.ParkingStatus.COMPLETED);
+        long activeBookings = totals.getCount(Booking.ParkingStatus.ACTIVE);
+        long cancelledBookings = totals.getCount(Booking.ParkingStatus.CANCELLED);
+        double totalRevenue = totals.getRevenue();
         
         double averageFee = completedBookings > 0 ? totalRevenue / completedBookings : 0;
         
@@ -104,7 +109,7 @@ public class ReportService {
      * Generate comprehensive usage report with peak hours, average duration, and segmentation
      */
     public UsageReportResponse generateUsageReport(LocalDateTime startDate, LocalDateTime endDate, String reportType) {
-        List<Booking> bookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
+        BookingAggregator totals = aggregate(startDate, endDate);
         
         UsageReportResponse report = new UsageReportResponse();
         
@@ -115,98 +120,73 @@ public class ReportService {
         report.setEndDate(endDate);
         
         // Calculate basic metrics
-        calculateBasicMetrics(bookings, report);
+        calculateBasicMetrics(totals, report);
         
         // Calculate duration metrics
-        calculateDurationMetrics(bookings, report);
+        calculateDurationMetrics(totals, startDate, endDate, report);
         
         // Calculate slot utilization
         calculateSlotUtilization(report);
         
         // Calculate peak hours
-        calculatePeakHours(bookings, report);
+        calculatePeakHours(totals, report);
         
         // Calculate daily/weekly breakdown
-        calculateTemporalBreakdown(bookings, report, reportType);
+        calculateTemporalBreakdown(totals, report, reportType);
         
         // Calculate vehicle type breakdown
-        calculateVehicleTypeBreakdown(bookings, report);
+        calculateVehicleTypeBreakdown(totals, report);
         
         // Calculate status distribution
-        calculateStatusDistribution(bookings, report);
+        calculateStatusDistribution(totals, report);
         
         return report;
     }
     
+    /**
+     * Fold the rollups of a period into one aggregator
+     */
+    private BookingAggregator aggregate(LocalDateTime startDate, LocalDateTime endDate) {
+        BookingAggregator totals = new BookingAggregator(startDate.toLocalDate(), endDate.toLocalDate());
+        for (BookingHourlyRollup row : rollupStore.read(startDate, endDate)) {
+            totals.add(row);
+        }
+        return totals;
+    }
+    
     /**
      * Calculate basic booking and revenue metrics
      */
-    private void calculateBasicMetrics(List<Booking> bookings, UsageReportResponse report) {
-        long totalBookings = bookings.size();
-        long completedBookings = bookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .count();
-        long activeBookings = bookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.ACTIVE)
-                .count();
-        long cancelledBookings = bookings.stream()
-                .filter(b -> b.getStatus() == Booking.ParkingStatus.CANCELLED)
-                .count();
-        
-        List<Double> fees = bookings.stream()
-                .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .map(Booking::getParkingFee)
-                .collect(Collectors.toList());
-        
-        double totalRevenue = fees.stream().mapToDouble(Double::doubleValue).sum();
-        double averageFee = fees.isEmpty() ? 0 : totalRevenue / fees.size();
-        double maxFee = fees.isEmpty() ? 0 : fees.stream().mapToDouble(Double::doubleValue).max().orElse(0);
-        double minFee = fees.isEmpty() ? 0 : fees.stream().mapToDouble(Double::doubleValue).min().orElse(0);
-        
-        report.setTotalBookings(totalBookings);
-        report.setCompletedBookings(completedBookings);
-        report.setActiveBookings(activeBookings);
-        report.setCancelledBookings(cancelledBookings);
-        report.setTotalRevenue(totalRevenue);
-        report.setAverageFee(averageFee);
-        report.setMaxFee(maxFee);
-        report.setMinFee(minFee);
+    private void calculateBasicMetrics(BookingAggregator totals, UsageReportResponse report) {
+        report.setTotalBookings(totals.getBookings());
+        report.setCompletedBookings(totals.getCount(Booking.ParkingStatus.COMPLETED));
+        report.setActiveBookings(totals.getCount(Booking.ParkingStatus.ACTIVE));
+        report.setCancelledBookings(totals.getCount(Booking.ParkingStatus.CANCELLED));
+        report.setTotalRevenue(totals.getRevenue());
+        report.setAverageFee(totals.getAverageFee());
+        report.setMaxFee(totals.getMaxFee());
+        report.setMinFee(totals.getMinFee());
     }
     
     /**
      * Calculate parking duration metrics
+     * Average, min and max come from the rollups; the median needs the individual durations
      */
-    private void calculateDurationMetrics(List<Booking> bookings, UsageReportResponse report) {
-        List<Double> durations = bookings.stream()
-                .filter(b -> b.getEntryTime() != null && b.getExitTime() != null)
-                .map(b -> {
-                    Duration duration = Duration.between(b.getEntryTime(), b.getExitTime());
-                    return (double) duration.toMinutes();
-                })
-                .filter(d -> d >= 0)
-                .collect(Collectors.toList());
-        
-        if (!durations.isEmpty()) {
-            double avgDuration = durations.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-            double maxDuration = durations.stream().mapToDouble(Double::doubleValue).max().orElse(0);
-            double minDuration = durations.stream().mapToDouble(Double::doubleValue).min().orElse(0);
-            
-            // Calculate median
-            Collections.sort(durations);
-            double medianDuration = durations.size() % 2 == 0 
-                ? (durations.get(durations.size() / 2 - 1) + durations.get(durations.size() / 2)) / 2
-                : durations.get(durations.size() / 2);
-            
-            report.setAverageDurationMinutes(avgDuration);
-            report.setMaxDurationMinutes(maxDuration);
-            report.setMinDurationMinutes(minDuration);
-            report.setMedianDurationMinutes(medianDuration);
-        } else {
-            report.setAverageDurationMinutes(0.0);
-            report.setMaxDurationMinutes(0.0);
-            report.setMinDurationMinutes(0.0);
-            report.setMedianDurationMinutes(0.0);
+    private void calculateDurationMetrics(BookingAggregator totals, LocalDateTime startDate,
+                                          LocalDateTime endDate, UsageReportResponse report) {
+        if (totals.getDurationCount() > 0) {
+            for (Object[] times : bookingRepository.findEntryExitTimesByEntryRange(startDate, endDate.plusNanos(1))) {
+                long minutes = Duration.between((LocalDateTime) times[0], (LocalDateTime) times[1]).toMinutes();
+                if (minutes >= 0) {
+                    totals.addDurationSample(minutes);
+                }
+            }
         }
+        
+        report.setAverageDurationMinutes(totals.getAverageDurationMinutes());
+        report.setMaxDurationMinutes(totals.getMaxDurationMinutes());
+        report.setMinDurationMinutes(totals.getMinDurationMinutes());
+        report.setMedianDurationMinutes(totals.getMedianDurationMinutes());
     }
     
     /**
@@ -232,13 +212,8 @@ public class ReportService {
     /**
      * Calculate peak hours based on entry times
      */
-    private void calculatePeakHours(List<Booking> bookings, UsageReportResponse report) {
-        Map<Integer, Long> hourlyBookings = bookings.stream()
-                .filter(b -> b.getEntryTime() != null)
-                .collect(Collectors.groupingBy(
-                    b -> b.getEntryTime().getHour(),
-                    Collectors.counting()
-                ));
+    private void calculatePeakHours(BookingAggregator totals, UsageReportResponse report) {
+        Map<Integer, Long> hourlyBookings = totals.getHourlyCounts();
         
         report.setPeakHoursData(hourlyBookings);
         
@@ -255,55 +230,23 @@ public class ReportService {
     /**
      * Calculate temporal breakdown (daily/weekly)
      */
-    private void calculateTemporalBreakdown(List<Booking> bookings, UsageReportResponse report, String reportType) {
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        
-        // Daily booking breakdown
-        Map<String, Long> dailyBreakdown = bookings.stream()
-                .filter(b -> b.getEntryTime() != null)
-                .collect(Collectors.groupingBy(
-                    b -> b.getEntryTime().format(dateFormatter),
-                    Collectors.counting()
-                ));
-        
-        // Daily revenue breakdown
-        Map<String, Double> dailyRevenueBreakdown = bookings.stream()
-                .filter(b -> b.getEntryTime() != null && b.getParkingFee() != null 
-                        && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .collect(Collectors.groupingBy(
-                    b -> b.getEntryTime().format(dateFormatter),
-                    Collectors.summingDouble(Booking::getParkingFee)
-                ));
-        
-        report.setDailyBreakdown(dailyBreakdown);
-        report.setDailyRevenueBreakdown(dailyRevenueBreakdown);
+    private void calculateTemporalBreakdown(BookingAggregator totals, UsageReportResponse report, String reportType) {
+        report.setDailyBreakdown(totals.getDailyCounts());
+        report.setDailyRevenueBreakdown(totals.getDailyRevenue());
     }
     
     /**
      * Calculate vehicle type breakdown
      */
-    private void calculateVehicleTypeBreakdown(List<Booking> bookings, UsageReportResponse report) {
-        Map<String, Long> vehicleTypeBreakdown = bookings.stream()
-                .filter(b -> b.getVehicleType() != null)
-                .collect(Collectors.groupingBy(
-                    b -> b.getVehicleType().toString(),
-                    Collectors.counting()
-                ));
-        
-        report.setVehicleTypeBreakdown(vehicleTypeBreakdown);
+    private void calculateVehicleTypeBreakdown(BookingAggregator totals, UsageReportResponse report) {
+        report.setVehicleTypeBreakdown(totals.getVehicleTypeCounts());
     }
     
     /**
      * Calculate booking status distribution
      */
-    private void calculateStatusDistribution(List<Booking> bookings, UsageReportResponse report) {
-        Map<String, Long> statusDistribution = bookings.stream()
-                .collect(Collectors.groupingBy(
-                    b -> b.getStatus().toString(),
-                    Collectors.counting()
-                ));
-        
-        report.setStatusDistribution(statusDistribution);
+    private void calculateStatusDistribution(BookingAggregator totals, UsageReportResponse report) {
+        report.setStatusDistribution(totals.getStatusCounts());
     }
 
     /**
@@ -334,75 +277,69 @@ public class ReportService {
     }
 
     /**
-     * Generate CSV export for bookings with optional filters
+     * Write the CSV export of bookings with optional filters to the stream, one row at a time
+     * Rows come from a cursor ordered by entry time in the database and are formatted into one
+     * reused buffer, so memory use does not grow with the size of the export.
+     * The stream is flushed but not closed.
+     *
+     * @return Number of bookings written
      */
-    public String generateBookingsCsv(LocalDateTime startDate, LocalDateTime endDate, Long slotId, Long userId) {
-        List<Booking> bookings;
-
-        // Prefer date range if both provided
-        if (startDate != null && endDate != null) {
-            bookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
-        } else if (slotId != null && userId == null) {
-            bookings = bookingRepository.findBySlotId(slotId);
-        } else if (userId != null && slotId == null) {
-            bookings = bookingRepository.findByUserId(userId);
-        } else {
-            bookings = bookingRepository.findAll();
-        }
-
-        // Apply secondary in-memory filters when combined
-        if (slotId != null) {
-            bookings = bookings.stream().filter(b -> Objects.equals(b.getSlotId(), slotId)).collect(Collectors.toList());
-        }
-        if (userId != null) {
-            bookings = bookings.stream().filter(b -> Objects.equals(b.getUserId(), userId)).collect(Collectors.toList());
-        }
-
-        // Sort by entry time ascending for readability
-        bookings.sort(Comparator.comparing(Booking::getEntryTime, Comparator.nullsLast(Comparator.naturalOrder())));
+    @Transactional(readOnly = true)
+    public long writeBookingsCsv(LocalDateTime startDate, LocalDateTime endDate, Long slotId, Long userId,
+                                 OutputStream out) throws IOException {
+        // The date range only applies when both ends are given
+        boolean byRange = startDate != null && endDate != null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), CSV_BUFFER_SIZE);
+        writer.write("id,userId,slotId,vehicleType,entryTime,exitTime,status,parkingFee,transactionId,paymentStatus,paymentTime,durationMinutes\n");
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("id,userId,slotId,vehicleType,entryTime,exitTime,status,parkingFee,transactionId,paymentStatus,paymentTime,durationMinutes\n");
+        StringBuilder row = new StringBuilder(256);
+        long written = 0;
+        try (Stream<Object[]> rows = bookingRepository.streamExportRows(
+                byRange ? startDate : null, byRange ? endDate : null, slotId, userId)) {
+            Iterator<Object[]> cursor = rows.iterator();
+            while (cursor.hasNext()) {
+                Object[] b = cursor.next();
+                LocalDateTime entryTime = (LocalDateTime) b[4];
+                LocalDateTime exitTime = (LocalDateTime) b[5];
+                long durationMinutes = 0;
+                if (entryTime != null && exitTime != null) {
+                    durationMinutes = Duration.between(entryTime, exitTime).toMinutes();
+                }
 
-        for (Booking b : bookings) {
-            long durationMinutes = 0;
-            if (b.getEntryTime() != null && b.getExitTime() != null) {
-                durationMinutes = java.time.Duration.between(b.getEntryTime(), b.getExitTime()).toMinutes();
+                row.setLength(0);
+                appendValue(row, b[0]).append(',');
+                appendValue(row, b[1]).append(',');
+                appendValue(row, b[2]).append(',');
+                appendCsv(row, b[3]).append(',');
+                appendCsv(row, entryTime).append(',');
+                appendCsv(row, exitTime).append(',');
+                appendCsv(row, b[6]).append(',');
+                appendValue(row, b[7]).append(',');
+                appendCsv(row, b[8]).append(',');
+                appendCsv(row, b[9]).append(',');
+                appendCsv(row, b[10]).append(',');
+                row.append(durationMinutes).append('\n');
+                writer.append(row);
+                written++;
             }
-
-            sb.append(safe(b.getId()))
-              .append(',').append(safe(b.getUserId()))
-              .append(',').append(safe(b.getSlotId()))
-              .append(',').append(escapeCsv(b.getVehicleType() != null ? b.getVehicleType().toString() : null))
-              .append(',').append(escapeCsv(formatDateTime(b.getEntryTime())))
-              .append(',').append(escapeCsv(formatDateTime(b.getExitTime())))
-              .append(',').append(escapeCsv(b.getStatus() != null ? b.getStatus().toString() : null))
-              .append(',').append(safe(b.getParkingFee()))
-              .append(',').append(escapeCsv(b.getTransactionId()))
-              .append(',').append(escapeCsv(b.getPaymentStatus()))
-              .append(',').append(escapeCsv(formatDateTime(b.getPaymentTime())))
-              .append(',').append(durationMinutes)
-              .append('\n');
         }
-
-        return sb.toString();
-    }
-
-    private String formatDateTime(LocalDateTime dt) {
-        return dt == null ? null : dt.toString();
+        writer.flush();
+        return written;
     }
 
-    private String escapeCsv(String value) {
-        if (value == null) return "";
-        String v = value.replace("\r", " ").replace("\n", " ");
-        if (v.contains(",") || v.contains("\"") || v.contains("\n")) {
-            v = '"' + v.replace("\"", "\"\"") + '"';
+    private StringBuilder appendCsv(StringBuilder sb, Object value) {
+        if (value == null) {
+            return sb;
         }
-        return v;
+        String v = value.toString().replace("\r", " ").replace("\n", " ");
+        if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0) {
+            return sb.append('"').append(v.replace("\"", "\"\"")).append('"');
+        }
+        return sb.append(v);
     }
 
-    private String safe(Object obj) {
-        return obj == null ? "" : String.valueOf(obj);
+    private StringBuilder appendValue(StringBuilder sb, Object value) {
+        return value == null ? sb : sb.append(value);
     }
     
     // ==================== ADVANCED ANALYTICS METHODS ====================
@@ -412,39 +349,37 @@ public class ReportService {
      */
     public List<LocationPerformanceDTO> getLocationComparison(LocalDateTime startDate, LocalDateTime endDate) {
         List<Location> locations = locationRepository.findAll();
-        List<Booking> allBookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
+        // Both grouped by location in the database: one row per location each
+        Map<Long, BookingHourlyRollup> bookingTotals = rollupStore.readByLocation(startDate, endDate);
+        Map<Long, long[]> slotCounts = new HashMap<>();
+        for (Object[] counts : slotRepository.countSlotsByLocation()) {
+            slotCounts.put((Long) counts[0], new long[] {
+                ((Number) counts[1]).longValue(),
+                ((Number) counts[2]).longValue(),
+                ((Number) counts[3]).longValue()
+            });
+        }
         
         return locations.stream().map(location -> {
-            List<Slot> locationSlots = slotRepository.findByLocationId(location.getId());
-            List<Booking> locationBookings = allBookings.stream()
-                .filter(b -> locationSlots.stream().anyMatch(s -> s.getId().equals(b.getSlotId())))
-                .collect(Collectors.toList());
+            BookingHourlyRollup totals = bookingTotals.getOrDefault(location.getId(), new BookingHourlyRollup());
+            long[] slots = slotCounts.getOrDefault(location.getId(), new long[3]);
             
             // Calculate metrics
-            Double totalRevenue = locationBookings.stream()
-                .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .mapToDouble(Booking::getParkingFee)
-                .sum();
+            Double totalRevenue = totals.getRevenue();
             
-            Integer totalBookings = locationBookings.size();
+            Integer totalBookings = Math.toIntExact(totals.getBookingCount());
             
-            Double avgDuration = locationBookings.stream()
-                .filter(b -> b.getEntryTime() != null && b.getExitTime() != null)
-                .mapToDouble(b -> Duration.between(b.getEntryTime(), b.getExitTime()).toMinutes())
-                .average()
-                .orElse(0.0);
+            Double avgDuration = totals.getDurationCount() > 0
+                ? (double) totals.getDurationMinutesSum() / totals.getDurationCount()
+                : 0.0;
             
             Double avgRevenue = totalBookings > 0 ? totalRevenue / totalBookings : 0.0;
             
-            long availableSlots = locationSlots.stream()
-                .filter(s -> s.isAvailable() && !s.isDisabled())
-                .count();
+            long availableSlots = slots[1];
             
-            long occupiedSlots = locationSlots.stream()
-                .filter(s -> !s.isAvailable() && !s.isDisabled())
-                .count();
+            long occupiedSlots = slots[2];
             
-            Integer totalSlots = locationSlots.size();
+            Integer totalSlots = Math.toIntExact(slots[0]);
             Double occupancyRate = totalSlots > 0 ? (occupiedSlots * 100.0 / totalSlots) : 0.0;
             Double utilizationRate = totalSlots > 0 ? (totalBookings * 100.0 / (totalSlots * 24)) : 0.0; // bookings per slot per day
             
@@ -467,82 +402,79 @@ public class ReportService {
      * Get slot utilization analytics
      */
     public List<SlotUtilizationDTO> getSlotUtilization(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Slot> slots = slotRepository.findAllWithLocation();
-        List<Booking> allBookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
-        
         long periodHours = Duration.between(startDate, endDate).toHours();
         
-        return slots.stream().map(slot -> {
-            List<Booking> slotBookings = allBookings.stream()
-                .filter(b -> b.getSlotId().equals(slot.getId()))
-                .collect(Collectors.toList());
-            
-            Integer totalBookings = slotBookings.size();
-            
-            Double totalBookedHours = slotBookings.stream()
-                .filter(b -> b.getEntryTime() != null && b.getExitTime() != null)
-                .mapToDouble(b -> Duration.between(b.getEntryTime(), b.getExitTime()).toHours())
-                .sum();
-            
-            Double idleTimeHours = periodHours - totalBookedHours;
-            Double utilizationPercentage = periodHours > 0 ? (totalBookedHours * 100.0 / periodHours) : 0.0;
-            Double turnoverRate = periodHours > 0 ? (totalBookings * 24.0 / periodHours) : 0.0; // bookings per day
-            
-            LocalDateTime lastBookedDate = slotBookings.stream()
-                .map(Booking::getEntryTime)
-                .filter(Objects::nonNull)
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
-            
-            Double revenueGenerated = slotBookings.stream()
-                .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .mapToDouble(Booking::getParkingFee)
-                .sum();
-            
-            return new SlotUtilizationDTO(
-                slot.getId(),
-                slot.getSlotNumber(),
-                slot.getLocation().getName(),
-                totalBookings,
-                Math.max(0, idleTimeHours),
-                turnoverRate,
-                lastBookedDate,
-                utilizationPercentage,
-                revenueGenerated
-            );
-        }).collect(Collectors.toList());
+        return slotRepository.findSlotUtilization(startDate, endDate).stream()
+            .map(row -> toSlotUtilization(row, periodHours))
+            .collect(Collectors.toList());
     }
     
     /**
      * Get top utilized slots
+     * Sorted and limited by the database; only the returned slots are built
      */
     public List<SlotUtilizationDTO> getTopUtilizedSlots(LocalDateTime startDate, LocalDateTime endDate, int limit) {
-        return getSlotUtilization(startDate, endDate).stream()
-            .sorted(Comparator.comparing(SlotUtilizationDTO::getUtilizationPercentage).reversed())
-            .limit(limit)
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        long periodHours = Duration.between(startDate, endDate).toHours();
+        
+        return slotRepository.findMostUtilizedSlots(startDate, endDate, PageRequest.of(0, limit)).stream()
+            .map(row -> toSlotUtilization(row, periodHours))
             .collect(Collectors.toList());
     }
     
     /**
      * Get least utilized slots
+     * Sorted and limited by the database; only the returned slots are built
      */
     public List<SlotUtilizationDTO> getLeastUtilizedSlots(LocalDateTime startDate, LocalDateTime endDate, int limit) {
-        return getSlotUtilization(startDate, endDate).stream()
-            .sorted(Comparator.comparing(SlotUtilizationDTO::getUtilizationPercentage))
-            .limit(limit)
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        long periodHours = Duration.between(startDate, endDate).toHours();
+        
+        return slotRepository.findLeastUtilizedSlots(startDate, endDate, PageRequest.of(0, limit)).stream()
+            .map(row -> toSlotUtilization(row, periodHours))
             .collect(Collectors.toList());
     }
     
+    /**
+     * Build a slot's utilization from a SlotRepository.SLOT_UTILIZATION row
+     */
+    private SlotUtilizationDTO toSlotUtilization(Object[] row, long periodHours) {
+        Integer totalBookings = ((Number) row[3]).intValue();
+        
+        Double totalBookedHours = ((Number) row[4]).doubleValue();
+        
+        Double idleTimeHours = periodHours - totalBookedHours;
+        Double utilizationPercentage = periodHours > 0 ? (totalBookedHours * 100.0 / periodHours) : 0.0;
+        Double turnoverRate = periodHours > 0 ? (totalBookings * 24.0 / periodHours) : 0.0; // bookings per day
+        
+        LocalDateTime lastBookedDate = (LocalDateTime) row[6];
+        
+        Double revenueGenerated = ((Number) row[5]).doubleValue();
+        
+        return new SlotUtilizationDTO(
+            (Long) row[0],
+            (String) row[1],
+            (String) row[2],
+            totalBookings,
+            Math.max(0, idleTimeHours),
+            turnoverRate,
+            lastBookedDate,
+            utilizationPercentage,
+            revenueGenerated
+        );
+    }
+    
     /**
      * Get comprehensive revenue analytics
      */
     public RevenueAnalyticsDTO getRevenueAnalytics(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Booking> bookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
+        BookingAggregator totals = aggregate(startDate, endDate);
         
-        Double totalRevenue = bookings.stream()
-            .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-            .mapToDouble(Booking::getParkingFee)
-            .sum();
+        Double totalRevenue = totals.getRevenue();
         
         long daysDiff = Duration.between(startDate, endDate).toDays();
         daysDiff = daysDiff == 0 ? 1 : daysDiff;
@@ -552,25 +484,16 @@ public class ReportService {
         Double monthlyAvgRevenue = totalRevenue / (daysDiff / 30.0);
         
         // Revenue by location
+        Map<Long, BookingHourlyRollup> totalsByLocation = rollupStore.readByLocation(startDate, endDate);
         Map<String, Double> revenueByLocation = new HashMap<>();
         List<Location> locations = locationRepository.findAll();
         locations.forEach(loc -> {
-            List<Slot> locationSlots = slotRepository.findByLocationId(loc.getId());
-            Double locRevenue = bookings.stream()
-                .filter(b -> locationSlots.stream().anyMatch(s -> s.getId().equals(b.getSlotId())))
-                .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-                .mapToDouble(Booking::getParkingFee)
-                .sum();
-            revenueByLocation.put(loc.getName(), locRevenue);
+            BookingHourlyRollup totals = totalsByLocation.get(loc.getId());
+            revenueByLocation.put(loc.getName(), totals != null ? totals.getRevenue() : 0.0);
         });
         
         // Revenue by hour
-        Map<Integer, Double> revenueByHour = bookings.stream()
-            .filter(b -> b.getEntryTime() != null && b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-            .collect(Collectors.groupingBy(
-                b -> b.getEntryTime().getHour(),
-                Collectors.summingDouble(Booking::getParkingFee)
-            ));
+        Map<Integer, Double> revenueByHour = totals.getHourlyRevenue();
         
         // Peak hour revenue
         Map.Entry<Integer, Double> peakHour = revenueByHour.entrySet().stream()
@@ -582,17 +505,9 @@ public class ReportService {
         
         // Simple growth calculation (compare first half vs second half)
         LocalDateTime midPoint = startDate.plus(Duration.between(startDate, endDate).dividedBy(2));
-        Double firstHalfRevenue = bookings.stream()
-            .filter(b -> b.getEntryTime() != null && b.getEntryTime().isBefore(midPoint))
-            .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-            .mapToDouble(Booking::getParkingFee)
-            .sum();
-        
-        Double secondHalfRevenue = bookings.stream()
-            .filter(b -> b.getEntryTime() != null && b.getEntryTime().isAfter(midPoint))
-            .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
-            .mapToDouble(Booking::getParkingFee)
-            .sum();
+        Double firstHalfRevenue = aggregate(startDate, midPoint).getRevenue();
+        
+        Double secondHalfRevenue = aggregate(midPoint, endDate).getRevenue();
         
         Double revenueGrowth = firstHalfRevenue > 0 ? ((secondHalfRevenue - firstHalfRevenue) / firstHalfRevenue * 100) : 0.0;
         
@@ -688,36 +603,24 @@ public class ReportService {
      * Get occupancy heatmap data (hour x day of week)
      */
     public List<OccupancyHeatmapDTO> getOccupancyHeatmap(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Booking> bookings = bookingRepository.findBookingsByDateRange(startDate, endDate);
         List<OccupancyHeatmapDTO> heatmapData = new ArrayList<>();
         
         long totalSlots = slotRepository.count();
         
+        BookingAggregator totals = aggregate(startDate, endDate);
+        
         // Create heatmap for each hour (0-23) and day of week (1-7)
         for (int hour = 0; hour < 24; hour++) {
             for (int dayOfWeek = 1; dayOfWeek <= 7; dayOfWeek++) {
-                final int currentHour = hour;
-                final int currentDay = dayOfWeek;
-                
-                List<Booking> filteredBookings = bookings.stream()
-                    .filter(b -> b.getEntryTime() != null)
-                    .filter(b -> b.getEntryTime().getHour() == currentHour)
-                    .filter(b -> b.getEntryTime().getDayOfWeek().getValue() == currentDay)
-                    .collect(Collectors.toList());
-                
-                Integer bookingCount = filteredBookings.size();
+                Integer bookingCount = Math.toIntExact(totals.getCount(hour, dayOfWeek));
                 
-                Double avgDuration = filteredBookings.stream()
-                    .filter(b -> b.getExitTime() != null)
-                    .mapToDouble(b -> Duration.between(b.getEntryTime(), b.getExitTime()).toMinutes())
-                    .average()
-                    .orElse(0.0);
+                Double avgDuration = totals.getAverageDurationMinutes(hour, dayOfWeek);
                 
                 Double occupancyPercentage = totalSlots > 0 ? (bookingCount * 100.0 / totalSlots) : 0.0;
                 
                 heatmapData.add(new OccupancyHeatmapDTO(
-                    currentHour,
-                    currentDay,
+                    hour,
+                    dayOfWeek,
                     Math.min(100.0, occupancyPercentage),
                     bookingCount,
                     avgDuration
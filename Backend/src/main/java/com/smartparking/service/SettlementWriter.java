@@ -0,0 +1,404 @@
+package com.smartparking.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Settlement Writer
+ * Commits successful payments in micro-batches. Settlements are queued and a single
+ * writer thread flushes them every app.payment.settlement.max-delay-millis or
+ * max-batch-size items, whichever comes first: one transaction per batch, with the
+ * booking updates and the slot releases each sent as one JDBC batch.
+ *
+ * Every caller still gets its own result. A booking that is no longer ACTIVE is
+ * rejected on its own without failing the rest of the batch, and if a batch fails
+ * as a whole its items are retried one by one.
+ *
+ * A caller that gives up waiting takes its settlement back out of the queue if the writer
+ * has not picked it up yet, and is told the payment is captured but not settled (Pending).
+ * GuardedPaymentClient keeps the captured charge until its settlement commits, so paying
+ * again for the booking settles the same transaction instead of charging twice; settling
+ * a transaction that has already been written is answered as settled.
+ */
+@Component
+public class SettlementWriter {
+
+    private static final String SETTLE_BOOKING_SQL =
+            "UPDATE bookings SET status = 'COMPLETED', payment_status = 'PAID', payment_time = ?, transaction_id = ? "
+                    + "WHERE id = ? AND slot_id = ? AND status = 'ACTIVE'";
+
+    private static final String RELEASE_SLOT_SQL =
+            "UPDATE slots SET available = true, version = version + 1 WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SlotLockManager slotLockManager;
+
+    @Autowired
+    private SlotAvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private SlotIntervalIndex intervalIndex;
+
+    @Autowired
+    private BookingRollupStore rollupStore;
+
+    @Autowired
+    private FeeTicker feeTicker;
+
+    @Autowired
+    private GuardedPaymentClient paymentClient;
+
+    @Value("${app.payment.settlement.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${app.payment.settlement.max-delay-millis:20}")
+    private long maxDelayMillis;
+
+    @Value("${app.payment.settlement.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.payment.settlement.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+
+    private BlockingQueue<Settlement> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::run, "settlement-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        writerThread.interrupt();
+    }
+
+    /**
+     * Queue the settlement of a paid booking: booking COMPLETED/PAID and slot released
+     * The future completes once the batch holding it has committed
+     */
+    public CompletableFuture<Void> submit(Long bookingId, Long slotId, String transactionId) {
+        return enqueue(bookingId, slotId, transactionId).result;
+    }
+
+    /**
+     * Settle a paid booking and wait for the commit
+     * Throws Pending if the commit was not confirmed in time (the charge stands, the booking
+     * is still ACTIVE), and a plain RuntimeException if the booking could not be settled
+     */
+    public void settle(Long bookingId, Long slotId, String transactionId) {
+        Settlement settlement = enqueue(bookingId, slotId, transactionId);
+        try {
+            settlement.result.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            withdraw(settlement);
+            throw new Pending(transactionId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            withdraw(settlement);
+            throw new Pending(transactionId);
+        }
+    }
+
+    private Settlement enqueue(Long bookingId, Long slotId, String transactionId) {
+        Settlement settlement = new Settlement(bookingId, slotId, transactionId);
+        if (bookingId == null || slotId == null) {
+            settlement.result.completeExceptionally(new RuntimeException("Booking has no assigned slot ID"));
+        } else if (!queue.offer(settlement)) {
+            settlement.result.completeExceptionally(
+                    new RuntimeException("Payment settlement is busy, please try again shortly"));
+        }
+        return settlement;
+    }
+
+    /**
+     * Take a settlement the caller stopped waiting for back out of the queue
+     * Once the writer has picked it up it can no longer be withdrawn and may still commit
+     */
+    private void withdraw(Settlement settlement) {
+        if (queue.remove(settlement)) {
+            withdrawn.increment();
+            settlement.result.completeExceptionally(new RuntimeException("Settlement withdrawn"));
+            System.out.println("⏱️ [SettlementWriter] Withdrew settlement of booking " + settlement.bookingId
+                    + " (transaction " + settlement.transactionId + ") after " + timeoutSeconds + "s");
+        } else {
+            System.out.println("⏱️ [SettlementWriter] Settlement of booking " + settlement.bookingId
+                    + " (transaction " + settlement.transactionId + ") still being written after " + timeoutSeconds + "s");
+        }
+    }
+
+    /**
+     * Queue depth and batch statistics
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long batchCount = batches.sum();
+        long itemCount = settled.sum() + rejected.sum();
+        metrics.put("queued", queue.size());
+        metrics.put("batches", batchCount);
+        metrics.put("settled", settled.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("withdrawn", withdrawn.sum());
+        metrics.put("averageBatchSize", batchCount > 0 ? Math.round(itemCount * 10.0 / batchCount) / 10.0 : 0.0);
+        return metrics;
+    }
+
+    private void run() {
+        List<Settlement> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                // Collect until the batch is full or the oldest item has waited max-delay-millis
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Settlement next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                batch.forEach(s -> s.result.completeExceptionally(new RuntimeException("Settlement writer stopped")));
+                return;
+            } catch (RuntimeException e) {
+                System.out.println("❌ [SettlementWriter] Flush failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Settlement> batch) {
+        List<Settlement> committed;
+        try {
+            committed = transactionTemplate.execute(status -> write(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                rejected.increment();
+                batch.get(0).result.completeExceptionally(
+                        new RuntimeException("Payment settlement failed: " + e.getMessage()));
+                return;
+            }
+            System.out.println("⚠️ [SettlementWriter] Batch of " + batch.size()
+                    + " failed, settling one by one: " + e.getMessage());
+            batch.forEach(settlement -> flush(Collections.singletonList(settlement)));
+            return;
+        }
+        batches.increment();
+        List<Long> settledIds = committed.stream().map(s -> s.bookingId).collect(Collectors.toList());
+        rollupStore.markBookingsDirty(settledIds);
+        feeTicker.close(settledIds);
+
+        for (Settlement settlement : committed) {
+            intervalIndex.remove(settlement.slotId, settlement.bookingId);
+            availabilityEngine.release(settlement.slotId);
+            paymentClient.settled(settlement.bookingId);
+            settled.increment();
+            settlement.result.complete(null);
+        }
+        for (Settlement settlement : batch) {
+            if (settlement.result.isDone()) {
+                continue;
+            }
+            if (settlement.alreadySettled) {
+                paymentClient.settled(settlement.bookingId);
+                settlement.result.complete(null);
+            } else {
+                rejected.increment();
+                settlement.result.completeExceptionally(new RuntimeException(settlement.rejection));
+            }
+        }
+    }
+
+    /**
+     * Write one batch inside the current transaction and return the settlements that applied
+     */
+    private List<Settlement> write(List<Settlement> batch) {
+        // Same lock the booking paths take, so a concurrent cancel or checkout cannot interleave
+        slotLockManager.lockSlots(batch.stream()
+                .map(s -> s.slotId)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList()));
+
+        Timestamp paymentTime = Timestamp.valueOf(LocalDateTime.now());
+        int[] counts = jdbcTemplate.batchUpdate(SETTLE_BOOKING_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Settlement settlement = batch.get(i);
+                ps.setTimestamp(1, paymentTime);
+                ps.setString(2, settlement.transactionId);
+                ps.setLong(3, settlement.bookingId);
+                ps.setLong(4, settlement.slotId);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+
+        List<Settlement> applied = new ArrayList<>(batch.size());
+        List<Settlement> unknown = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (counts[i] > 0) {
+                applied.add(batch.get(i));
+            } else {
+                // 0 rows (not ACTIVE) or a driver that reports SUCCESS_NO_INFO
+                unknown.add(batch.get(i));
+            }
+        }
+        if (!unknown.isEmpty()) {
+            resolve(unknown, applied, containsNoInfo(counts));
+        }
+
+        if (!applied.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_SLOT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, applied.get(i).slotId);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return applied.size();
+                }
+            });
+        }
+        return applied;
+    }
+
+    /**
+     * Work out what happened to settlements whose update count did not show a change
+     */
+    private void resolve(List<Settlement> unknown, List<Settlement> applied, boolean noInfo) {
+        Map<Long, Map<String, Object>> rows = new HashMap<>();
+        namedJdbcTemplate.queryForList(
+                "SELECT id, slot_id, status, transaction_id FROM bookings WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", unknown.stream().map(s -> s.bookingId).collect(Collectors.toList())))
+                .forEach(row -> rows.put(((Number) row.get("id")).longValue(), row));
+
+        for (Settlement settlement : unknown) {
+            Map<String, Object> row = rows.get(settlement.bookingId);
+            if (row == null) {
+                settlement.rejection = "Booking not found with ID: " + settlement.bookingId;
+            } else if ("COMPLETED".equals(row.get("status"))
+                    && settlement.transactionId != null
+                    && settlement.transactionId.equals(row.get("transaction_id"))) {
+                if (noInfo) {
+                    applied.add(settlement);
+                } else {
+                    // An earlier submission of the same payment has already committed
+                    settlement.alreadySettled = true;
+                }
+            } else if ("COMPLETED".equals(row.get("status"))) {
+                settlement.rejection = "Booking is already paid";
+            } else if (!"ACTIVE".equals(row.get("status"))) {
+                settlement.rejection = "Booking is not active. Current status: " + row.get("status");
+            } else {
+                settlement.rejection = "Booking is not assigned to slot " + settlement.slotId;
+            }
+        }
+    }
+
+    private static boolean containsNoInfo(int[] counts) {
+        for (int count : counts) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Settlement {
+        private final Long bookingId;
+        private final Long slotId;
+        private final String transactionId;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private String rejection;
+        private boolean alreadySettled;
+
+        private Settlement(Long bookingId, Long slotId, String transactionId) {
+            this.bookingId = bookingId;
+            this.slotId = slotId;
+            this.transactionId = transactionId;
+        }
+    }
+
+    /**
+     * Thrown when a captured payment's settlement was not confirmed in time; the charge stands
+     * and paying again for the booking settles the same transaction
+     */
+    public static class Pending extends RuntimeException {
+        private final String transactionId;
+
+        public Pending(String transactionId) {
+            super("Payment captured (transaction " + transactionId + ") - the booking is still being completed, paying again will not charge twice");
+            this.transactionId = transactionId;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+    }
+}
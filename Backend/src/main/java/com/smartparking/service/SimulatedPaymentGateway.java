@@ -0,0 +1,137 @@
+package com.smartparking.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Simulated Payment Gateway
+ * Local stand-in for a payment provider: no real money moves. Succeeds with
+ * app.payment.simulated.success-rate and answers after app.payment.simulated.latency-millis
+ * plus a random extra delay, so load tests can model a slow or unhealthy provider:
+ *
+ * - latency-distribution: uniform (0..latency-jitter-millis) or exponential
+ *   (mean latency-jitter-millis, long tail)
+ * - error-rate: share of calls that throw, as a provider outage would
+ * - stall-rate: share of calls that hang for stall-millis before answering
+ *
+ * Like a real provider it charges a stalled call even when the caller has given up, and
+ * answers a repeated idempotency key with the outcome it recorded for that key.
+ */
+@Component
+@ConditionalOnProperty(name = "app.payment.gateway", havingValue = "simulated", matchIfMissing = true)
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Value("${app.payment.simulated.success-rate:0.95}")
+    private double successRate;
+
+    @Value("${app.payment.simulated.latency-millis:0}")
+    private long latencyMillis;
+
+    @Value("${app.payment.simulated.latency-jitter-millis:0}")
+    private long latencyJitterMillis;
+
+    @Value("${app.payment.simulated.latency-distribution:uniform}")
+    private String latencyDistribution;
+
+    @Value("${app.payment.simulated.error-rate:0}")
+    private double errorRate;
+
+    @Value("${app.payment.simulated.stall-rate:0}")
+    private double stallRate;
+
+    @Value("${app.payment.simulated.stall-millis:30000}")
+    private long stallMillis;
+
+    // Outcomes by idempotency key, oldest dropped first
+    private final Map<String, PaymentService.PaymentResult> outcomes = new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PaymentService.PaymentResult> eldest) {
+            return size() > 10_000;
+        }
+    };
+
+    @Override
+    public PaymentService.PaymentResult charge(Long bookingId, double amount, String paymentMethod, String idempotencyKey) {
+        PaymentService.PaymentResult recorded = recordedOutcome(idempotencyKey);
+        if (recorded != null) {
+            return recorded;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        sleep(random.nextDouble() < stallRate ? stallMillis : latencyMillis + extraLatency(random));
+        if (random.nextDouble() < errorRate) {
+            throw new IllegalStateException("Simulated payment provider error");
+        }
+
+        // Simulate payment processing (random success/failure)
+        PaymentService.PaymentResult result;
+        if (random.nextDouble() < successRate) {
+            // Generate unique transaction ID on success
+            result = new PaymentService.PaymentResult(true, idGenerator.nextId("TXN"), "Payment successful");
+        } else {
+            result = new PaymentService.PaymentResult(false, null, "Payment failed - Please try again");
+        }
+        return recordOutcome(idempotencyKey, result);
+    }
+
+    private PaymentService.PaymentResult recordedOutcome(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        synchronized (outcomes) {
+            return outcomes.get(idempotencyKey);
+        }
+    }
+
+    /**
+     * Record the outcome for the key; a concurrent call with the same key that finished first wins
+     */
+    private PaymentService.PaymentResult recordOutcome(String idempotencyKey, PaymentService.PaymentResult result) {
+        if (idempotencyKey == null) {
+            return result;
+        }
+        synchronized (outcomes) {
+            PaymentService.PaymentResult first = outcomes.putIfAbsent(idempotencyKey, result);
+            return first != null ? first : result;
+        }
+    }
+
+    private long extraLatency(ThreadLocalRandom random) {
+        if (latencyJitterMillis <= 0) {
+            return 0;
+        }
+        if ("exponential".equalsIgnoreCase(latencyDistribution)) {
+            return (long) (-latencyJitterMillis * Math.log(1.0 - random.nextDouble()));
+        }
+        return random.nextLong(latencyJitterMillis + 1);
+    }
+
+    private void sleep(long delay) {
+        if (delay <= 0) {
+            return;
+        }
+        // The provider does not notice that the caller gave up, so an interrupt does not cut the wait short
+        long deadline = System.nanoTime() + delay * 1_000_000L;
+        boolean interrupted = false;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                Thread.sleep(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
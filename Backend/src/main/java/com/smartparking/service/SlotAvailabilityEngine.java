@@ -0,0 +1,297 @@
+package com.smartparking.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.Slot;
+import com.smartparking.repository.SlotRepository;
+
+/**
+ * Slot Availability Engine
+ * Keeps a per-location bitmap of occupied and disabled slots in memory so that
+ * concurrent booking attempts for the same slot are decided by an atomic
+ * compare-and-set instead of queueing on the database row lock.
+ *
+ * The database stays the source of truth: a successful reservation here only lets
+ * the request continue to the locked booking transaction, and the bit is cleared
+ * again if that transaction rolls back.
+ *
+ * Free slots are also queued per (location, slot type) so that auto-assignment can
+ * hand each caller a different candidate instead of everyone racing for the same slot.
+ *
+ * The bitmap is local to this JVM and only loaded at startup, so it is opt-in
+ * (app.booking.availability-engine.enabled) for single-instance deployments. With several
+ * instances, or slots changed directly in the database, its bits go stale; the booking
+ * path therefore checks the database before trusting an occupied bit.
+ */
+@Component
+public class SlotAvailabilityEngine {
+
+    @Autowired
+    private SlotRepository slotRepository;
+
+    @Value("${app.booking.availability-engine.enabled:false}")
+    private boolean enabled;
+
+    private final ConcurrentHashMap<Long, LocationBitmap> locations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, SlotRef> slots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Queue<Long>> freeQueues = new ConcurrentHashMap<>();
+
+    /**
+     * Load every slot from the database once the application has started
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromDatabase() {
+        if (!enabled) {
+            return;
+        }
+        List<Slot> allSlots = slotRepository.findAllWithLocation();
+        allSlots.forEach(this::sync);
+        System.out.println("🅿️ [SlotAvailabilityEngine] Loaded " + allSlots.size() + " slot(s) across "
+                + locations.size() + " location(s)");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Try to reserve a slot with a compare-and-set on its occupied bit.
+     * Returns false if the slot is already occupied or disabled.
+     * Slots the engine does not know about are left to the database to decide.
+     */
+    public boolean tryReserve(Long slotId) {
+        SlotRef ref = slotId != null ? slots.get(slotId) : null;
+        if (ref == null) {
+            return true;
+        }
+        LocationBitmap bitmap = locations.get(ref.locationId);
+        if (bitmap.isDisabled(ref.index)) {
+            return false;
+        }
+        return bitmap.trySetOccupied(ref.index);
+    }
+
+    /**
+     * Mark a slot as free again (checkout payment, cancellation, rollback)
+     */
+    public void release(Long slotId) {
+        SlotRef ref = slotId != null ? slots.get(slotId) : null;
+        if (ref != null) {
+            locations.get(ref.locationId).setOccupied(ref.index, false);
+            offerIfFree(slotId, ref);
+        }
+    }
+
+    /**
+     * Take the next free slot candidate for a location and slot type, or null if none is queued.
+     * The candidate is not reserved yet; the booking path still has to win tryReserve.
+     */
+    public Long pollFree(Long locationId, String slotType) {
+        Queue<Long> queue = freeQueues.get(queueKey(locationId, slotType));
+        if (queue == null) {
+            return null;
+        }
+        Long slotId;
+        while ((slotId = queue.poll()) != null) {
+            SlotRef ref = slots.get(slotId);
+            if (ref == null || !ref.locationId.equals(locationId) || !ref.slotType.equalsIgnoreCase(slotType)) {
+                continue; // Stale entry: slot deleted, moved or retyped
+            }
+            LocationBitmap bitmap = locations.get(ref.locationId);
+            bitmap.setQueued(ref.index, false);
+            if (!bitmap.isOccupied(ref.index) && !bitmap.isDisabled(ref.index)) {
+                return slotId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Location a known slot belongs to, or null if the engine has not seen the slot
+     */
+    public Long getLocationId(Long slotId) {
+        SlotRef ref = slotId != null ? slots.get(slotId) : null;
+        return ref != null ? ref.locationId : null;
+    }
+
+    /**
+     * Mark a slot as occupied without going through a reservation
+     */
+    public void markOccupied(Long slotId) {
+        SlotRef ref = slotId != null ? slots.get(slotId) : null;
+        if (ref != null) {
+            locations.get(ref.locationId).setOccupied(ref.index, true);
+        }
+    }
+
+    /**
+     * Register a slot or refresh its bits from the persisted entity
+     */
+    public void sync(Slot slot) {
+        if (!enabled || slot == null || slot.getId() == null || slot.getLocation() == null) {
+            return;
+        }
+        Long locationId = slot.getLocation().getId();
+        String slotType = slot.getSlotType() != null ? slot.getSlotType() : "CAR";
+        SlotRef ref = slots.compute(slot.getId(), (id, existing) -> {
+            if (existing != null && existing.locationId.equals(locationId)) {
+                if (existing.slotType.equalsIgnoreCase(slotType)) {
+                    return existing;
+                }
+                // Retyped: keep the bit index, queue it again under the new type
+                locations.get(locationId).setQueued(existing.index, false);
+                return new SlotRef(locationId, slotType, existing.index);
+            }
+            if (existing != null) {
+                locations.get(existing.locationId).clear(existing.index);
+            }
+            LocationBitmap bitmap = locations.computeIfAbsent(locationId, key -> new LocationBitmap());
+            return new SlotRef(locationId, slotType, bitmap.allocate());
+        });
+
+        LocationBitmap bitmap = locations.get(ref.locationId);
+        bitmap.setDisabled(ref.index, slot.isDisabled());
+        bitmap.setOccupied(ref.index, !slot.isAvailable());
+        offerIfFree(slot.getId(), ref);
+    }
+
+    /**
+     * Forget a deleted slot
+     */
+    public void remove(Long slotId) {
+        SlotRef ref = slotId != null ? slots.remove(slotId) : null;
+        if (ref != null) {
+            locations.get(ref.locationId).clear(ref.index);
+        }
+    }
+
+    /**
+     * Queue a free slot for auto-assignment unless it is already queued
+     */
+    private void offerIfFree(Long slotId, SlotRef ref) {
+        LocationBitmap bitmap = locations.get(ref.locationId);
+        if (bitmap.isOccupied(ref.index) || bitmap.isDisabled(ref.index)) {
+            return;
+        }
+        if (bitmap.trySetQueued(ref.index)) {
+            freeQueues.computeIfAbsent(queueKey(ref.locationId, ref.slotType), key -> new ConcurrentLinkedQueue<>())
+                    .offer(slotId);
+        }
+    }
+
+    private static String queueKey(Long locationId, String slotType) {
+        return locationId + ":" + slotType.toUpperCase();
+    }
+
+    private static final class SlotRef {
+        private final Long locationId;
+        private final String slotType;
+        private final int index;
+
+        private SlotRef(Long locationId, String slotType, int index) {
+            this.locationId = locationId;
+            this.slotType = slotType;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Bitmap for one location. Words are shared AtomicLong instances so growing
+     * the arrays never loses a concurrent compare-and-set.
+     */
+    private static final class LocationBitmap {
+        private volatile AtomicLong[] occupied = new AtomicLong[0];
+        private volatile AtomicLong[] disabled = new AtomicLong[0];
+        private volatile AtomicLong[] queued = new AtomicLong[0];
+        private int nextIndex;
+
+        private synchronized int allocate() {
+            int index = nextIndex++;
+            int word = index >>> 6;
+            if (word >= disabled.length) {
+                int newLength = Math.max(word + 1, disabled.length * 2);
+                occupied = grow(occupied, newLength);
+                queued = grow(queued, newLength);
+                disabled = grow(disabled, newLength);
+            }
+            return index;
+        }
+
+        private static AtomicLong[] grow(AtomicLong[] words, int newLength) {
+            AtomicLong[] grown = Arrays.copyOf(words, newLength);
+            for (int i = words.length; i < newLength; i++) {
+                grown[i] = new AtomicLong();
+            }
+            return grown;
+        }
+
+        private boolean trySetOccupied(int index) {
+            return trySetBit(occupied, index);
+        }
+
+        private boolean trySetQueued(int index) {
+            return trySetBit(queued, index);
+        }
+
+        private static boolean trySetBit(AtomicLong[] words, int index) {
+            AtomicLong word = words[index >>> 6];
+            long mask = 1L << index;
+            while (true) {
+                long current = word.get();
+                if ((current & mask) != 0) {
+                    return false;
+                }
+                if (word.compareAndSet(current, current | mask)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean isOccupied(int index) {
+            return (occupied[index >>> 6].get() & (1L << index)) != 0;
+        }
+
+        private boolean isDisabled(int index) {
+            return (disabled[index >>> 6].get() & (1L << index)) != 0;
+        }
+
+        private void setOccupied(int index, boolean value) {
+            setBit(occupied, index, value);
+        }
+
+        private void setDisabled(int index, boolean value) {
+            setBit(disabled, index, value);
+        }
+
+        private void setQueued(int index, boolean value) {
+            setBit(queued, index, value);
+        }
+
+        private void clear(int index) {
+            setBit(occupied, index, false);
+            setBit(queued, index, false);
+            setBit(disabled, index, false);
+        }
+
+        private static void setBit(AtomicLong[] words, int index, boolean value) {
+            long mask = 1L << index;
+            AtomicLong word = words[index >>> 6];
+            if (value) {
+                word.getAndAccumulate(mask, (current, m) -> current | m);
+            } else {
+                word.getAndAccumulate(mask, (current, m) -> current & ~m);
+            }
+        }
+    }
+}
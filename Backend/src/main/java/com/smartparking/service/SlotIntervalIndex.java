@@ -0,0 +1,249 @@
+package com.smartparking.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.Booking;
+import com.smartparking.model.Booking.ParkingStatus;
+import com.smartparking.repository.BookingRepository;
+
+/**
+ * Slot Interval Index
+ * In-memory index of the [entry, exit) ranges of ACTIVE and HELD bookings per slot.
+ * Replaces the per-booking hasTimeConflict COUNT query with a binary search, and
+ * answers "first free window after time T" queries.
+ *
+ * Same semantics as BookingRepository.hasTimeConflict: a booking without an exit
+ * time is open-ended and blocks everything after its entry time.
+ *
+ * The index is local to this JVM and only loaded at startup, so it is opt-in
+ * (app.booking.interval-index.enabled) for single-instance deployments: bookings
+ * cancelled or completed on another instance, or directly in the database, stay in it.
+ * A conflict it reports is therefore confirmed with the database before a booking is refused.
+ */
+@Component
+public class SlotIntervalIndex {
+
+    private static final long OPEN_ENDED = Long.MAX_VALUE;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Value("${app.booking.interval-index.enabled:false}")
+    private boolean enabled;
+
+    private volatile boolean loaded;
+
+    private final ConcurrentHashMap<Long, SlotIntervals> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Load all ACTIVE and HELD bookings once the application has started
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromDatabase() {
+        if (!enabled) {
+            return;
+        }
+        List<Booking> bookings = bookingRepository.findByStatusIn(List.of(ParkingStatus.ACTIVE, ParkingStatus.HELD));
+        bookings.forEach(this::put);
+        loaded = true;
+        System.out.println("📅 [SlotIntervalIndex] Indexed " + bookings.size() + " active/held booking(s)");
+    }
+
+    /**
+     * True once the index has been loaded and can replace the conflict query
+     */
+    public boolean isReady() {
+        return enabled && loaded;
+    }
+
+    /**
+     * Check whether [entryTime, exitTime) overlaps any indexed booking on the slot
+     */
+    public boolean hasConflict(Long slotId, LocalDateTime entryTime, LocalDateTime exitTime) {
+        SlotIntervals intervals = slots.get(slotId);
+        return intervals != null && intervals.overlaps(toEpoch(entryTime), toEpoch(exitTime));
+    }
+
+    /**
+     * Earliest start time at or after {@code after} where the slot is free for the given duration,
+     * or null if an open-ended booking blocks the slot indefinitely
+     */
+    public LocalDateTime findFirstFreeWindow(Long slotId, LocalDateTime after, long durationMinutes) {
+        SlotIntervals intervals = slots.get(slotId);
+        long start = toEpoch(after);
+        if (intervals == null) {
+            return after;
+        }
+        long free = intervals.firstFree(start, durationMinutes * 60);
+        if (free == OPEN_ENDED) {
+            return null;
+        }
+        return free == start ? after : LocalDateTime.ofEpochSecond(free, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Add or update a booking's range (book, checkout, exit time correction)
+     */
+    public void put(Booking booking) {
+        if (!enabled || booking.getId() == null || booking.getSlotId() == null || booking.getEntryTime() == null) {
+            return;
+        }
+        long end = booking.getExitTime() != null ? toEpoch(booking.getExitTime()) : OPEN_ENDED;
+        slots.computeIfAbsent(booking.getSlotId(), id -> new SlotIntervals())
+                .put(booking.getId(), toEpoch(booking.getEntryTime()), end);
+    }
+
+    /**
+     * Drop a booking that is no longer ACTIVE or HELD (cancelled, expired, paid)
+     */
+    public void remove(Long slotId, Long bookingId) {
+        SlotIntervals intervals = slotId != null ? slots.get(slotId) : null;
+        if (intervals != null) {
+            intervals.remove(bookingId);
+        }
+    }
+
+    private static long toEpoch(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Copy-on-write arrays sorted by start time. Readers use the published snapshot
+     * without locking; writers rebuild it under the monitor.
+     */
+    private static final class SlotIntervals {
+
+        private volatile Snapshot snapshot = new Snapshot(new long[0], new long[0], new long[0]);
+
+        private synchronized void put(long bookingId, long start, long end) {
+            Snapshot current = snapshot;
+            int existing = current.indexOf(bookingId);
+            Snapshot base = existing >= 0 ? current.without(existing) : current;
+            snapshot = base.with(bookingId, start, end);
+        }
+
+        private synchronized void remove(long bookingId) {
+            Snapshot current = snapshot;
+            int existing = current.indexOf(bookingId);
+            if (existing >= 0) {
+                snapshot = current.without(existing);
+            }
+        }
+
+        private boolean overlaps(long start, long end) {
+            return snapshot.overlaps(start, end);
+        }
+
+        private long firstFree(long from, long durationSeconds) {
+            return snapshot.firstFree(from, durationSeconds);
+        }
+    }
+
+    private static final class Snapshot {
+        private final long[] bookingIds;
+        private final long[] starts;
+        private final long[] ends;
+        // maxEnds[i] = max(ends[0..i]), lets an overlap check stop after one binary search
+        private final long[] maxEnds;
+
+        private Snapshot(long[] bookingIds, long[] starts, long[] ends) {
+            this.bookingIds = bookingIds;
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = new long[ends.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < ends.length; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+        }
+
+        private int indexOf(long bookingId) {
+            for (int i = 0; i < bookingIds.length; i++) {
+                if (bookingIds[i] == bookingId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Snapshot with(long bookingId, long start, long end) {
+            int n = starts.length;
+            int pos = countStartingBefore(start + 1);
+            long[] ids = new long[n + 1];
+            long[] s = new long[n + 1];
+            long[] e = new long[n + 1];
+            System.arraycopy(bookingIds, 0, ids, 0, pos);
+            System.arraycopy(starts, 0, s, 0, pos);
+            System.arraycopy(ends, 0, e, 0, pos);
+            ids[pos] = bookingId;
+            s[pos] = start;
+            e[pos] = end;
+            System.arraycopy(bookingIds, pos, ids, pos + 1, n - pos);
+            System.arraycopy(starts, pos, s, pos + 1, n - pos);
+            System.arraycopy(ends, pos, e, pos + 1, n - pos);
+            return new Snapshot(ids, s, e);
+        }
+
+        private Snapshot without(int index) {
+            int n = starts.length;
+            long[] ids = Arrays.copyOf(bookingIds, n - 1);
+            long[] s = Arrays.copyOf(starts, n - 1);
+            long[] e = Arrays.copyOf(ends, n - 1);
+            System.arraycopy(bookingIds, index + 1, ids, index, n - index - 1);
+            System.arraycopy(starts, index + 1, s, index, n - index - 1);
+            System.arraycopy(ends, index + 1, e, index, n - index - 1);
+            return new Snapshot(ids, s, e);
+        }
+
+        /**
+         * Number of intervals whose start is strictly before the given time
+         */
+        private int countStartingBefore(long time) {
+            int lo = 0;
+            int hi = starts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] < time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private boolean overlaps(long start, long end) {
+            // Candidates start before the requested end; one of them overlaps if it ends after the requested start
+            int candidates = countStartingBefore(end);
+            return candidates > 0 && maxEnds[candidates - 1] > start;
+        }
+
+        private long firstFree(long from, long durationSeconds) {
+            long candidate = from;
+            for (int i = 0; i < starts.length; i++) {
+                if (ends[i] <= candidate) {
+                    continue;
+                }
+                if (starts[i] >= candidate + durationSeconds) {
+                    return candidate;
+                }
+                if (ends[i] == OPEN_ENDED) {
+                    return OPEN_ENDED;
+                }
+                candidate = Math.max(candidate, ends[i]);
+            }
+            return candidate;
+        }
+    }
+}
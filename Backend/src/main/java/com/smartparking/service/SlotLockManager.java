@@ -0,0 +1,34 @@
+package com.smartparking.service;
+
+import java.util.List;
+import java.util.Map;
+
+import com.smartparking.model.Slot;
+
+/**
+ * Slot Lock Manager
+ * Serializes bookings of the same slot. Locks are taken inside the current
+ * transaction and held until it completes.
+ *
+ * Selected with app.booking.slot-lock:
+ * - database (default): SELECT ... FOR UPDATE on the slot row, safe for clustered deployments
+ * - striped: JVM-local fair locks, cheaper but only correct when a single instance serves bookings
+ */
+public interface SlotLockManager {
+
+    /**
+     * Lock a slot for the rest of the current transaction and load it
+     */
+    Slot lockSlot(Long slotId);
+
+    /**
+     * Lock several slots for the rest of the current transaction, in a deadlock-free order
+     * Slots that do not exist are left out of the result
+     */
+    List<Slot> lockSlots(List<Long> slotIds);
+
+    /**
+     * Lock wait statistics for the admin metrics endpoint
+     */
+    Map<String, Object> getMetrics();
+}
@@ -22,6 +22,12 @@ public class SlotService {
     @Autowired
     private LocationRepository locationRepository;
 
+    @Autowired
+    private SlotAvailabilityEngine availabilityEngine;
+
+    @Autowired
+    private LocationWriteExecutor locationWriter;
+
     /**
      * Get all slots in the system
      */
@@ -73,6 +79,7 @@ public class SlotService {
         
         Slot savedSlot = slotRepository.save(slot);
         System.out.println("🔵 [SlotService.addSlot] After save, slot.isAvailable(): " + savedSlot.isAvailable());
+        availabilityEngine.sync(savedSlot);
 
         return savedSlot;
     }
@@ -105,29 +112,33 @@ public class SlotService {
             slot.setSlotType(slotRequest.getSlotType());
         }
 
-        return slotRepository.save(slot);
+        return saveAndSync(slot);
     }
 
     /**
      * Toggle slot availability
      */
     public Slot toggleSlotAvailability(Long id) {
-        Slot slot = getSlotById(id);
-        System.out.println("🔵 [SlotService.toggleSlotAvailability] Before toggle: available=" + slot.isAvailable());
-        slot.setAvailable(!slot.isAvailable());
-        System.out.println("🔵 [SlotService.toggleSlotAvailability] After setAvailable: available=" + slot.isAvailable());
-        Slot savedSlot = slotRepository.save(slot);
-        System.out.println("🔵 [SlotService.toggleSlotAvailability] After save: available=" + savedSlot.isAvailable());
-        return savedSlot;
+        return locationWriter.executeForSlot(id, () -> {
+            Slot slot = getSlotById(id);
+            System.out.println("🔵 [SlotService.toggleSlotAvailability] Before toggle: available=" + slot.isAvailable());
+            slot.setAvailable(!slot.isAvailable());
+            System.out.println("🔵 [SlotService.toggleSlotAvailability] After setAvailable: available=" + slot.isAvailable());
+            Slot savedSlot = saveAndSync(slot);
+            System.out.println("🔵 [SlotService.toggleSlotAvailability] After save: available=" + savedSlot.isAvailable());
+            return savedSlot;
+        });
     }
 
     /**
      * Set slot availability status
      */
     public Slot setSlotAvailability(Long id, boolean available) {
-        Slot slot = getSlotById(id);
-        slot.setAvailable(available);
-        return slotRepository.save(slot);
+        return locationWriter.executeForSlot(id, () -> {
+            Slot slot = getSlotById(id);
+            slot.setAvailable(available);
+            return saveAndSync(slot);
+        });
     }
 
     /**
@@ -138,6 +149,7 @@ public class SlotService {
             throw new IllegalArgumentException("Slot not found with ID: " + id);
         }
         slotRepository.deleteById(id);
+        availabilityEngine.remove(id);
     }
 
     /**
@@ -169,24 +181,28 @@ public class SlotService {
      * Disable a slot with maintenance notes
      */
     public Slot disableSlot(Long id, String maintenanceNotes) {
-        Slot slot = getSlotById(id);
-        slot.setDisabled(true);
-        slot.setMaintenanceNotes(maintenanceNotes);
-        // Don't change available status - disabled is separate from available/occupied
-        System.out.println("🔧 [SlotService.disableSlot] Slot " + id + " disabled with notes: " + maintenanceNotes);
-        return slotRepository.save(slot);
+        return locationWriter.executeForSlot(id, () -> {
+            Slot slot = getSlotById(id);
+            slot.setDisabled(true);
+            slot.setMaintenanceNotes(maintenanceNotes);
+            // Don't change available status - disabled is separate from available/occupied
+            System.out.println("🔧 [SlotService.disableSlot] Slot " + id + " disabled with notes: " + maintenanceNotes);
+            return saveAndSync(slot);
+        });
     }
 
     /**
      * Enable a slot (remove maintenance mode)
      */
     public Slot enableSlot(Long id) {
-        Slot slot = getSlotById(id);
-        slot.setDisabled(false);
-        slot.setMaintenanceNotes(null);
-        // Don't force available=true - let slot return to its actual availability state
-        System.out.println("✅ [SlotService.enableSlot] Slot " + id + " enabled");
-        return slotRepository.save(slot);
+        return locationWriter.executeForSlot(id, () -> {
+            Slot slot = getSlotById(id);
+            slot.setDisabled(false);
+            slot.setMaintenanceNotes(null);
+            // Don't force available=true - let slot return to its actual availability state
+            System.out.println("✅ [SlotService.enableSlot] Slot " + id + " enabled");
+            return saveAndSync(slot);
+        });
     }
 
     /**
@@ -199,6 +215,15 @@ public class SlotService {
         return slotRepository.save(slot);
     }
 
+    /**
+     * Persist a slot and refresh its in-memory availability bits
+     */
+    private Slot saveAndSync(Slot slot) {
+        Slot savedSlot = slotRepository.save(slot);
+        availabilityEngine.sync(savedSlot);
+        return savedSlot;
+    }
+
     /**
      * Convert Slot entity to SlotResponse DTO
      */
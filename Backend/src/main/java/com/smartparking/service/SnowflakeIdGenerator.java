@@ -0,0 +1,100 @@
+package com.smartparking.service;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Snowflake ID Generator
+ * 64-bit ids laid out as 41 bits of milliseconds since 2024-01-01, 10 bits of node id
+ * and 12 bits of sequence, so ids from one node are strictly increasing and ids from
+ * all nodes are roughly time-ordered. String ids are the value in fixed-width Crockford
+ * base32 (13 characters), which sorts the same way as the number.
+ *
+ * Generation is lock-free: timestamp and sequence share one AtomicLong. When the sequence
+ * runs out within a millisecond, or the clock steps back, the generator keeps counting on
+ * its own logical clock instead of waiting or producing duplicates.
+ *
+ * Each instance needs its own app.ids.node-id (0-1023) in a clustered deployment; by
+ * default it is derived from the host name.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ids.generator", havingValue = "snowflake", matchIfMissing = true)
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    @Value("${app.ids.node-id:-1}")
+    private long configuredNodeId;
+
+    private long nodeBits;
+
+    // (millis since epoch << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong lastState = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        long nodeId = configuredNodeId >= 0 ? configuredNodeId : defaultNodeId();
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("app.ids.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        nodeBits = nodeId << SEQUENCE_BITS;
+        System.out.println("🆔 [SnowflakeIdGenerator] Node id " + nodeId);
+    }
+
+    @Override
+    public long nextId() {
+        long state = nextState();
+        long millis = state >>> SEQUENCE_BITS;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (state & SEQUENCE_MASK);
+    }
+
+    @Override
+    public String nextId(String prefix) {
+        long id = nextId();
+        int offset = prefix != null && !prefix.isEmpty() ? prefix.length() + 1 : 0;
+        char[] chars = new char[offset + ENCODED_LENGTH];
+        if (offset > 0) {
+            prefix.getChars(0, prefix.length(), chars, 0);
+            chars[offset - 1] = '_';
+        }
+        for (int i = chars.length - 1; i >= offset; i--) {
+            chars[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private long nextState() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastState.get();
+            // A new millisecond starts at sequence 0; otherwise (same millisecond, sequence
+            // exhausted or clock behind) continue from the last state, which rolls into the next millisecond
+            long next = now > last ? now : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static long defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName().hashCode() & MAX_NODE_ID;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
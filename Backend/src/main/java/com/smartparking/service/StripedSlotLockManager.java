@@ -0,0 +1,130 @@
+package com.smartparking.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.smartparking.model.Slot;
+import com.smartparking.repository.SlotRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Striped Slot Lock Manager
+ * JVM-local lock manager for single-instance deployments (app.booking.slot-lock=striped).
+ * Slot ids are hashed onto a fixed array of fair ReentrantLocks, so waiting bookings are
+ * served in arrival order and the slot row is read without a database lock.
+ *
+ * Each lock is released when the surrounding transaction completes. Only use this when
+ * exactly one application instance writes bookings.
+ */
+@Component
+@ConditionalOnProperty(name = "app.booking.slot-lock", havingValue = "striped")
+public class StripedSlotLockManager implements SlotLockManager {
+
+    @Autowired
+    private SlotRepository slotRepository;
+
+    @Value("${app.booking.striped-lock.stripes:1024}")
+    private int stripeCount;
+
+    @Value("${app.booking.striped-lock.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    private ReentrantLock[] stripes;
+
+    private final LockWaitStats stats = new LockWaitStats();
+
+    @PostConstruct
+    public void init() {
+        // Round up to a power of two so the stripe index is a mask
+        stripes = new ReentrantLock[Integer.highestOneBit(Math.max(stripeCount, 2) * 2 - 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+        System.out.println("🔒 [StripedSlotLockManager] Using " + stripes.length + " JVM-local slot lock stripes");
+    }
+
+    @Override
+    public Slot lockSlot(Long slotId) {
+        acquire(stripeOf(slotId));
+        return slotRepository.findById(slotId)
+                .orElseThrow(() -> new RuntimeException("Slot not found"));
+    }
+
+    @Override
+    public List<Slot> lockSlots(List<Long> slotIds) {
+        // Acquire each stripe once, in ascending stripe order, so concurrent batches cannot deadlock
+        TreeSet<Integer> stripeOrder = new TreeSet<>();
+        slotIds.forEach(slotId -> stripeOrder.add(stripeOf(slotId)));
+        stripeOrder.forEach(this::acquire);
+
+        List<Slot> slots = new ArrayList<>(slotRepository.findAllById(slotIds));
+        slots.sort((a, b) -> a.getId().compareTo(b.getId()));
+        return slots;
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        int queued = 0;
+        int held = 0;
+        for (ReentrantLock stripe : stripes) {
+            queued += stripe.getQueueLength();
+            if (stripe.isLocked()) {
+                held++;
+            }
+        }
+        Map<String, Object> metrics = stats.toMap();
+        metrics.put("type", "striped");
+        metrics.put("stripes", stripes.length);
+        metrics.put("stripesHeld", held);
+        metrics.put("queuedThreads", queued);
+        return metrics;
+    }
+
+    /**
+     * Take a stripe lock and release it when the current transaction completes
+     */
+    private void acquire(int stripe) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Slot locks must be taken inside a transaction");
+        }
+        ReentrantLock lock = stripes[stripe];
+        long start = stats.beginWait();
+        boolean locked;
+        try {
+            locked = lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.timedOut();
+            throw new RuntimeException("Booking interrupted");
+        }
+        if (!locked) {
+            stats.timedOut();
+            throw new RuntimeException("Slot is busy, please try again");
+        }
+        stats.acquired(start);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    private int stripeOf(Long slotId) {
+        int h = Long.hashCode(slotId) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+}
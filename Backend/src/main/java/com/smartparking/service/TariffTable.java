@@ -0,0 +1,146 @@
+package com.smartparking.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.smartparking.model.Location;
+import com.smartparking.model.VehicleType;
+import com.smartparking.repository.LocationRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Tariff Table
+ * Display-rate cache: the hourly rate for every (location, vehicle type), resolved through
+ * FeeCalculationService and published as an immutable snapshot, so live fee tickers and the
+ * appliedRate shown on receipts are read without database access.
+ *
+ * It is not used for billing. Fees are charged by FeeCalculationService.calculateFee from the
+ * current pricing, while this table is rebuilt on pricing changes made through this instance's
+ * admin and location endpoints and otherwise every app.pricing.tariff-refresh-minutes (default 5).
+ * A displayed rate can therefore lag the rate actually charged by up to that interval.
+ */
+@Component
+public class TariffTable {
+
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+
+    @Autowired
+    private FeeCalculationService feeCalculationService;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Value("${app.pricing.tariff-refresh-minutes:5}")
+    private long refreshMinutes;
+
+    private volatile Snapshot snapshot;
+
+    private ScheduledExecutorService refresher;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+        if (refreshMinutes > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tariff-table-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::rebuildQuietly, refreshMinutes, refreshMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolve every rate again and publish the new table
+     * Call after any pricing change
+     */
+    public synchronized void rebuild() {
+        List<Location> locations = locationRepository.findAll();
+        long[] locationIds = locations.stream()
+                .map(Location::getId)
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+
+        int types = VEHICLE_TYPES.length;
+        double[] rates = new double[locationIds.length * types];
+        for (int i = 0; i < locationIds.length; i++) {
+            for (int t = 0; t < types; t++) {
+                rates[i * types + t] = feeCalculationService.getRatePerHour(locationIds[i], VEHICLE_TYPES[t]);
+            }
+        }
+        double[] defaultRates = new double[types];
+        for (int t = 0; t < types; t++) {
+            defaultRates[t] = feeCalculationService.getRatePerHour(null, VEHICLE_TYPES[t]);
+        }
+
+        snapshot = new Snapshot(locationIds, rates, defaultRates, feeCalculationService.getRatePerHour());
+        System.out.println("💰 [TariffTable] Compiled rates for " + locationIds.length + " location(s) x "
+                + types + " vehicle type(s)");
+    }
+
+    /**
+     * Hourly rate for a location and vehicle type
+     * Unknown locations use the default rate for the type; a missing type uses the global default
+     */
+    public double getRatePerHour(Long locationId, VehicleType vehicleType) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Not compiled yet (startup): resolve directly
+            return vehicleType != null
+                    ? feeCalculationService.getRatePerHour(locationId, vehicleType)
+                    : feeCalculationService.getRatePerHour();
+        }
+        return current.rate(locationId, vehicleType);
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ [TariffTable] Refresh failed, keeping previous rates: " + e.getMessage());
+        }
+    }
+
+    private static final class Snapshot {
+        private final long[] locationIds;
+        // rates[locationIndex * VEHICLE_TYPES.length + vehicleType.ordinal()]
+        private final double[] rates;
+        private final double[] defaultRates;
+        private final double globalDefaultRate;
+
+        private Snapshot(long[] locationIds, double[] rates, double[] defaultRates, double globalDefaultRate) {
+            this.locationIds = locationIds;
+            this.rates = rates;
+            this.defaultRates = defaultRates;
+            this.globalDefaultRate = globalDefaultRate;
+        }
+
+        private double rate(Long locationId, VehicleType vehicleType) {
+            if (vehicleType == null) {
+                return globalDefaultRate;
+            }
+            int index = locationId != null ? Arrays.binarySearch(locationIds, locationId) : -1;
+            return index >= 0
+                    ? rates[index * VEHICLE_TYPES.length + vehicleType.ordinal()]
+                    : defaultRates[vehicleType.ordinal()];
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.smartparking.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 import com.smartparking.model.*;
 import com.smartparking.repository.UserRepository;
@@ -13,10 +12,10 @@ public class UserService {
     private UserRepository repo;
 
     @Autowired
-    private BCryptPasswordEncoder encoder;
+    private PasswordHasher passwordHasher;
 
     public User register(User user) {
-        user.setPassword(encoder.encode(user.getPassword()));
+        user.setPassword(passwordHasher.encode(user.getPassword()));
         user.setRole(Role.USER);
         return repo.save(user);
     }
@@ -0,0 +1,27 @@
+package com.smartparking.service;
+
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * UUID ID Generator
+ * The previous random id format (app.ids.generator=uuid). Ids are not time-ordered,
+ * so they spread inserts across the whole index.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ids.generator", havingValue = "uuid")
+public class UuidIdGenerator implements IdGenerator {
+
+    @Override
+    public long nextId() {
+        return UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+    }
+
+    @Override
+    public String nextId(String prefix) {
+        String random = UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase();
+        return prefix != null && !prefix.isEmpty() ? prefix + "_" + random : random;
+    }
+}
@@ -0,0 +1,124 @@
+package com.smartparking.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ID Generator Benchmark
+ * Microbenchmark of transaction id generation: the previous UUID format against the
+ * Snowflake generator. Reports throughput, bytes allocated per id and how many
+ * consecutive ids come out in sorted order.
+ *
+ * Each variant gets a warm-up pass of the same size before it is measured.
+ * Standalone, outside the application: run main with [threads] [iterations per thread]
+ * on the compiled main and test classes, e.g. 4 1000000.
+ */
+public class IdGeneratorBenchmark {
+
+    private static final String PREFIX = "TXN";
+
+    // Keeps the JIT from removing the generated ids
+    private volatile int sink;
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        new IdGeneratorBenchmark().run(threads, iterations);
+    }
+
+    public Map<String, Object> run(int threads, int iterations) {
+        int threadCount = Math.max(threads, 1);
+        int perThread = Math.max(iterations, 1);
+
+        SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator();
+        UuidIdGenerator uuid = new UuidIdGenerator();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("threads", threadCount);
+        report.put("iterationsPerThread", perThread);
+        report.put("uuid", measure(() -> uuid.nextId(PREFIX), threadCount, perThread));
+        report.put("snowflake", measure(() -> snowflake.nextId(PREFIX), threadCount, perThread));
+        System.out.println("🏁 [IdGeneratorBenchmark] " + report);
+        return report;
+    }
+
+    private Map<String, Object> measure(Supplier<String> generator, int threads, int iterations) {
+        runThreads(generator, threads, iterations);
+        long start = System.nanoTime();
+        long[] results = runThreads(generator, threads, iterations);
+        long elapsedNanos = System.nanoTime() - start;
+
+        long total = (long) threads * iterations;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("idsPerSecond", Math.round(total / (elapsedNanos / 1_000_000_000.0)));
+        result.put("nanosPerId", Math.round(elapsedNanos * 10.0 * threads / total) / 10.0);
+        result.put("bytesAllocatedPerId", results[0] >= 0 ? results[0] / total : "unavailable");
+        result.put("sortedFraction", Math.round(results[1] * 10000.0 / total) / 10000.0);
+        result.put("sample", generator.get());
+        return result;
+    }
+
+    /**
+     * Run the generator on every thread; returns { bytes allocated, ids greater than their predecessor }
+     */
+    private long[] runThreads(Supplier<String> generator, int threads, int iterations) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            long[][] perThread = new long[threads][];
+            for (int t = 0; t < threads; t++) {
+                int index = t;
+                futures[t] = pool.submit(() -> perThread[index] = generate(generator, iterations));
+            }
+            long allocated = 0;
+            long sorted = 0;
+            for (int t = 0; t < threads; t++) {
+                futures[t].get();
+                allocated = allocated < 0 || perThread[t][0] < 0 ? -1 : allocated + perThread[t][0];
+                sorted += perThread[t][1];
+            }
+            return new long[] { allocated, sorted };
+        } catch (Exception e) {
+            throw new RuntimeException("Benchmark failed: " + e.getMessage());
+        } finally {
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private long[] generate(Supplier<String> generator, int iterations) {
+        long allocatedBefore = allocatedBytes();
+        String previous = generator.get();
+        long sorted = 0;
+        int hash = 0;
+        for (int i = 1; i <= iterations; i++) {
+            String id = generator.get();
+            if (id.compareTo(previous) > 0) {
+                sorted++;
+            }
+            hash ^= id.hashCode();
+            previous = id;
+        }
+        long allocatedAfter = allocatedBytes();
+        sink = hash;
+        return new long[] { allocatedBefore >= 0 ? allocatedAfter - allocatedBefore : -1, sorted };
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,176 @@
+package com.smartparking.service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import com.smartparking.model.Booking;
+import com.smartparking.model.VehicleType;
+
+/**
+ * Report Aggregation Benchmark
+ * Microbenchmark of usage-report aggregation over synthetic bookings: the previous
+ * stream-per-metric code (one pass per count, boxed fee and duration lists, grouping
+ * collectors) against a single BookingAggregator pass.
+ * Reports time per run, bytes allocated per run and bookings per second.
+ *
+ * Each variant is warmed up with the same number of runs before it is measured.
+ * Standalone, outside the application: run main with [bookings] [runs]
+ * on the compiled main and test classes, e.g. 1000000 5.
+ */
+public class ReportAggregationBenchmark {
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // Keeps the JIT from removing the aggregation
+    private volatile long sink;
+
+    public static void main(String[] args) {
+        int bookings = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        new ReportAggregationBenchmark().run(bookings, runs);
+    }
+
+    public Map<String, Object> run(int bookingCount, int runs) {
+        int size = Math.max(bookingCount, 1);
+        int runCount = Math.max(runs, 1);
+        LocalDateTime start = LocalDate.now().minusDays(30).atStartOfDay();
+        LocalDateTime end = start.plusDays(30);
+        List<Booking> bookings = syntheticBookings(size, start);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("bookings", size);
+        report.put("runs", runCount);
+        Map<String, Object> streams = measure(b -> streamPerMetric(b), bookings, runCount);
+        Map<String, Object> singlePass = measure(b -> singlePass(b, start, end), bookings, runCount);
+        report.put("streamPerMetric", streams);
+        report.put("singlePass", singlePass);
+        report.put("speedup", Math.round((double) streams.get("millisPerRun") / (double) singlePass.get("millisPerRun") * 10) / 10.0);
+        System.out.println("🏁 [ReportAggregationBenchmark] " + report);
+        return report;
+    }
+
+    private Map<String, Object> measure(ToLongFunction<List<Booking>> aggregation, List<Booking> bookings, int runs) {
+        for (int i = 0; i < runs; i++) {
+            sink += aggregation.applyAsLong(bookings);
+        }
+        long allocatedBefore = allocatedBytes();
+        long began = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            sink += aggregation.applyAsLong(bookings);
+        }
+        long elapsedNanos = System.nanoTime() - began;
+        long allocatedAfter = allocatedBytes();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("millisPerRun", Math.round(elapsedNanos / 1_000.0 / runs) / 1_000.0);
+        result.put("bookingsPerSecond", Math.round((double) bookings.size() * runs / (elapsedNanos / 1_000_000_000.0)));
+        result.put("bytesAllocatedPerRun", allocatedBefore >= 0 ? (allocatedAfter - allocatedBefore) / runs : "unavailable");
+        return result;
+    }
+
+    /**
+     * The usage-report aggregation as it was: a separate stream for every metric
+     */
+    private static long streamPerMetric(List<Booking> bookings) {
+        long completed = bookings.stream().filter(b -> b.getStatus() == Booking.ParkingStatus.COMPLETED).count();
+        long active = bookings.stream().filter(b -> b.getStatus() == Booking.ParkingStatus.ACTIVE).count();
+        long cancelled = bookings.stream().filter(b -> b.getStatus() == Booking.ParkingStatus.CANCELLED).count();
+
+        List<Double> fees = bookings.stream()
+                .filter(b -> b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
+                .map(Booking::getParkingFee)
+                .collect(Collectors.toList());
+        double revenue = fees.stream().mapToDouble(Double::doubleValue).sum();
+        double maxFee = fees.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        double minFee = fees.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+
+        List<Long> durations = bookings.stream()
+                .filter(b -> b.getEntryTime() != null && b.getExitTime() != null)
+                .map(b -> Duration.between(b.getEntryTime(), b.getExitTime()).toMinutes())
+                .filter(d -> d >= 0)
+                .sorted()
+                .collect(Collectors.toList());
+        double averageDuration = durations.stream().mapToLong(Long::longValue).average().orElse(0);
+        long median = durations.isEmpty() ? 0 : durations.get(durations.size() / 2);
+
+        Map<Integer, Long> hourly = bookings.stream()
+                .filter(b -> b.getEntryTime() != null)
+                .collect(Collectors.groupingBy(b -> b.getEntryTime().getHour(), Collectors.counting()));
+        Map<String, Long> daily = bookings.stream()
+                .filter(b -> b.getEntryTime() != null)
+                .collect(Collectors.groupingBy(b -> b.getEntryTime().format(DAY_FORMAT), Collectors.counting()));
+        Map<String, Double> dailyRevenue = bookings.stream()
+                .filter(b -> b.getEntryTime() != null && b.getParkingFee() != null && b.getStatus() == Booking.ParkingStatus.COMPLETED)
+                .collect(Collectors.groupingBy(b -> b.getEntryTime().format(DAY_FORMAT), Collectors.summingDouble(Booking::getParkingFee)));
+        Map<String, Long> vehicleTypes = bookings.stream()
+                .filter(b -> b.getVehicleType() != null)
+                .collect(Collectors.groupingBy(b -> b.getVehicleType().toString(), Collectors.counting()));
+        Map<String, Long> statuses = bookings.stream()
+                .filter(b -> b.getStatus() != null)
+                .collect(Collectors.groupingBy(b -> b.getStatus().toString(), Collectors.counting()));
+
+        return completed + active + cancelled + (long) (revenue + maxFee + minFee + averageDuration) + median
+                + hourly.size() + daily.size() + dailyRevenue.size() + vehicleTypes.size() + statuses.size();
+    }
+
+    /**
+     * The same metrics from one BookingAggregator pass
+     */
+    private static long singlePass(List<Booking> bookings, LocalDateTime start, LocalDateTime end) {
+        BookingAggregator totals = new BookingAggregator(start.toLocalDate(), end.toLocalDate()).withDurationSamples();
+        for (Booking booking : bookings) {
+            totals.add(booking);
+        }
+        return totals.getCount(Booking.ParkingStatus.COMPLETED) + totals.getCount(Booking.ParkingStatus.ACTIVE)
+                + totals.getCount(Booking.ParkingStatus.CANCELLED)
+                + (long) (totals.getRevenue() + totals.getMaxFee() + totals.getMinFee() + totals.getAverageDurationMinutes())
+                + (long) totals.getMedianDurationMinutes()
+                + totals.getHourlyCounts().size() + totals.getDailyCounts().size() + totals.getDailyRevenue().size()
+                + totals.getVehicleTypeCounts().size() + totals.getStatusCounts().size();
+    }
+
+    /**
+     * Bookings spread over 30 days: 70% completed with a fee, 20% active, 10% cancelled
+     */
+    private static List<Booking> syntheticBookings(int count, LocalDateTime start) {
+        Random random = new Random(42);
+        VehicleType[] vehicleTypes = VehicleType.values();
+        List<Booking> bookings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Booking booking = new Booking();
+            LocalDateTime entry = start.plusMinutes(random.nextInt(30 * 24 * 60));
+            booking.setEntryTime(entry);
+            booking.setVehicleType(vehicleTypes[random.nextInt(vehicleTypes.length)]);
+            int kind = random.nextInt(10);
+            if (kind < 7) {
+                booking.setStatus(Booking.ParkingStatus.COMPLETED);
+                booking.setExitTime(entry.plusMinutes(15 + random.nextInt(600)));
+                booking.setParkingFee(Math.round(random.nextDouble() * 50000) / 100.0);
+            } else if (kind < 9) {
+                booking.setStatus(Booking.ParkingStatus.ACTIVE);
+            } else {
+                booking.setStatus(Booking.ParkingStatus.CANCELLED);
+            }
+            bookings.add(booking);
+        }
+        return bookings;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
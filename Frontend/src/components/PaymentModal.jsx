@@ -1,6 +1,5 @@
-import { useEffect, useState } from 'react';
+import { useEffect, useRef, useState } from 'react';
 import { paymentService } from '../services/paymentService';
-import { pricingService } from '../services/pricingService';
 
 export default function PaymentModal({ booking, onClose, onPaymentSuccess }) {
   const [paymentMethod, setPaymentMethod] = useState('CARD');
@@ -9,16 +8,49 @@ export default function PaymentModal({ booking, onClose, onPaymentSuccess }) {
   const [transactionId, setTransactionId] = useState(null);
   const [isProcessing, setIsProcessing] = useState(false);
 
-  const [ratePerHour, setRatePerHour] = useState(null);
   const [liveMinutes, setLiveMinutes] = useState(booking.durationMinutes || 0);
   const [liveAmount, setLiveAmount] = useState(booking.parkingFee || 0);
 
-  // Use liveAmount as amount to pay (updates every 30s)
+  // The amount to pay is the fee streamed by the server, which is the amount it will charge
   const amount = liveAmount || booking.parkingFee || 0;
 
   // Extract booking ID - handle both 'id' and 'bookingId' field names
   const bookingId = booking?.id || booking?.bookingId;
 
+  // Follow the server's fee stream; stop once the payment has gone through
+  useEffect(() => {
+    if (!bookingId || transactionId) return undefined;
+    const close = paymentService.streamFee(
+      bookingId,
+      (fee) => {
+        setLiveMinutes(fee.durationMinutes);
+        setLiveAmount(fee.amount);
+      },
+      (err) => console.error('❌ Fee stream error:', err)
+    );
+    return close;
+  }, [bookingId, transactionId]);
+
+  // One key per modal, so retrying after a network error cannot charge twice
+  const idempotencyKey = useRef(crypto.randomUUID());
+
+  const POLL_INTERVAL_MS = 1000;
+  const POLL_TIMEOUT_MS = 60000;
+
+  // Poll the submitted payment until the gateway has answered and a captured charge has settled
+  const waitForPayment = async (ticket) => {
+    const deadline = Date.now() + POLL_TIMEOUT_MS;
+    let current = ticket;
+    while (current.status === 'PENDING' || current.status === 'PROCESSING' || current.status === 'CAPTURED') {
+      if (Date.now() > deadline) {
+        throw new Error('Payment is still processing. Please check your payment history shortly.');
+      }
+      await new Promise((resolve) => setTimeout(resolve, POLL_INTERVAL_MS));
+      current = await paymentService.getPaymentStatus(ticket.paymentId);
+    }
+    return current;
+  };
+
   const handlePayment = async () => {
     if (isProcessing) return;
 
@@ -37,11 +69,15 @@ export default function PaymentModal({ booking, onClose, onPaymentSuccess }) {
       console.log('💳 Processing payment for booking:', bookingId, 'Amount:', amount, 'Method:', paymentMethod);
       console.log('📦 Full booking object:', JSON.stringify(booking, null, 2));
 
-      const response = await paymentService.processPayment(
+      const ticket = await paymentService.submitPayment(
         bookingId,
         amount,
-        paymentMethod
+        paymentMethod,
+        idempotencyKey.current
       );
+      console.log('⏳ Payment queued:', ticket.paymentId);
+
+      const response = await waitForPayment(ticket);
 
       console.log('✅ Payment response:', response);
 
@@ -50,6 +86,8 @@ export default function PaymentModal({ booking, onClose, onPaymentSuccess }) {
         // Call success callback
         onPaymentSuccess(response);
       } else {
+        // A declined payment may be retried, so the next attempt needs a fresh key
+        idempotencyKey.current = crypto.randomUUID();
         setError(response.message || 'Payment failed. Please try again.');
       }
     } catch (err) {
@@ -58,6 +96,7 @@ export default function PaymentModal({ booking, onClose, onPaymentSuccess }) {
       const errorMsg =
         err.response?.data?.message ||
         err.response?.data?.error ||
+        err.message ||
         'Failed to process payment. Please try again.';
       setError(errorMsg);
     } finally {
@@ -110,48 +149,6 @@ export default function PaymentModal({ booking, onClose, onPaymentSuccess }) {
   }
 
   // Payment options screen
-
-  // Fetch pricing and set up live tick for duration and amount
-  useEffect(() => {
-    let mounted = true;
-    const loadRate = async () => {
-      try {
-        const data = await pricingService.getPricingByType(booking.vehicleType || 'CAR');
-        if (mounted) {
-          const rate = data?.hourlyRate ?? data?.ratePerHour ?? 0;
-          setRatePerHour(rate);
-          // Initialize liveMinutes and liveAmount
-          if (!booking.exitTime) {
-            const minutes = Math.max(0, Math.floor((Date.now() - new Date(booking.entryTime).getTime()) / 60000));
-            setLiveMinutes(minutes);
-            setLiveAmount((rate * minutes) / 60);
-          } else {
-            setLiveMinutes(booking.durationMinutes || 0);
-            setLiveAmount(booking.parkingFee || 0);
-          }
-        }
-      } catch (e) {
-        if (mounted) {
-          setRatePerHour(0);
-        }
-      }
-    };
-
-    loadRate();
-
-    const interval = setInterval(() => {
-      if (!booking.exitTime) {
-        const minutes = Math.max(0, Math.floor((Date.now() - new Date(booking.entryTime).getTime()) / 60000));
-        setLiveMinutes(minutes);
-        setLiveAmount(((ratePerHour || 0) * minutes) / 60);
-      }
-    }, 30000);
-
-    return () => {
-      mounted = false;
-      clearInterval(interval);
-    };
-  }, [booking.entryTime, booking.exitTime, booking.vehicleType, ratePerHour]);
   return (
     <div className="fixed inset-0 bg-black/50 flex items-center justify-center z-50 p-4">
       <div className="bg-white rounded-2xl p-6 w-full max-w-sm shadow-2xl space-y-6">
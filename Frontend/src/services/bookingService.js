@@ -10,6 +10,42 @@ export const bookingService = {
     return response.data;
   },
 
+  /**
+   * Hold a parking slot until it is confirmed or the hold expires
+   * @param {Object} data - {slotId, vehicleType, entryTime}
+   */
+  holdSlot: async (data) => {
+    const response = await api.post("/bookings/hold", data);
+    return response.data;
+  },
+
+  /**
+   * Confirm a held booking
+   * @param {number} bookingId
+   */
+  confirmHold: async (bookingId) => {
+    const response = await api.post(`/bookings/${bookingId}/confirm`);
+    return response.data;
+  },
+
+  /**
+   * Book any free slot of a vehicle type at a location
+   * @param {Object} data - {locationId, vehicleType, entryTime}
+   */
+  bookAnySlot: async (data) => {
+    const response = await api.post("/bookings/auto", data);
+    return response.data;
+  },
+
+  /**
+   * Book several vehicles in one request
+   * @param {Array} items - [{slotId | locationId, vehicleType, entryTime, exitTime}]
+   */
+  bookBatch: async (items) => {
+    const response = await api.post("/bookings/batch", { items });
+    return response.data;
+  },
+
   /**
    * Checkout booking
    * @param {number} bookingId
@@ -19,6 +55,21 @@ export const bookingService = {
     return response.data;
   },
 
+  /**
+   * Exit and pay in one request: charges the fee, releases the slot and returns the receipt
+   * @param {number} bookingId
+   * @param {string} paymentMethod - 'CARD' or 'UPI'
+   * @param {string} idempotencyKey - Optional key; retries with the same key are not charged again
+   */
+  exitBooking: async (bookingId, paymentMethod = "CARD", idempotencyKey) => {
+    const response = await api.post(
+      `/bookings/${bookingId}/exit`,
+      { paymentMethod },
+      idempotencyKey ? { headers: { "Idempotency-Key": idempotencyKey } } : undefined
+    );
+    return response.data;
+  },
+
   /**
    * Cancel booking
    * @param {number} bookingId
@@ -3,6 +3,9 @@ import axios from '../api/axios';
 // Base axios already prefixes /api, so keep this route relative
 const API_BASE_URL = '/payments';
 
+// Fee stream is read with fetch (EventSource cannot send the Authorization header)
+const STREAM_BASE_URL = 'http://localhost:8080/api/payments';
+
 /**
  * Payment Service
  * Handles payment processing for parking bookings
@@ -13,21 +16,109 @@ export const paymentService = {
    * @param {Number} bookingId - The booking ID to process payment for
    * @param {Number} amount - The amount to pay
    * @param {String} paymentMethod - Payment method: 'CARD' or 'UPI'
+   * @param {String} idempotencyKey - Optional key; retries with the same key are not charged again
    * @returns {Promise} Payment result with transaction ID
    */
-  processPayment: async (bookingId, amount, paymentMethod) => {
+  processPayment: async (bookingId, amount, paymentMethod, idempotencyKey) => {
     try {
-      const response = await axios.post(`${API_BASE_URL}/process`, {
-        bookingId,
-        amount,
-        paymentMethod,
-      });
+      const response = await axios.post(
+        `${API_BASE_URL}/process`,
+        { bookingId, amount, paymentMethod },
+        idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined
+      );
       return response.data;
     } catch (error) {
       throw error;
     }
   },
 
+  /**
+   * Submit a payment without waiting for the gateway
+   * @param {Number} bookingId - The booking ID to pay for
+   * @param {Number} amount - The amount to pay
+   * @param {String} paymentMethod - Payment method: 'CARD' or 'UPI'
+   * @param {String} idempotencyKey - Optional key; retries with the same key are not charged again
+   * @returns {Promise} Payment ticket with paymentId and PENDING status
+   */
+  submitPayment: async (bookingId, amount, paymentMethod, idempotencyKey) => {
+    try {
+      const response = await axios.post(
+        `${API_BASE_URL}/submit`,
+        { bookingId, amount, paymentMethod },
+        idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined
+      );
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  /**
+   * Get the status of a submitted payment
+   * @param {String} paymentId - The payment ID returned by submitPayment
+   * @returns {Promise} Payment ticket: PENDING, PROCESSING, SUCCEEDED, FAILED, IN_DOUBT or CAPTURED
+   *   (charged, booking not completed yet; paying again settles the same charge)
+   */
+  getPaymentStatus: async (paymentId) => {
+    try {
+      const response = await axios.get(`${API_BASE_URL}/status/${paymentId}`);
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  /**
+   * Stream the authoritative running fee of a booking from the server
+   * @param {Number} bookingId - The booking ID
+   * @param {Function} onFee - Called with { bookingId, durationMinutes, ratePerHour, amount, final }
+   * @param {Function} onError - Called if the stream cannot be opened or breaks
+   * @returns {Function} Call to close the stream
+   */
+  streamFee: (bookingId, onFee, onError) => {
+    const controller = new AbortController();
+
+    const read = async () => {
+      const token = localStorage.getItem('token');
+      const response = await fetch(`${STREAM_BASE_URL}/fee-stream/${bookingId}`, {
+        headers: { Authorization: `Bearer ${token}`, Accept: 'text/event-stream' },
+        signal: controller.signal,
+      });
+      if (!response.ok) {
+        const body = await response.json().catch(() => ({}));
+        throw new Error(body.message || `Fee stream failed with status ${response.status}`);
+      }
+
+      const reader = response.body.getReader();
+      const decoder = new TextDecoder();
+      let buffer = '';
+      for (;;) {
+        const { value, done } = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, { stream: true });
+
+        // Events are separated by a blank line; only the data lines matter here
+        let end;
+        while ((end = buffer.indexOf('\n\n')) >= 0) {
+          const data = buffer
+            .slice(0, end)
+            .split('\n')
+            .filter((line) => line.startsWith('data:'))
+            .map((line) => line.slice(5).trim())
+            .join('\n');
+          buffer = buffer.slice(end + 2);
+          if (data) onFee(JSON.parse(data));
+        }
+      }
+    };
+
+    read().catch((error) => {
+      if (!controller.signal.aborted && onError) onError(error);
+    });
+
+    return () => controller.abort();
+  },
+
   /**
    * Get payment history for user
    * @returns {Promise} List of user's payments
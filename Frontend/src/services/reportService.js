@@ -72,10 +72,11 @@ export const reportService = {
   /**
    * Download bookings as CSV with optional filters
    * params: { startDate?: string(ISO), endDate?: string(ISO), slotId?: number, userId?: number }
+   * The export is sent gzip-encoded; the browser decompresses it before it reaches the Blob
    */
   exportCsv: async (params = {}) => {
     const response = await api.get("/admin/reports/export/csv", {
-      params,
+      params: { ...params, gzip: true },
       responseType: "blob",
       headers: { Accept: "text/csv" },
     });